@@ -0,0 +1,37 @@
+package org.folio.circulation.loanrules.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run all loan rules benchmarks with the allocation rate profiler and write
+ * the results as JSON to loan-rules-benchmark.json. The JMH command line
+ * options, for example -p lines=1000 or -rff other.json, replace these defaults.
+ */
+public class LoanRulesBenchmarks {
+  private LoanRulesBenchmarks() {
+    throw new UnsupportedOperationException();
+  }
+
+  public static void main(String [] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+    if (commandLine.getIncludes().isEmpty()) {
+      options.include(LoanRulesBenchmarks.class.getPackage().getName() + ".*");
+    }
+    if (commandLine.getProfilers().isEmpty()) {
+      options.addProfiler(GCProfiler.class);
+    }
+    if (! commandLine.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (! commandLine.getResult().hasValue()) {
+      options.result("loan-rules-benchmark.json");
+    }
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,64 @@
+package org.folio.circulation.loanrules.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.folio.circulation.loanrules.CompiledLoanRules;
+import org.folio.circulation.loanrules.Drools;
+import org.folio.circulation.loanrules.Text2Drools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to convert and compile loan rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoanRulesCompileBenchmark {
+  @Param({ "10", "1000", "20000" })
+  public int lines;
+
+  @Param({
+    "t, s, c, b, a, m, g",
+    "number-of-criteria, criterium(t, s, c, b, a, m, g), last-line",
+    "criterium(t, s, c, b, a, m, g), number-of-criteria, first-line",
+  })
+  public String priority;
+
+  private String loanRules;
+  private String loanRulesAsDrools;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    loanRules = new LoanRulesGenerator(42, lines).loanRules(priority, lines);
+    loanRulesAsDrools = Text2Drools.convert(loanRules);
+  }
+
+  @Benchmark
+  public String text2Drools() {
+    return Text2Drools.convert(loanRules);
+  }
+
+  @Benchmark
+  public Drools drools() {
+    return new Drools(loanRulesAsDrools);
+  }
+
+  @Benchmark
+  public CompiledLoanRules compiledLoanRules() {
+    return new CompiledLoanRules(loanRules);
+  }
+}
@@ -0,0 +1,94 @@
+package org.folio.circulation.loanrules.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.folio.circulation.loanrules.CompiledLoanRules;
+import org.folio.circulation.loanrules.Drools;
+import org.folio.circulation.loanrules.LoanRulesEngine;
+import org.folio.circulation.loanrules.Text2Drools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Latency of a single evaluation, and throughput of several threads
+ * that share one engine.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanRulesEvaluationBenchmark {
+  private static final int PARAMETER_SETS = 1024;
+
+  @Param({ "10", "1000", "20000" })
+  public int lines;
+
+  @Param({
+    "t, s, c, b, a, m, g",
+    "number-of-criteria, criterium(t, s, c, b, a, m, g), last-line",
+  })
+  public String priority;
+
+  @Param({ "drools", "compiled" })
+  public String engineName;
+
+  private LoanRulesEngine engine;
+  private String [][] parameters;
+
+  /** each thread walks through the parameter sets */
+  @State(Scope.Thread)
+  public static class Cursor {
+    int i;
+
+    String [] next(String [][] parameters) {
+      i = (i + 1) % parameters.length;
+      return parameters[i];
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    LoanRulesGenerator generator = new LoanRulesGenerator(42, lines);
+    String loanRules = generator.loanRules(priority, lines);
+    engine = "drools".equals(engineName)
+        ? new Drools(Text2Drools.convert(loanRules))
+        : new CompiledLoanRules(loanRules);
+    parameters = generator.parameters(PARAMETER_SETS);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  public String loanPolicy(Cursor cursor) {
+    String [] p = cursor.next(parameters);
+    return engine.loanPolicy(p[0], p[1], p[2], p[3]);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  public JsonArray loanPolicies(Cursor cursor) {
+    String [] p = cursor.next(parameters);
+    return engine.loanPolicies(p[0], p[1], p[2], p[3]);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Threads(4)
+  public String loanPolicyThroughput(Cursor cursor) {
+    String [] p = cursor.next(parameters);
+    return engine.loanPolicy(p[0], p[1], p[2], p[3]);
+  }
+}
@@ -0,0 +1,116 @@
+package org.folio.circulation.loanrules.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates loan rules with nested lines, negations, "all" and multi-criteria lines,
+ * and the ids to evaluate them with. The same seed yields the same loan rules.
+ */
+public class LoanRulesGenerator {
+  /** criterium types, in the order the nesting uses them */
+  private static final String [] TYPES = { "m", "t", "g", "s" };
+
+  private final Random random;
+  private final String [] materialTypes;
+  private final String [] loanTypes;
+  private final String [] patronGroups;
+  private final String [] locations;
+
+  /**
+   * @param seed  seed for the random generator
+   * @param lines  number of loan rules lines, the number of ids grows with it
+   */
+  public LoanRulesGenerator(long seed, int lines) {
+    random = new Random(seed);
+    materialTypes = ids("m", 10 + lines / 100);
+    loanTypes = ids("t", 5 + lines / 1000);
+    patronGroups = ids("g", 5 + lines / 1000);
+    locations = ids("s", 20 + lines / 20);
+  }
+
+  private static String [] ids(String type, int n) {
+    String [] ids = new String [n];
+    for (int i=0; i<n; i++) {
+      ids[i] = UUID.nameUUIDFromBytes((type + i).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+    return ids;
+  }
+
+  private String [] idsOf(String type) {
+    switch (type) {
+    case "m": return materialTypes;
+    case "t": return loanTypes;
+    case "g": return patronGroups;
+    default:  return locations;
+    }
+  }
+
+  private String id(String [] ids) {
+    return ids[random.nextInt(ids.length)];
+  }
+
+  private String criterium(String type) {
+    int kind = random.nextInt(20);
+    if (kind == 0) {
+      return type + " all";
+    }
+    String [] ids = idsOf(type);
+    String prefix = kind == 1 ? " !" : " ";
+    StringBuilder s = new StringBuilder(type).append(prefix).append(id(ids));
+    while (random.nextInt(3) == 0) {
+      s.append(prefix).append(id(ids));
+    }
+    return s.toString();
+  }
+
+  /**
+   * @param priority  the priority line without "priority: "
+   * @param lineCount  number of lines after the priority and fallback-policy line
+   * @return loan rules in FOLIO text format
+   */
+  public String loanRules(String priority, int lineCount) {
+    List<String> lines = new ArrayList<>(lineCount + 2);
+    lines.add("priority: " + priority);
+    lines.add("fallback-policy: " + UUID.nameUUIDFromBytes("fallback".getBytes(StandardCharsets.UTF_8)));
+    int depth = 0;
+    for (int i=0; i<lineCount; i++) {
+      StringBuilder line = new StringBuilder();
+      for (int d=0; d<depth; d++) {
+        line.append("    ");
+      }
+      line.append(criterium(TYPES[depth % TYPES.length]));
+      if (random.nextInt(4) == 0) {
+        line.append(" + ").append(criterium(TYPES[(depth + 1 + random.nextInt(3)) % TYPES.length]));
+      }
+      // the last line must have a policy
+      boolean hasPolicy = random.nextInt(5) != 0 || i == lineCount - 1;
+      if (hasPolicy) {
+        line.append(": ").append(UUID.nameUUIDFromBytes(("policy" + i).getBytes(StandardCharsets.UTF_8)));
+      }
+      lines.add(line.toString());
+      if (! hasPolicy || (depth < 3 && random.nextInt(3) == 0)) {
+        depth++;  // the next line must be indented if there is no policy
+      } else {
+        depth = random.nextInt(depth + 1);
+      }
+    }
+    return String.join("\n", lines);
+  }
+
+  /**
+   * @param n  number of parameter sets
+   * @return n random sets of item type id, loan type id, patron group id, location id
+   */
+  public String [][] parameters(int n) {
+    String [][] parameters = new String [n][];
+    for (int i=0; i<n; i++) {
+      parameters[i] = new String [] {
+          id(materialTypes), id(loanTypes), id(patronGroups), id(locations) };
+    }
+    return parameters;
+  }
+}
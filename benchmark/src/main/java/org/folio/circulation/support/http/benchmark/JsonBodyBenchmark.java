@@ -0,0 +1,95 @@
+package org.folio.circulation.support.http.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.folio.circulation.support.http.client.BufferHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Time and, with the allocation rate profiler, bytes per operation of encoding a
+ * loan as request body and of decoding a page of items from a response body:
+ * the former pretty printed String and String copy of the buffer against compact
+ * encoding into a buffer and decoding of the buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBodyBenchmark {
+  private static final int ITEMS = 20;
+
+  private JsonObject loan;
+  private Buffer items;
+
+  @Setup
+  public void setUp() {
+    loan = new JsonObject()
+      .put("id", "cf23adf0-61ba-4887-bf82-956c4aae2260")
+      .put("userId", "df7f4993-8c14-4a0f-ab63-93975ab01c76")
+      .put("itemId", "cb20f34f-b773-462f-a091-b233cc96b9e6")
+      .put("item", item(0))
+      .put("loanDate", "2017-03-01T23:11:00.000Z")
+      .put("dueDate", "2017-04-01T23:11:00.000Z")
+      .put("checkoutServicePointId", "e9af4ba4-6801-4722-bf45-d7a49d54564d")
+      .put("status", new JsonObject().put("name", "Open"))
+      .put("action", "checkedout")
+      .put("renewalCount", 0);
+
+    JsonArray page = new JsonArray();
+    for (int i=0; i<ITEMS; i++) {
+      page.add(item(i));
+    }
+    items = Buffer.buffer(new JsonObject()
+      .put("items", page)
+      .put("totalRecords", ITEMS)
+      .encodePrettily());
+  }
+
+  private static JsonObject item(int i) {
+    return new JsonObject()
+      .put("id", String.format("cb20f34f-b773-462f-a091-%012d", i))
+      .put("title", "The Long Way to a Small, Angry Planet")
+      .put("barcode", String.format("0360002914%02d", i))
+      .put("status", new JsonObject().put("name", "Checked out"))
+      .put("location", new JsonObject().put("name", "Main Library"))
+      .put("materialType", new JsonObject().put("name", "Book"))
+      .put("contributors", new JsonArray().add(new JsonObject().put("name", "Steve Jones")));
+  }
+
+  @Benchmark
+  public Buffer encodePrettyString() {
+    // what HttpClientRequest.end(String) sends
+    return Buffer.buffer(Json.encodePrettily(loan), "UTF-8");
+  }
+
+  @Benchmark
+  public Buffer encodeCompactBuffer() {
+    return Json.encodeToBuffer(loan);
+  }
+
+  @Benchmark
+  public JsonObject decodeViaString() {
+    return new JsonObject(BufferHelper.stringFromBuffer(items));
+  }
+
+  @Benchmark
+  public JsonObject decodeBuffer() {
+    return new JsonObject(items);
+  }
+}
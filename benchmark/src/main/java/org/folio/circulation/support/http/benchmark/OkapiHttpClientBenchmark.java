@@ -0,0 +1,99 @@
+package org.folio.circulation.support.http.benchmark;
+
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.folio.circulation.support.http.client.HttpClientConfiguration;
+import org.folio.circulation.support.http.client.OkapiHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import api.support.fakes.FakeOkapi;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Throughput of OkapiHttpClient against the FakeOkapi of the tests, for several
+ * HTTP client options. Each operation sends the requests of a check out in
+ * parallel, like CheckOutByBarcodeResource does, and waits for all responses.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OkapiHttpClientBenchmark {
+  /** number of parallel requests of an operation */
+  private static final int FAN_OUT = 12;
+  private static final String TENANT_ID = "test_tenant";
+  private static final String USER_ID = "79ff2a8b-d9c3-5b39-ad4a-0a84025ab085";
+
+  @Param({ "5", "20" })
+  public int maxPoolSize;
+
+  @Param({ "false", "true" })
+  public boolean http2;
+
+  private Vertx vertx;
+  private HttpClient httpClient;
+  private OkapiHttpClient client;
+  private String url;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    CompletableFuture<String> deployed = new CompletableFuture<>();
+    vertx.deployVerticle(FakeOkapi.class.getName(), result -> {
+      if (result.succeeded()) {
+        deployed.complete(result.result());
+      } else {
+        deployed.completeExceptionally(result.cause());
+      }
+    });
+    deployed.get(30, TimeUnit.SECONDS);
+
+    httpClient = vertx.createHttpClient(HttpClientConfiguration.fromConfig(new JsonObject()
+        .put(HttpClientConfiguration.MAX_POOL_SIZE, maxPoolSize)
+        .put(HttpClientConfiguration.HTTP2, http2)));
+    client = new OkapiHttpClient(httpClient, new URL(FakeOkapi.getAddress()),
+        TENANT_ID, "benchmark-token", USER_ID, "benchmark-request", Throwable::printStackTrace);
+    url = FakeOkapi.getAddress() + "/material-types";
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    httpClient.close();
+    CompletableFuture<Void> closed = new CompletableFuture<>();
+    vertx.close(result -> closed.complete(null));
+    closed.get(30, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Threads(4)
+  public int checkOutFanOut() throws Exception {
+    CompletableFuture<?> [] responses = new CompletableFuture<?> [FAN_OUT];
+    for (int i=0; i<FAN_OUT; i++) {
+      CompletableFuture<Integer> response = new CompletableFuture<>();
+      client.get(url, httpClientResponse -> httpClientResponse.bodyHandler(
+          body -> response.complete(body.length())));
+      responses[i] = response;
+    }
+    CompletableFuture.allOf(responses).get(30, TimeUnit.SECONDS);
+    return responses.length;
+  }
+}
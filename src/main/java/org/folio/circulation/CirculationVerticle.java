@@ -1,7 +1,10 @@
 package org.folio.circulation;
 
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
 
+import org.folio.circulation.loanrules.EventBusLoanRulesChannel;
+import org.folio.circulation.loanrules.LoanRulesEvaluationPool;
 import org.folio.circulation.resources.CheckInByBarcodeResource;
 import org.folio.circulation.resources.CheckOutByBarcodeResource;
 import org.folio.circulation.resources.LoanCollectionResource;
@@ -11,6 +14,11 @@ import org.folio.circulation.resources.RenewByBarcodeResource;
 import org.folio.circulation.resources.RenewByIdResource;
 import org.folio.circulation.resources.RequestCollectionResource;
 import org.folio.circulation.resources.RequestQueueResource;
+import org.folio.circulation.resources.StorageStatisticsResource;
+import org.folio.circulation.support.CollectionResourceClient;
+import org.folio.circulation.support.InFlightGets;
+import org.folio.circulation.support.LoanRulesClient;
+import org.folio.circulation.support.http.client.HttpClientConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,7 +29,18 @@ import io.vertx.core.http.HttpServer;
 import io.vertx.ext.web.Router;
 
 public class CirculationVerticle extends AbstractVerticle {
+  /** default maximum number of queued and running loan rules evaluations */
+  private static final int DEFAULT_EVALUATION_QUEUE_SIZE = 1000;
+  /** how often to evict the loan rules of idle tenants */
+  private static final long EVICTION_INTERVAL_IN_MILLISECONDS = 60L * 1000;
+  private static final long MEGABYTE = 1024L * 1024;
+  /** maximum time to wait for the loan rules snapshots before listening, below the Launcher's start timeout */
+  private static final long SNAPSHOT_WAIT_IN_MILLISECONDS = 5000;
+
   private HttpServer server;
+  private long evictionTimer;
+  /** the deployed loan rules evaluation pool, null if none */
+  private LoanRulesEvaluationPool evaluationPool;
 
   @Override
   public void start(Future<Void> startFuture) {
@@ -33,7 +52,8 @@ public class CirculationVerticle extends AbstractVerticle {
 
     Router router = Router.router(vertx);
 
-    HttpClient client = vertx.createHttpClient();
+    HttpClient client = vertx.createHttpClient(
+      HttpClientConfiguration.fromConfig(config()));
 
     this.server = vertx.createHttpServer();
 
@@ -44,22 +64,103 @@ public class CirculationVerticle extends AbstractVerticle {
     new LoanCollectionResource(client).register(router);
     new RequestCollectionResource(client).register(router);
     new RequestQueueResource(client).register(router);
+    new StorageStatisticsResource("/circulation/storage-statistics", client)
+      .register(router);
 
     new LoanRulesResource         ("/circulation/loan-rules", client)
       .register(router);
+    LoanRulesEngineResource.setCacheTime(
+      config().getLong("loanRulesTriggerAge",
+        LoanRulesEngineResource.DEFAULT_TRIGGER_AGE_IN_MILLISECONDS),
+      config().getLong("loanRulesMaxAge",
+        LoanRulesEngineResource.DEFAULT_MAX_AGE_IN_MILLISECONDS));
+    LoanRulesEngineResource.setEngine(
+      config().getString("loanRulesEngine", LoanRulesEngineResource.DROOLS_ENGINE));
+    LoanRulesEngineResource.setTenantLimits(
+      config().getLong("loanRulesTenantMaxIdle",
+        LoanRulesEngineResource.DEFAULT_TENANT_MAX_IDLE_IN_MILLISECONDS),
+      config().getLong("loanRulesTenantMaxMegabytes",
+        LoanRulesEngineResource.DEFAULT_TENANT_MAX_BYTES / MEGABYTE) * MEGABYTE);
+    CompletableFuture<Void> snapshotsLoaded = snapshotsLoaded(
+      LoanRulesEngineResource.setSnapshotDirectory(
+        config().getString("loanRulesSnapshotDirectory")), log);
+    evictionTimer = vertx.setPeriodic(EVICTION_INTERVAL_IN_MILLISECONDS,
+      id -> LoanRulesEngineResource.evictTenants());
+    InFlightGets.setEnabled(config().getBoolean("storageGetCoalescing", false));
+    CollectionResourceClient.setQueryLimits(
+      config().getInteger("storageQueryMaxUrlLength",
+        CollectionResourceClient.DEFAULT_MAX_URL_LENGTH),
+      config().getInteger("storageQueryParallelism",
+        CollectionResourceClient.DEFAULT_QUERY_PARALLELISM));
+    if (config().getBoolean("loanRulesEventBus", false)) {
+      if (! vertx.isClustered()) {
+        log.warn("loanRulesEventBus is enabled but Vert.x isn't clustered, "
+          + "the loan rules are not announced to other module instances");
+      }
+      LoanRulesEngineResource.setChannel(new EventBusLoanRulesChannel(vertx.eventBus()));
+    }
     new LoanRulesEngineResource   ("/circulation/loan-rules/apply",
-                                   "/circulation/loan-rules/apply-all", client)
+                                   "/circulation/loan-rules/apply-all",
+                                   "/circulation/loan-rules/apply-batch",
+                                   "/circulation/loan-rules/statistics",
+                                   "/circulation/loan-rules/policy-matrix", client)
       .register(router);
+    LoanRulesClient.setLocalLoanRules(LoanRulesEngineResource::applyLocallyAsync);
+
+    int evaluationInstances = config().getInteger("loanRulesEvaluationInstances",
+      Runtime.getRuntime().availableProcessors());
+    CompletableFuture<LoanRulesEvaluationPool> evaluationPool = evaluationInstances <= 0
+      ? CompletableFuture.completedFuture(null)
+      : LoanRulesEvaluationPool.deploy(vertx, evaluationInstances,
+          config().getInteger("loanRulesEvaluationQueueSize", DEFAULT_EVALUATION_QUEUE_SIZE),
+          config().getLong("loanRulesEvaluationTimeout",
+            LoanRulesEvaluationPool.DEFAULT_TIMEOUT_IN_MILLISECONDS));
+
+    // listen when the evaluation pool is deployed and the snapshots are compiled
+    CompletableFuture<LoanRulesEvaluationPool> ready =
+      evaluationPool.thenCombine(snapshotsLoaded, (pool, loaded) -> pool);
+
+    ready.whenComplete((pool, throwable) -> {
+      if (throwable != null) {
+        startFuture.fail(throwable);
+        return;
+      }
+      this.evaluationPool = pool;
+      LoanRulesEngineResource.setEvaluationPool(pool);
+
+      server.requestHandler(router::accept)
+        .listen(config().getInteger("port"), result -> {
+          if (result.succeeded()) {
+            log.info("Listening on {}", server.actualPort());
+            startFuture.complete();
+          } else {
+            startFuture.fail(result.cause());
+          }
+        });
+    });
+  }
 
-    server.requestHandler(router::accept)
-      .listen(config().getInteger("port"), result -> {
-        if (result.succeeded()) {
-          log.info("Listening on {}", server.actualPort());
-          startFuture.complete();
-        } else {
-          startFuture.fail(result.cause());
-        }
-      });
+  /**
+   * @param snapshots  the compilation of the loan rules snapshots
+   * @return completed when the snapshots are compiled, or after SNAPSHOT_WAIT_IN_MILLISECONDS;
+   *         snapshots compiled later are installed in the background
+   */
+  private CompletableFuture<Void> snapshotsLoaded(CompletableFuture<Void> snapshots, Logger log) {
+    if (snapshots.isDone()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> loaded = new CompletableFuture<>();
+    long timer = vertx.setTimer(SNAPSHOT_WAIT_IN_MILLISECONDS, id -> {
+      if (loaded.complete(null)) {
+        log.warn("Loan rules snapshots not compiled within {} ms, compiling them in the background",
+          SNAPSHOT_WAIT_IN_MILLISECONDS);
+      }
+    });
+    snapshots.whenComplete((result, throwable) -> {
+      vertx.cancelTimer(timer);
+      loaded.complete(null);
+    });
+    return loaded;
   }
 
   @Override
@@ -68,15 +169,29 @@ public class CirculationVerticle extends AbstractVerticle {
 
     log.info("Stopping circulation module");
 
-    if(server != null) {
-      server.close(result -> {
-        if (result.succeeded()) {
+    LoanRulesEngineResource.setEvaluationPool(null);
+    vertx.cancelTimer(evictionTimer);
+
+    CompletableFuture<Void> undeployed = evaluationPool == null
+      ? CompletableFuture.completedFuture(null)
+      : evaluationPool.undeploy(vertx);
+
+    undeployed.whenComplete((result, throwable) -> {
+      if (throwable != null) {
+        log.warn("Cannot undeploy the loan rules evaluation verticles", throwable);
+      }
+      if (server == null) {
+        stopFuture.complete();
+        return;
+      }
+      server.close(closed -> {
+        if (closed.succeeded()) {
           log.info("Stopped listening on {}", server.actualPort());
           stopFuture.complete();
         } else {
-          stopFuture.fail(result.cause());
+          stopFuture.fail(closed.cause());
         }
       });
-    }
+    });
   }
 }
@@ -12,6 +12,7 @@ import java.util.concurrent.TimeoutException;
 
 import static io.vertx.core.logging.LoggerFactory.getLogger;
 import static org.folio.circulation.support.JsonPropertyWriter.write;
+import static org.folio.circulation.support.http.client.HttpClientConfiguration.*;
 
 public class Launcher {
   private final VertxAssistant vertxAssistant;
@@ -63,6 +64,30 @@ public class Launcher {
 
     JsonObject config = new JsonObject();
     write(config, "port", port);
+    write(config, "loanRulesEngine", System.getProperty("loanRulesEngine"));
+    write(config, "loanRulesTriggerAge", Integer.getInteger("loanRulesTriggerAge"));
+    write(config, "loanRulesMaxAge", Integer.getInteger("loanRulesMaxAge"));
+    write(config, "loanRulesSnapshotDirectory", System.getProperty("loanRulesSnapshotDirectory"));
+    config.put("loanRulesEventBus", Boolean.getBoolean("loanRulesEventBus"));
+    write(config, "loanRulesEvaluationInstances", Integer.getInteger("loanRulesEvaluationInstances"));
+    write(config, "loanRulesEvaluationQueueSize", Integer.getInteger("loanRulesEvaluationQueueSize"));
+    write(config, "loanRulesEvaluationTimeout", Integer.getInteger("loanRulesEvaluationTimeout"));
+    write(config, "loanRulesTenantMaxIdle", Integer.getInteger("loanRulesTenantMaxIdle"));
+    write(config, "loanRulesTenantMaxMegabytes", Integer.getInteger("loanRulesTenantMaxMegabytes"));
+    config.put("storageGetCoalescing", Boolean.getBoolean("storageGetCoalescing"));
+    write(config, "storageQueryMaxUrlLength", Integer.getInteger("storageQueryMaxUrlLength"));
+    write(config, "storageQueryParallelism", Integer.getInteger("storageQueryParallelism"));
+
+    for (String name : new String[] { MAX_POOL_SIZE, MAX_WAIT_QUEUE_SIZE, PIPELINING_LIMIT,
+      IDLE_TIMEOUT, HTTP2_MAX_POOL_SIZE, HTTP2_MULTIPLEXING_LIMIT }) {
+
+      write(config, name, Integer.getInteger(name));
+    }
+
+    for (String name : new String[] { KEEP_ALIVE, PIPELINING, HTTP2 }) {
+      String value = System.getProperty(name);
+      write(config, name, value == null ? null : Boolean.valueOf(value));
+    }
 
     CompletableFuture<String> deployed =
       vertxAssistant.deployVerticle(CirculationVerticle.class, config);
@@ -155,14 +155,9 @@ public class LoanRepository {
 
   public CompletableFuture<HttpResult<MultipleRecords<Loan>>> findBy(String query) {
     //TODO: Should fetch users for all loans
-    return loansStorageClient.getManyWithRawQueryStringParameters(query)
-      .thenApply(this::mapResponseToLoans)
+    return loansStorageClient.getManyWithRawQueryStringParameters(query, Loan::from, "loans")
       .thenComposeAsync(loans -> itemRepository.fetchItemsFor(loans, Loan::withItem));
   }
-
-  private HttpResult<MultipleRecords<Loan>> mapResponseToLoans(Response response) {
-    return MultipleRecords.from(response, Loan::from, "loans");
-  }
   
   
 
@@ -194,8 +189,7 @@ public class LoanRepository {
     log.info("Querying open loan with query {}", openLoans);
 
     return CqlHelper.encodeQuery(openLoans).after(query ->
-      loansStorageClient.getMany(query, 1, 0)
-        .thenApply(this::mapResponseToLoans));
+      loansStorageClient.getMany(query, 1, 0, Loan::from, "loans"));
   }
 
   CompletableFuture<HttpResult<MultipleRecords<Request>>> findOpenLoansFor(
@@ -218,14 +212,11 @@ public class LoanRepository {
       return completedFuture(succeeded(multipleRequests));
     }
 
-    HttpResult<String> queryResult = CqlHelper.multipleRecordsCqlQuery(
-      String.format("status.name==\"%s\" and ", "Open"),
-      "itemId", itemsToFetchLoansFor);
-
-    return queryResult.after(query -> loansStorageClient.getMany(query, requests.size(), 0)
-        .thenApply(this::mapResponseToLoans)
+    return loansStorageClient.getManyByIndex(
+        String.format("status.name==\"%s\" and ", "Open"),
+        "itemId", itemsToFetchLoansFor, Loan::from, "loans")
       .thenApply(multipleLoansResult -> multipleLoansResult.next(
-        loans -> matchLoansToRequests(multipleRequests, loans))));
+        loans -> matchLoansToRequests(multipleRequests, loans)));
   }
 
   private HttpResult<MultipleRecords<Request>> matchLoansToRequests(
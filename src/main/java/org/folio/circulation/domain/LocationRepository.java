@@ -33,11 +33,7 @@ public class LocationRepository {
       .filter(StringUtils::isNotBlank)
       .collect(Collectors.toList());
 
-    String locationsQuery = CqlHelper.multipleRecordsCqlQuery(locationIds);
-
-    return locationsStorageClient.getMany(locationsQuery, locationIds.size(), 0)
-      .thenApply(response ->
-        MultipleRecords.from(response, identity(), "locations"))
+    return locationsStorageClient.getManyByIds(locationIds, identity(), "locations")
       .thenApply(r -> r.map(locations ->
         locations.toMap(record -> record.getString("id"))));
   }
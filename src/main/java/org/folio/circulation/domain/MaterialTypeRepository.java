@@ -33,11 +33,7 @@ public class MaterialTypeRepository {
       .filter(StringUtils::isNotBlank)
       .collect(Collectors.toList());
 
-    String materialTypesQuery = CqlHelper.multipleRecordsCqlQuery(materialTypeIds);
-
-    return materialTypesStorageClient.getMany(materialTypesQuery, materialTypeIds.size(), 0)
-      .thenApply(response ->
-        MultipleRecords.from(response, identity(), "mtypes"))
+    return materialTypesStorageClient.getManyByIds(materialTypeIds, identity(), "mtypes")
       .thenApply(r -> r.map(materialTypes ->
         materialTypes.toMap(record -> record.getString("id"))));
   }
@@ -39,8 +39,10 @@ public class MultipleRecords<T> {
     String recordsPropertyName) {
 
     if(response != null) {
-      log.info("Response received, status code: {} body: {}",
-        response.getStatusCode(), response.getBody());
+      if(log.isDebugEnabled()) {
+        log.debug("Response received, status code: {} body: {}",
+          response.getStatusCode(), response.getBody());
+      }
 
       if (response.getStatusCode() != 200) {
         return failed(new ServerErrorFailure(
@@ -9,9 +9,7 @@ import java.util.stream.Collectors;
 
 import org.folio.circulation.support.Clients;
 import org.folio.circulation.support.CollectionResourceClient;
-import org.folio.circulation.support.CqlHelper;
 import org.folio.circulation.support.HttpResult;
-import org.folio.circulation.support.http.client.Response;
 
 
 class PatronGroupRepository {
@@ -27,10 +25,8 @@ class PatronGroupRepository {
     return result.after(request -> {
       final ArrayList<String> groupsToFetch = getGroupsFromUsers(request);
 
-      final String query = CqlHelper.multipleRecordsCqlQuery(groupsToFetch);
-
-      return patronGroupsStorageClient.getMany(query, groupsToFetch.size(), 0)
-        .thenApply(this::mapResponseToPatronGroups)
+      return patronGroupsStorageClient.getManyByIds(groupsToFetch,
+        PatronGroup::from, "usergroups")
         .thenApply(multiplePatronGroupsResult -> multiplePatronGroupsResult.next(
           patronGroups -> HttpResult.of(() -> matchGroupsToUsers(request, patronGroups))));
     });
@@ -47,17 +43,11 @@ class PatronGroupRepository {
       .distinct()
       .collect(Collectors.toList());
 
-    final String query = CqlHelper.multipleRecordsCqlQuery(groupsToFetch);
-
-    return patronGroupsStorageClient.getMany(query, groupsToFetch.size(), 0)
-      .thenApply(this::mapResponseToPatronGroups)
+    return patronGroupsStorageClient.getManyByIds(groupsToFetch,
+        PatronGroup::from, "usergroups")
       .thenApply(multiplePatronGroupsResult -> multiplePatronGroupsResult.next(
         patronGroups -> matchGroupsToUsers(multipleRequests, patronGroups)));
   }
-    
-  private HttpResult<MultipleRecords<PatronGroup>> mapResponseToPatronGroups(Response response) {
-    return MultipleRecords.from(response, PatronGroup::from, "usergroups");
-  }
 
   private ArrayList<String> getGroupsFromUsers(Request request) {
     final ArrayList<String> groupsToFetch = new ArrayList<>();
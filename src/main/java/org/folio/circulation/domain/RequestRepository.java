@@ -12,7 +12,6 @@ import org.folio.circulation.support.HttpResult;
 import org.folio.circulation.support.ItemRepository;
 import org.folio.circulation.support.SingleRecordFetcher;
 import org.folio.circulation.support.SingleRecordMapper;
-import org.folio.circulation.support.http.client.Response;
 
 import io.vertx.core.json.JsonObject;
 
@@ -49,8 +48,8 @@ public class RequestRepository {
   }
 
   public CompletableFuture<HttpResult<MultipleRecords<Request>>> findBy(String query) {
-    return requestsStorageClient.getManyWithRawQueryStringParameters(query)
-      .thenApply(this::mapResponseToRequests)
+    return requestsStorageClient.getManyWithRawQueryStringParameters(query,
+        Request::from, "requests")
       .thenComposeAsync(result -> itemRepository.fetchItemsFor(result, Request::withItem))
       .thenComposeAsync(result -> result.after(loanRepository::findOpenLoansFor))
       .thenComposeAsync(result -> result.after(servicePointRepository::findServicePointsForRequests))
@@ -63,16 +62,11 @@ public class RequestRepository {
     String query,
     Integer pageLimit) {
 
-    return requestsStorageClient.getMany(query, pageLimit, 0)
-      .thenApply(this::mapResponseToRequests)
+    return requestsStorageClient.getMany(query, pageLimit, 0, Request::from, "requests")
       .thenComposeAsync(requests ->
         itemRepository.fetchItemsFor(requests, Request::withItem));
   }
 
-  private HttpResult<MultipleRecords<Request>> mapResponseToRequests(Response response) {
-    return MultipleRecords.from(response, Request::from, "requests");
-  }
-
   public CompletableFuture<HttpResult<Boolean>> exists(
     RequestAndRelatedRecords requestAndRelatedRecords) {
 
@@ -15,10 +15,8 @@ import java.util.stream.Stream;
 
 import org.folio.circulation.support.Clients;
 import org.folio.circulation.support.CollectionResourceClient;
-import org.folio.circulation.support.CqlHelper;
 import org.folio.circulation.support.FetchSingleRecord;
 import org.folio.circulation.support.HttpResult;
-import org.folio.circulation.support.http.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,9 +52,14 @@ public class ServicePointRepository {
     return getServicePointById(request.getPickupServicePointId());
   } 
   
-  public CompletableFuture<HttpResult<Loan>> findServicePointsForLoan(HttpResult<Loan> loanResult) {    
-    return findCheckinServicePointForLoan(loanResult)
-        .thenComposeAsync(this::findCheckoutServicePointForLoan);   
+  public CompletableFuture<HttpResult<Loan>> findServicePointsForLoan(HttpResult<Loan> loanResult) {
+    // both are requested before either arrives, so that the GETs can be batched
+    CompletableFuture<HttpResult<Loan>> withCheckin = findCheckinServicePointForLoan(loanResult);
+    CompletableFuture<HttpResult<Loan>> withCheckout = findCheckoutServicePointForLoan(loanResult);
+
+    return withCheckin.thenCombine(withCheckout, (checkinResult, checkoutResult) ->
+      checkinResult.combine(checkoutResult, (checkinLoan, checkoutLoan) ->
+        checkinLoan.withCheckoutServicePoint(checkoutLoan.getCheckoutServicePoint())));
   }
   
   private CompletableFuture<HttpResult<Loan>> findCheckinServicePointForLoan(HttpResult<Loan> loanResult) {
@@ -125,10 +128,8 @@ public class ServicePointRepository {
       return completedFuture(succeeded(multipleLoans));
     }
     
-    String query = CqlHelper.multipleRecordsCqlQuery(servicePointsToFetch);
-    
-    return servicePointsStorageClient.getMany(query, loans.size(), 0)
-        .thenApply(this::mapResponseToServicePoints)
+    return servicePointsStorageClient.getManyByIds(servicePointsToFetch,
+        ServicePoint::from, "servicepoints")
         .thenApply(multipleServicePointsResult -> multipleServicePointsResult.next(
           multipleServicePoints -> {
             List<Loan> newLoanList = new ArrayList<>();
@@ -167,10 +168,8 @@ public class ServicePointRepository {
       return completedFuture(succeeded(multipleRequests));
     }
     
-    String query = CqlHelper.multipleRecordsCqlQuery(servicePointsToFetch);
-
-    return servicePointsStorageClient.getMany(query, requests.size(), 0)
-        .thenApply(this::mapResponseToServicePoints)
+    return servicePointsStorageClient.getManyByIds(servicePointsToFetch,
+        ServicePoint::from, "servicepoints")
         .thenApply(multipleServicePointsResult -> multipleServicePointsResult.next(
           multipleServicePoints -> {
             List<Request> newRequestList = new ArrayList<>();
@@ -199,8 +198,4 @@ public class ServicePointRepository {
           }));
   }
   
-  private HttpResult<MultipleRecords<ServicePoint>> mapResponseToServicePoints(Response response) {
-    return MultipleRecords.from(response, ServicePoint::from, "servicepoints");
-  }
-  
 }
@@ -14,11 +14,9 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.folio.circulation.support.Clients;
 import org.folio.circulation.support.CollectionResourceClient;
-import org.folio.circulation.support.CqlHelper;
 import org.folio.circulation.support.FetchSingleRecord;
 import org.folio.circulation.support.HttpResult;
 import org.folio.circulation.support.ValidationErrorFailure;
-import org.folio.circulation.support.http.client.Response;
 import org.folio.circulation.support.http.server.ValidationError;
 
 public class UserRepository {
@@ -72,8 +70,9 @@ public class UserRepository {
     String barcode,
     String propertyName) {
 
-    return usersStorageClient.getMany(String.format("barcode==%s", barcode), 1, 0)
-      .thenApply(response -> MultipleRecords.from(response, User::new, "users")
+    return usersStorageClient.getMany(String.format("barcode==%s", barcode), 1, 0,
+        User::new, "users")
+      .thenApply(result -> result
         .map(MultipleRecords::getRecords)
         .map(users -> users.stream().findFirst())
         .next(user -> user.map(HttpResult::succeeded).orElseGet(() -> failed(failure(
@@ -91,10 +90,7 @@ public class UserRepository {
       .distinct()
       .collect(Collectors.toList());
 
-    final String query = CqlHelper.multipleRecordsCqlQuery(usersToFetch);
-
-    return usersStorageClient.getMany(query, requests.size(), 0)
-      .thenApply(this::mapResponseToUsers)
+    return usersStorageClient.getManyByIds(usersToFetch, User::from, "users")
       .thenApply(multipleUsersResult -> multipleUsersResult.next(
         multipleUsers -> HttpResult.of(() ->
           multipleRequests.mapRecords(request ->
@@ -126,8 +122,4 @@ public class UserRepository {
       .withProxy(userMap.getOrDefault(request.getProxyUserId(), null));
   }
 
-
-  private HttpResult<MultipleRecords<User>> mapResponseToUsers(Response response) {
-    return MultipleRecords.from(response, User::from, "users");
-  }
 }
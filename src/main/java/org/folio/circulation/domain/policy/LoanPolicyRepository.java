@@ -131,9 +131,6 @@ public class LoanPolicyRepository {
     Item item,
     User user) {
 
-    CompletableFuture<HttpResult<String>> findLoanPolicyCompleted
-      = new CompletableFuture<>();
-
     if(item.isNotFound()) {
       return CompletableFuture.completedFuture(HttpResult.failed(
         new ServerErrorFailure("Unable to apply loan rules for unknown item")));
@@ -151,12 +148,32 @@ public class LoanPolicyRepository {
 
     String patronGroupId = user.getPatronGroupId();
 
-    CompletableFuture<Response> loanRulesResponse = new CompletableFuture<>();
-
     log.info(
       "Applying loan rules for material type: {}, patron group: {}, loan type: {}, location: {}",
       materialTypeId, patronGroupId, loanTypeId, locationId);
 
+    return loanRulesClient.applyRulesLocally(loanTypeId, locationId,
+      materialTypeId, patronGroupId)
+      .thenCompose(localPolicyId -> {
+        if(localPolicyId != null) {
+          return CompletableFuture.completedFuture(succeeded(localPolicyId));
+        }
+
+        return applyRules(loanTypeId, locationId, materialTypeId, patronGroupId);
+      });
+  }
+
+  private CompletableFuture<HttpResult<String>> applyRules(
+    String loanTypeId,
+    String locationId,
+    String materialTypeId,
+    String patronGroupId) {
+
+    CompletableFuture<HttpResult<String>> findLoanPolicyCompleted
+      = new CompletableFuture<>();
+
+    CompletableFuture<Response> loanRulesResponse = new CompletableFuture<>();
+
     loanRulesClient.applyRules(loanTypeId, locationId, materialTypeId,
       patronGroupId, ResponseHandler.any(loanRulesResponse));
 
@@ -42,8 +42,9 @@ public class ProxyRelationshipValidator {
     UserRelatedRecord record) {
 
     return proxyRelationshipQuery(record.getProxyUserId(), record.getUserId())
-      .after(query -> proxyRelationshipsClient.getMany(query, 1000, 0)
-        .thenApply(r -> MultipleRecords.from(r, ProxyRelationship::new, "proxiesFor")
+      .after(query -> proxyRelationshipsClient.getMany(query, 1000, 0,
+          ProxyRelationship::new, "proxiesFor")
+        .thenApply(r -> r
         .map(MultipleRecords::getRecords)
         .map(relationships -> relationships.stream()
           .noneMatch(ProxyRelationship::isActive))));
@@ -0,0 +1,181 @@
+package org.folio.circulation.loanrules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Calculates the loan policy without Drools using an in-memory index of the loan rules.
+ * <p>
+ * The rules are sorted by salience, highest first. For each criterium type there is a
+ * bit set per name that marks the rules matching that name, and one bit set that marks
+ * the rules matching any other name. The matching rules of a request are the intersection
+ * of the bit sets of its ids, their order is the priority order.
+ * <p>
+ * An instance is immutable and can be used by several threads at the same time.
+ */
+public class CompiledLoanRules implements LoanRulesEngine {
+  /** criterium types in the order of the ids of {@link #matching(String...)} */
+  private static final String [] TYPES = { "m", "t", "g", "s", "a", "b", "c" };
+
+  /** the rules, highest salience first */
+  private final LoanRule [] rules;
+  /** the index for each criterium type, in the same order as TYPES */
+  private final CriteriumIndex [] indexes = new CriteriumIndex[TYPES.length];
+
+  /**
+   * The rules matching each name of one criterium type.
+   */
+  private static class CriteriumIndex {
+    /** rules matching a name that is not a key of byName */
+    final BitSet otherName = new BitSet();
+    /** rules matching the name */
+    final Map<String,BitSet> byName = new HashMap<>();
+
+    CriteriumIndex(String type, LoanRule [] rules) {
+      Map<String,List<Integer>> rulesByName = new HashMap<>();
+      for (int i=0; i<rules.length; i++) {
+        if (rules[i].matches(type, null)) {
+          otherName.set(i);
+        }
+        for (Criterium criterium : rules[i].criteria) {
+          if (! criterium.type.equals(type)) {
+            continue;
+          }
+          for (String name : criterium.names) {
+            rulesByName.computeIfAbsent(name, key -> new ArrayList<>()).add(i);
+          }
+        }
+      }
+      rulesByName.forEach((name, ruleIndexes) -> {
+        BitSet bitSet = (BitSet) otherName.clone();
+        for (int i : ruleIndexes) {
+          bitSet.set(i, rules[i].matches(type, name));
+        }
+        byName.put(name, bitSet);
+      });
+    }
+
+    BitSet matching(String id) {
+      return byName.getOrDefault(id, otherName);
+    }
+  }
+
+  /**
+   * Create the index for a loan rules file.
+   * @param loanRulesAsTextFile  loan rules in FOLIO text format
+   * @throws LoanRulesException  on a syntax error in the loan rules
+   */
+  public CompiledLoanRules(String loanRulesAsTextFile) {
+    List<LoanRule> list = new ArrayList<>(Text2Drools.loanRules(loanRulesAsTextFile));
+    list.sort(Comparator.comparingInt((LoanRule rule) -> rule.salience).reversed());
+    rules = list.toArray(new LoanRule[0]);
+    for (int i=0; i<TYPES.length; i++) {
+      indexes[i] = new CriteriumIndex(TYPES[i], rules);
+    }
+  }
+
+  /**
+   * The rules matching the ids.
+   * @param ids  one id for each criterium type, in the order of TYPES
+   * @return bit set of the indexes into rules
+   */
+  private BitSet matching(String... ids) {
+    BitSet bitSet = (BitSet) indexes[0].matching(ids[0]).clone();
+    for (int i=1; i<indexes.length && ! bitSet.isEmpty(); i++) {
+      bitSet.and(indexes[i].matching(ids[i]));
+    }
+    return bitSet;
+  }
+
+  /**
+   * The rules matching an id of one of the four dimensions of the apply parameters.
+   * @param dimension  0 = item type, 1 = loan type, 2 = patron group, 3 = shelving location
+   * @param id  the id
+   * @param locationIndex  where to look up the campus, branch and collection of a shelving location
+   * @return bit set of the indexes into rules, must not be modified
+   */
+  BitSet matching(int dimension, String id, LocationIndex locationIndex) {
+    if (dimension < 3) {
+      return indexes[dimension].matching(id);
+    }
+    BitSet bitSet = (BitSet) indexes[3].matching(id).clone();
+    bitSet.and(indexes[4].matching(locationIndex.campus(id)));
+    bitSet.and(indexes[5].matching(locationIndex.branch(id)));
+    bitSet.and(indexes[6].matching(locationIndex.collection(id)));
+    return bitSet;
+  }
+
+  /**
+   * @param index  index into the rules
+   * @return the rule, the rules are sorted by salience, highest first
+   */
+  LoanRule rule(int index) {
+    return rules[index];
+  }
+
+  /**
+   * @return number of rules
+   */
+  int size() {
+    return rules.length;
+  }
+
+  /**
+   * The loan policy for each combination of the ids, without a location hierarchy.
+   * @param itemTypes  item type ids
+   * @param loanTypes  loan type ids
+   * @param patronGroups  patron group ids
+   * @param shelvingLocations  shelving location ids
+   * @return the matrix that can be written in chunks
+   */
+  public PolicyMatrix policyMatrix(List<String> itemTypes, List<String> loanTypes,
+      List<String> patronGroups, List<String> shelvingLocations) {
+    return policyMatrix(itemTypes, loanTypes, patronGroups, shelvingLocations, LocationIndex.EMPTY);
+  }
+
+  /**
+   * The loan policy for each combination of the ids.
+   * @param itemTypes  item type ids
+   * @param loanTypes  loan type ids
+   * @param patronGroups  patron group ids
+   * @param shelvingLocations  shelving location ids
+   * @param locationIndex  where to look up the campus, branch and collection of a shelving location
+   * @return the matrix that can be written in chunks
+   */
+  public PolicyMatrix policyMatrix(List<String> itemTypes, List<String> loanTypes,
+      List<String> patronGroups, List<String> shelvingLocations, LocationIndex locationIndex) {
+    return new PolicyMatrix(this, itemTypes, loanTypes, patronGroups, shelvingLocations, locationIndex);
+  }
+
+  @Override
+  public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection) {
+    int first = matching(itemType, loanType, patronGroup, shelvingLocation,
+        campus, branch, collection).nextSetBit(0);
+    if (first < 0) {
+      return new Match();
+    }
+    return new Match(rules[first].loanPolicyId, rules[first].line);
+  }
+
+  @Override
+  public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection) {
+    BitSet bitSet = matching(itemType, loanType, patronGroup, shelvingLocation, campus, branch, collection);
+    JsonArray array = new JsonArray();
+    for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+      JsonObject json = new JsonObject();
+      json.put("loanPolicyId", rules[i].loanPolicyId);
+      json.put("loanRuleLine", rules[i].line);
+      array.add(json);
+    }
+    return array;
+  }
+}
@@ -0,0 +1,49 @@
+package org.folio.circulation.loanrules;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A single criterium of a loan rule like <code>m book dvd</code>,
+ * <code>g !visitor</code> or <code>t all</code>.
+ */
+class Criterium {
+  /** criterium type, one of t, a, b, c, s, m, g */
+  final String type;
+  /** the names listed, empty for all */
+  final Set<String> names;
+  /** whether the names are negated */
+  final boolean negated;
+
+  /**
+   * Create a criterium.
+   * @param type  criterium type, one of t, a, b, c, s, m, g
+   * @param names  the names listed, empty for all
+   * @param negated  whether the names are negated
+   */
+  Criterium(String type, List<String> names, boolean negated) {
+    this.type = type;
+    this.names = Collections.unmodifiableSet(new HashSet<>(names));
+    this.negated = negated;
+  }
+
+  /**
+   * @return whether this criterium matches any id
+   */
+  boolean isAll() {
+    return names.isEmpty();
+  }
+
+  /**
+   * @param id  the id to check
+   * @return whether this criterium matches the id
+   */
+  boolean matches(String id) {
+    if (isAll()) {
+      return true;
+    }
+    return names.contains(id) != negated;
+  }
+}
@@ -1,9 +1,14 @@
 package org.folio.circulation.loanrules;
 
+import java.util.UUID;
+
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.KieRepository;
 import org.kie.api.builder.Message.Level;
+import org.kie.api.builder.ReleaseId;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
 
@@ -11,14 +16,16 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 /**
- * Holds a Drools kieSession to calculate a loan policy.
+ * Holds a Drools kieBase to calculate a loan policy.
+ * <p>
+ * Each calculation uses its own kieSession and its own Match, therefore
+ * several threads can use the same instance at the same time.
  */
-public class Drools {
+public class Drools implements LoanRulesEngine {
   // https://docs.jboss.org/drools/release/6.2.0.CR1/drools-docs/html/ch19.html
   // http://www.deepakgaikwad.net/index.php/2016/05/16/drools-tutorial-beginners.html
 
-  private Match match = new Match();
-  private KieContainer kieContainer;
+  private final KieBase kieBase;
 
   /**
    * Create the Drools kieSession based on a String containing a drools file.
@@ -26,43 +33,67 @@ public class Drools {
    */
   public Drools(String drools) {
     KieServices kieServices = KieServices.Factory.get();
+    // a release id of its own, the default release id of the global KieRepository
+    // would be shared with builds running at the same time
+    ReleaseId releaseId = kieServices.newReleaseId(
+        "org.folio.circulation", "loan-rules-" + UUID.randomUUID(), "1.0.0");
     KieFileSystem kfs = kieServices.newKieFileSystem();
+    kfs.generateAndWritePomXML(releaseId);
     kfs.write("src/main/resources/loanrules/loan-rules.drl", drools);
     KieBuilder kieBuilder = kieServices.newKieBuilder(kfs);
     kieBuilder.buildAll();
-    if (kieBuilder.getResults().hasMessages(Level.ERROR)) {
-      throw new IllegalArgumentException("Drools build errors:\n" + kieBuilder.getResults().toString());
+    KieRepository kieRepository = kieServices.getRepository();
+    try {
+      if (kieBuilder.getResults().hasMessages(Level.ERROR)) {
+        throw new IllegalArgumentException("Drools build errors:\n" + kieBuilder.getResults().toString());
+      }
+      KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+      kieBase = kieContainer.getKieBase();
+    } finally {
+      // the kieBase doesn't need the module, don't keep one module per build in the repository
+      kieRepository.removeKieModule(releaseId);
     }
-    kieContainer = kieServices.newKieContainer(kieServices.getRepository().getDefaultReleaseId());
   }
 
-  private KieSession createSession(String itemType, String loanType, String patronGroup, String shelvingLocation) {
-    KieSession kieSession = kieContainer.newKieSession();
-    match.loanPolicyId = null;
+  private KieSession createSession(Match match,
+      String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection) {
+
+    KieSession kieSession = kieBase.newKieSession();
     kieSession.setGlobal("match", match);
     kieSession.insert(new ItemType(itemType));
     kieSession.insert(new LoanType(loanType));
     kieSession.insert(new PatronGroup(patronGroup));
     kieSession.insert(new ShelvingLocation(shelvingLocation));
-    kieSession.insert(new CampusLocation(""));
-    kieSession.insert(new BranchLocation(""));
-    kieSession.insert(new CollectionLocation(""));
+    kieSession.insert(new CampusLocation(campus));
+    kieSession.insert(new BranchLocation(branch));
+    kieSession.insert(new CollectionLocation(collection));
     return kieSession;
   }
 
   /**
-   * Calculate the loan policy for itemTypeName and loanTypeName.
+   * Find the matching rule with the highest priority.
    * @param itemType the name of the item type
    * @param loanType the name of the loan type
    * @param patronGroup group the patron belongs to
    * @param shelvingLocation - item's shelving location
-   * @return the name of the loan policy
+   * @param campus - campus of the item's shelving location
+   * @param branch - branch of the item's shelving location
+   * @param collection - collection of the item's shelving location
+   * @return the loan policy and line number of the rule, null and 0 if none matches
    */
-  public String loanPolicy(String itemType, String loanType, String patronGroup, String shelvingLocation) {
-    KieSession kieSession = createSession(itemType, loanType, patronGroup, shelvingLocation);
-    kieSession.fireAllRules();
-    kieSession.dispose();
-    return match.loanPolicyId;
+  @Override
+  public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection) {
+    Match match = new Match();
+    KieSession kieSession = createSession(match, itemType, loanType, patronGroup, shelvingLocation,
+        campus, branch, collection);
+    try {
+      kieSession.fireAllRules();
+    } finally {
+      kieSession.dispose();
+    }
+    return match;
   }
 
   /**
@@ -72,18 +103,28 @@ public class Drools {
    * @param loanType the item's loan type
    * @param patronGroup group the patron belongs to
    * @param shelvingLocation - item's shelving location
+   * @param campus - campus of the item's shelving location
+   * @param branch - branch of the item's shelving location
+   * @param collection - collection of the item's shelving location
    * @return matches, each match has a loanPolicyId and a loanRuleLine field
    */
-  public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation) {
-    KieSession kieSession = createSession(itemType, loanType, patronGroup, shelvingLocation);
+  @Override
+  public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection) {
+    Match match = new Match();
+    KieSession kieSession = createSession(match, itemType, loanType, patronGroup, shelvingLocation,
+        campus, branch, collection);
     JsonArray array = new JsonArray();
-    while (kieSession.fireAllRules() > 0) {
-      JsonObject json = new JsonObject();
-      json.put("loanPolicyId", match.loanPolicyId);
-      json.put("loanRuleLine", match.lineNumber);
-      array.add(json);
+    try {
+      while (kieSession.fireAllRules() > 0) {
+        JsonObject json = new JsonObject();
+        json.put("loanPolicyId", match.loanPolicyId);
+        json.put("loanRuleLine", match.lineNumber);
+        array.add(json);
+      }
+    } finally {
+      kieSession.dispose();
     }
-    kieSession.dispose();
     return array;
   }
 
@@ -0,0 +1,34 @@
+package org.folio.circulation.loanrules;
+
+import java.util.function.Consumer;
+
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A {@link LoanRulesChannel} on the Vert.x event bus. The announcements reach all
+ * module instances of a clustered Vert.x, and only the local instance otherwise.
+ */
+public class EventBusLoanRulesChannel implements LoanRulesChannel {
+  /** event bus address of the announcements */
+  public static final String ADDRESS = "org.folio.circulation.loan-rules";
+
+  private final EventBus eventBus;
+
+  /**
+   * @param eventBus  where to publish and subscribe
+   */
+  public EventBusLoanRulesChannel(EventBus eventBus) {
+    this.eventBus = eventBus;
+  }
+
+  @Override
+  public void publish(JsonObject announcement) {
+    eventBus.publish(ADDRESS, announcement);
+  }
+
+  @Override
+  public void subscribe(Consumer<JsonObject> listener) {
+    eventBus.<JsonObject>consumer(ADDRESS, message -> listener.accept(message.body()));
+  }
+}
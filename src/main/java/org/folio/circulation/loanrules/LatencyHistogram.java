@@ -0,0 +1,104 @@
+package org.folio.circulation.loanrules;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Histogram of durations with buckets of powers of two microseconds.
+ * <p>
+ * Bucket 0 counts durations below 1 µs, bucket i counts durations of at least
+ * 2^(i-1) and below 2^i µs. Recording is lock-free and can be called by several
+ * threads at the same time.
+ */
+public class LatencyHistogram {
+  /** the last bucket also counts all longer durations, 2^31 µs is about 36 minutes */
+  private static final int BUCKETS = 32;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Record a duration.
+   * @param nanos  duration in nanoseconds, as the difference of two System.nanoTime() values
+   */
+  public void record(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+    int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    buckets.incrementAndGet(bucket);
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  /**
+   * @return number of recorded durations
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @param bucket  the bucket index
+   * @return the exclusive upper bound of the bucket in microseconds
+   */
+  private static long upperBoundMicros(int bucket) {
+    return 1L << bucket;
+  }
+
+  /**
+   * The upper bound of the bucket that contains the percentile.
+   * @param counts  the counts of the buckets
+   * @param total  the sum of counts
+   * @param percent  the percentile, 0 to 100
+   * @return exclusive upper bound in microseconds, 0 if total is 0
+   */
+  private static long percentileMicros(long [] counts, long total, int percent) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (total * percent + 99) / 100;
+    long sum = 0;
+    for (int i=0; i<counts.length; i++) {
+      sum += counts[i];
+      if (sum >= rank) {
+        return upperBoundMicros(i);
+      }
+    }
+    return upperBoundMicros(counts.length - 1);
+  }
+
+  /**
+   * The statistics as JSON. The percentiles are the upper bounds of the buckets
+   * that contain them, the buckets only list those with a count.
+   * @return count, mean, max, p50, p90, p99 and buckets in microseconds
+   */
+  public JsonObject toJson() {
+    long [] counts = new long [BUCKETS];
+    long total = 0;
+    JsonArray bucketArray = new JsonArray();
+    for (int i=0; i<BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+      if (counts[i] > 0) {
+        bucketArray.add(new JsonObject()
+            .put("lessThanMicroseconds", upperBoundMicros(i))
+            .put("count", counts[i]));
+      }
+    }
+    long n = getCount();
+    return new JsonObject()
+        .put("count", n)
+        .put("meanMicroseconds", n == 0 ? 0 : totalNanos.sum() / n / 1000)
+        .put("maxMicroseconds", maxNanos.get() / 1000)
+        .put("p50Microseconds", percentileMicros(counts, total, 50))
+        .put("p90Microseconds", percentileMicros(counts, total, 90))
+        .put("p99Microseconds", percentileMicros(counts, total, 99))
+        .put("buckets", bucketArray);
+  }
+}
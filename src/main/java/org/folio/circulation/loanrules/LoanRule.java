@@ -0,0 +1,41 @@
+package org.folio.circulation.loanrules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A loan rule with its criteria, including the criteria of the enclosing lines,
+ * as generated by {@link Text2Drools}.
+ */
+class LoanRule {
+  /** line number of the rule in the loan rules file */
+  final int line;
+  /** priority of the rule, the highest salience wins */
+  final int salience;
+  /** loan policy of the rule */
+  final String loanPolicyId;
+  /** criteria that all must match, empty for the fallback-policy */
+  final List<Criterium> criteria;
+
+  LoanRule(int line, int salience, String loanPolicyId, List<Criterium> criteria) {
+    this.line = line;
+    this.salience = salience;
+    this.loanPolicyId = loanPolicyId;
+    this.criteria = Collections.unmodifiableList(new ArrayList<>(criteria));
+  }
+
+  /**
+   * @param type  criterium type, one of t, a, b, c, s, m, g
+   * @param id  the id to check
+   * @return whether all criteria of the type match the id
+   */
+  boolean matches(String type, String id) {
+    for (Criterium criterium : criteria) {
+      if (criterium.type.equals(type) && ! criterium.matches(id)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
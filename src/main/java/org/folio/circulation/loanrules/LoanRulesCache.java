@@ -0,0 +1,195 @@
+package org.folio.circulation.loanrules;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Bounded least recently used cache of the results of a loan rules engine.
+ * <p>
+ * The key contains the hash of the loan rules text so that a result calculated
+ * by an engine of outdated loan rules is never returned for the current loan rules.
+ */
+public class LoanRulesCache {
+  private final Map<Key,Object> map;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private static final class Key {
+    private final String loanRulesHash;
+    private final boolean all;
+    private final String itemType;
+    private final String loanType;
+    private final String patronGroup;
+    private final String shelvingLocation;
+    private final String campus;
+    private final String branch;
+    private final String collection;
+    private final int hashCode;
+
+    @SuppressWarnings("squid:S00107")  // one parameter for each field
+    Key(String loanRulesHash, boolean all,
+        String itemType, String loanType, String patronGroup, String shelvingLocation,
+        String campus, String branch, String collection) {
+      this.loanRulesHash = loanRulesHash;
+      this.all = all;
+      this.itemType = itemType;
+      this.loanType = loanType;
+      this.patronGroup = patronGroup;
+      this.shelvingLocation = shelvingLocation;
+      this.campus = campus;
+      this.branch = branch;
+      this.collection = collection;
+      this.hashCode = Objects.hash(loanRulesHash, all, itemType, loanType, patronGroup, shelvingLocation,
+          campus, branch, collection);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (! (o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return all == other.all
+          && Objects.equals(itemType, other.itemType)
+          && Objects.equals(loanType, other.loanType)
+          && Objects.equals(patronGroup, other.patronGroup)
+          && Objects.equals(shelvingLocation, other.shelvingLocation)
+          && Objects.equals(campus, other.campus)
+          && Objects.equals(branch, other.branch)
+          && Objects.equals(collection, other.collection)
+          && Objects.equals(loanRulesHash, other.loanRulesHash);
+    }
+  }
+
+  /**
+   * Create an empty cache.
+   * @param maxSize  maximum number of results, the least recently used result is removed
+   *                 when adding a result to a full cache
+   */
+  public LoanRulesCache(int maxSize) {
+    map = new LinkedHashMap<Key,Object>(16, 0.75f, true) {
+      private static final long serialVersionUID = -2263540342640713455L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key,Object> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  private Object get(Key key) {
+    Object value;
+    synchronized (map) {
+      value = map.get(key);
+    }
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return value;
+  }
+
+  private void put(Key key, Object value) {
+    if (value == null) {
+      return;
+    }
+    synchronized (map) {
+      map.put(key, value);
+    }
+  }
+
+  /**
+   * An engine that returns the cached result if available, otherwise it returns
+   * and caches the result of the engine.
+   * @param loanRulesHash  hash of the loan rules text the engine was created from
+   * @param engine  the engine to use if the result is not cached
+   * @return the caching engine
+   */
+  public LoanRulesEngine cachingEngine(String loanRulesHash, LoanRulesEngine engine) {
+    return new LoanRulesEngine() {
+      @Override
+      public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation,
+          String campus, String branch, String collection) {
+        Key key = new Key(loanRulesHash, false, itemType, loanType, patronGroup, shelvingLocation,
+            campus, branch, collection);
+        Match match = (Match) get(key);
+        if (match != null) {
+          return match;
+        }
+        match = engine.match(itemType, loanType, patronGroup, shelvingLocation,
+            campus, branch, collection);
+        put(key, match);
+        return match;
+      }
+
+      @Override
+      public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation,
+          String campus, String branch, String collection) {
+        Key key = new Key(loanRulesHash, true, itemType, loanType, patronGroup, shelvingLocation,
+            campus, branch, collection);
+        JsonArray matches = (JsonArray) get(key);
+        if (matches == null) {
+          matches = engine.loanPolicies(itemType, loanType, patronGroup, shelvingLocation,
+              campus, branch, collection);
+          put(key, matches.copy());
+          return matches;
+        }
+        // the caller may modify the JsonArray
+        return matches.copy();
+      }
+    };
+  }
+
+  /**
+   * Remove all cached results. This doesn't reset the hit and miss counters.
+   */
+  public void clear() {
+    synchronized (map) {
+      map.clear();
+    }
+  }
+
+  /**
+   * @return number of cached results
+   */
+  public int size() {
+    synchronized (map) {
+      return map.size();
+    }
+  }
+
+  /**
+   * @return how often a result was found in the cache
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return how often a result was not found in the cache
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return size, hits and misses as JSON
+   */
+  public JsonObject getStatistics() {
+    return new JsonObject()
+        .put("size", size())
+        .put("hits", getHits())
+        .put("misses", getMisses());
+  }
+}
@@ -0,0 +1,51 @@
+package org.folio.circulation.loanrules;
+
+import java.util.function.Consumer;
+
+import org.folio.circulation.support.StringUtil;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Announces new loan rules of a tenant to the other module instances so that they
+ * don't serve outdated loan rules until their next reload.
+ * <p>
+ * An announcement is a JSON object with the properties {@link #INSTANCE_ID},
+ * {@link #TENANT_ID}, {@link #LOAN_RULES_HASH} and {@link #LOAN_RULES_AS_TEXT_FILE}.
+ * It is delivered to all listeners, including those of the sending instance.
+ */
+public interface LoanRulesChannel {
+  /** id of the module instance that has saved the loan rules */
+  String INSTANCE_ID = "instanceId";
+  String TENANT_ID = "tenantId";
+  /** SHA-256 hash of the loan rules text */
+  String LOAN_RULES_HASH = LoanRulesSnapshots.LOAN_RULES_HASH;
+  String LOAN_RULES_AS_TEXT_FILE = LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE;
+
+  /**
+   * Send the announcement to all listeners.
+   * @param announcement  the announcement, see {@link #announcement(String, String, String)}
+   */
+  void publish(JsonObject announcement);
+
+  /**
+   * Register a listener for the announcements. The listener may be called on an
+   * event loop thread and must not block.
+   * @param listener  the listener to call for each announcement
+   */
+  void subscribe(Consumer<JsonObject> listener);
+
+  /**
+   * @param instanceId  id of the module instance that has saved the loan rules
+   * @param tenantId  id of the tenant
+   * @param loanRulesAsTextFile  the saved loan rules
+   * @return the announcement of the loan rules
+   */
+  static JsonObject announcement(String instanceId, String tenantId, String loanRulesAsTextFile) {
+    return new JsonObject()
+        .put(INSTANCE_ID, instanceId)
+        .put(TENANT_ID, tenantId)
+        .put(LOAN_RULES_HASH, StringUtil.sha256(loanRulesAsTextFile))
+        .put(LOAN_RULES_AS_TEXT_FILE, loanRulesAsTextFile);
+  }
+}
@@ -0,0 +1,93 @@
+package org.folio.circulation.loanrules;
+
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Calculates the loan policy from compiled loan rules.
+ */
+public interface LoanRulesEngine {
+  /**
+   * Find the matching rule with the highest priority.
+   * @param itemType the item's material type
+   * @param loanType the item's loan type
+   * @param patronGroup group the patron belongs to
+   * @param shelvingLocation - item's shelving location
+   * @param campus - campus of the item's shelving location, "" if unknown
+   * @param branch - branch of the item's shelving location, "" if unknown
+   * @param collection - collection of the item's shelving location, "" if unknown
+   * @return loan policy id and line of the rule, or null and 0 if no rule matches;
+   *         the caller must not modify it
+   */
+  Match match(String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection);
+
+  /**
+   * Calculate the loan policy.
+   * @param itemType the item's material type
+   * @param loanType the item's loan type
+   * @param patronGroup group the patron belongs to
+   * @param shelvingLocation - item's shelving location
+   * @param campus - campus of the item's shelving location, "" if unknown
+   * @param branch - branch of the item's shelving location, "" if unknown
+   * @param collection - collection of the item's shelving location, "" if unknown
+   * @return the id of the loan policy of the matching rule with the highest priority
+   */
+  default String loanPolicy(String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection) {
+    return match(itemType, loanType, patronGroup, shelvingLocation, campus, branch, collection).loanPolicyId;
+  }
+
+  /**
+   * Return all loan policies in the order they match.
+   * @param itemType the item's material type
+   * @param loanType the item's loan type
+   * @param patronGroup group the patron belongs to
+   * @param shelvingLocation - item's shelving location
+   * @param campus - campus of the item's shelving location, "" if unknown
+   * @param branch - branch of the item's shelving location, "" if unknown
+   * @param collection - collection of the item's shelving location, "" if unknown
+   * @return matches, each match has a loanPolicyId and a loanRuleLine field
+   */
+  JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation,
+      String campus, String branch, String collection);
+
+  /**
+   * Find the matching rule with the highest priority without a location hierarchy,
+   * campus, branch and collection are "".
+   * @param itemType the item's material type
+   * @param loanType the item's loan type
+   * @param patronGroup group the patron belongs to
+   * @param shelvingLocation - item's shelving location
+   * @return loan policy id and line of the rule, or null and 0 if no rule matches;
+   *         the caller must not modify it
+   */
+  default Match match(String itemType, String loanType, String patronGroup, String shelvingLocation) {
+    return match(itemType, loanType, patronGroup, shelvingLocation, "", "", "");
+  }
+
+  /**
+   * Calculate the loan policy without a location hierarchy, campus, branch and
+   * collection are "".
+   * @param itemType the item's material type
+   * @param loanType the item's loan type
+   * @param patronGroup group the patron belongs to
+   * @param shelvingLocation - item's shelving location
+   * @return the id of the loan policy of the matching rule with the highest priority
+   */
+  default String loanPolicy(String itemType, String loanType, String patronGroup, String shelvingLocation) {
+    return match(itemType, loanType, patronGroup, shelvingLocation).loanPolicyId;
+  }
+
+  /**
+   * Return all loan policies in the order they match, without a location hierarchy,
+   * campus, branch and collection are "".
+   * @param itemType the item's material type
+   * @param loanType the item's loan type
+   * @param patronGroup group the patron belongs to
+   * @param shelvingLocation - item's shelving location
+   * @return matches, each match has a loanPolicyId and a loanRuleLine field
+   */
+  default JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation) {
+    return loanPolicies(itemType, loanType, patronGroup, shelvingLocation, "", "", "");
+  }
+}
@@ -0,0 +1,183 @@
+package org.folio.circulation.loanrules;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.folio.circulation.support.StringUtil;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Bounded least recently used cache of engines compiled from loan rules text,
+ * keyed by the hash of the text.
+ * <p>
+ * An entry holds the future of the compilation from the moment it starts, so that
+ * concurrent requests for the same loan rules share one compilation. A compilation
+ * that fails is removed so that the next request tries again. The size of an entry
+ * is estimated by the function passed to the constructor.
+ */
+public class LoanRulesEngineCache {
+  private final int maxEntries;
+  private final long maxBytes;
+  private final ToLongFunction<String> estimatedBytes;
+  /** guarded by itself */
+  private final LinkedHashMap<String,Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+  /** guarded by map */
+  private long bytes;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private static final class Entry {
+    private final String loanRulesAsTextFile;
+    private final CompletableFuture<LoanRulesEngine> engine = new CompletableFuture<>();
+    private final long bytes;
+
+    Entry(String loanRulesAsTextFile, long bytes) {
+      this.loanRulesAsTextFile = loanRulesAsTextFile;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * Create an empty cache.
+   * @param maxEntries  maximum number of engines
+   * @param maxBytes  maximum estimated memory of all engines; a single engine
+   *                  that exceeds it is compiled but not cached
+   * @param estimatedBytes  the estimated memory of the engine of loan rules in FOLIO text format
+   */
+  public LoanRulesEngineCache(int maxEntries, long maxBytes, ToLongFunction<String> estimatedBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  /**
+   * Return the cached engine of the loan rules, or start compiling, cache and return it.
+   * The least recently used engines are evicted when a limit is exceeded.
+   * @param loanRulesAsTextFile  loan rules in FOLIO text format
+   * @param compiler  starts creating the engine for the loan rules if not cached
+   * @return the engine, or the running compilation of the engine
+   */
+  public CompletableFuture<LoanRulesEngine> get(String loanRulesAsTextFile,
+      Function<String,CompletableFuture<LoanRulesEngine>> compiler) {
+
+    String hash = StringUtil.sha256(loanRulesAsTextFile);
+    Entry entry;
+    synchronized (map) {
+      entry = map.get(hash);
+      if (entry != null && entry.loanRulesAsTextFile.equals(loanRulesAsTextFile)) {
+        hits.increment();
+        return entry.engine;
+      }
+      misses.increment();
+      entry = new Entry(loanRulesAsTextFile, estimatedBytes.applyAsLong(loanRulesAsTextFile));
+      if (entry.bytes <= maxBytes) {
+        put(hash, entry);
+      }
+    }
+    // compile outside of the lock, other drafts can be looked up meanwhile
+    Entry compiling = entry;
+    CompletableFuture<LoanRulesEngine> compiled;
+    try {
+      compiled = compiler.apply(loanRulesAsTextFile);
+    } catch (Exception e) {
+      compiled = new CompletableFuture<>();
+      compiled.completeExceptionally(e);
+    }
+    compiled.whenComplete((engine, throwable) -> {
+      if (throwable == null) {
+        compiling.engine.complete(engine);
+        return;
+      }
+      synchronized (map) {
+        if (map.remove(hash, compiling)) {
+          bytes -= compiling.bytes;
+        }
+      }
+      compiling.engine.completeExceptionally(throwable);
+    });
+    return entry.engine;
+  }
+
+  /** guarded by map */
+  private void put(String hash, Entry entry) {
+    Entry old = map.put(hash, entry);
+    if (old != null) {
+      bytes -= old.bytes;
+    }
+    bytes += entry.bytes;
+    Iterator<Entry> eldest = map.values().iterator();
+    while (map.size() > maxEntries || bytes > maxBytes) {
+      bytes -= eldest.next().bytes;
+      eldest.remove();
+      evictions.increment();
+    }
+  }
+
+  /**
+   * Remove all engines. This doesn't reset the counters.
+   */
+  public void clear() {
+    synchronized (map) {
+      map.clear();
+      bytes = 0;
+    }
+  }
+
+  /**
+   * @return number of cached engines
+   */
+  public int size() {
+    synchronized (map) {
+      return map.size();
+    }
+  }
+
+  /**
+   * @return estimated memory of all cached engines
+   */
+  public long getBytes() {
+    synchronized (map) {
+      return bytes;
+    }
+  }
+
+  /**
+   * @return how often an engine was found in the cache
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return how often an engine was not found in the cache and had to be compiled
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return how often an engine was removed to stay within the limits
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return size, estimated bytes, hits, misses and evictions as JSON
+   */
+  public JsonObject getStatistics() {
+    return new JsonObject()
+        .put("size", size())
+        .put("bytes", getBytes())
+        .put("hits", getHits())
+        .put("misses", getMisses())
+        .put("evictions", getEvictions());
+  }
+}
@@ -0,0 +1,263 @@
+package org.folio.circulation.loanrules;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Evaluates loan rules on a dedicated pool of {@link LoanRulesEvaluationVerticle} instances
+ * that consume the event bus address {@link #ADDRESS}, so that CPU-bound evaluations
+ * don't block the threads that handle the requests.
+ * <p>
+ * The number of pending evaluations, queued or running, is limited; an evaluation
+ * beyond the limit fails with a RejectedExecutionException at once. An evaluation
+ * whose result doesn't arrive within the timeout fails with a ReplyException, it
+ * counts as pending until it has finished running.
+ */
+public class LoanRulesEvaluationPool {
+  /** event bus address of the evaluations, consumed locally only */
+  public static final String ADDRESS = "org.folio.circulation.loan-rules.evaluate";
+  /** name of the worker pool of the verticles */
+  public static final String WORKER_POOL_NAME = "loan-rules-evaluation";
+  public static final long DEFAULT_TIMEOUT_IN_MILLISECONDS = 30_000;
+
+  private final EventBus eventBus;
+  private final int instances;
+  private final int maxQueueDepth;
+  private final DeliveryOptions deliveryOptions;
+  /** number of queued and running evaluations */
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  /** time between sending an evaluation and the start of the evaluation */
+  private final LatencyHistogram queueLatency = new LatencyHistogram();
+  /** deployment id of the verticles if deployed by {@link #deploy}, null otherwise */
+  private volatile String deploymentId;
+
+  /**
+   * An evaluation sent to the verticles. It never leaves the JVM.
+   */
+  static final class Evaluation {
+    private final Supplier<?> supplier;
+    private final LatencyHistogram queueLatency;
+    private final Runnable onFinished;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final long sent = System.nanoTime();
+    private Object result;
+    private Throwable failure;
+
+    private Evaluation(Supplier<?> supplier, LatencyHistogram queueLatency, Runnable onFinished) {
+      this.supplier = supplier;
+      this.queueLatency = queueLatency;
+      this.onFinished = onFinished;
+    }
+
+    void run() {
+      queueLatency.record(System.nanoTime() - sent);
+      try {
+        result = supplier.get();
+      } catch (Throwable e) {
+        // also an Error like StackOverflowError, the caller gets a reply without waiting for the timeout
+        failure = e;
+      } finally {
+        finish();
+      }
+    }
+
+    /**
+     * Run onFinished, once.
+     */
+    private void finish() {
+      if (finished.compareAndSet(false, true)) {
+        onFinished.run();
+      }
+    }
+  }
+
+  /**
+   * Passes an Evaluation object by reference, no wire format.
+   */
+  private static class LocalCodec implements MessageCodec<Evaluation,Evaluation> {
+    @Override
+    public void encodeToWire(Buffer buffer, Evaluation evaluation) {
+      throw new UnsupportedOperationException("loan rules evaluations are local only");
+    }
+
+    @Override
+    public Evaluation decodeFromWire(int pos, Buffer buffer) {
+      throw new UnsupportedOperationException("loan rules evaluations are local only");
+    }
+
+    @Override
+    public Evaluation transform(Evaluation evaluation) {
+      return evaluation;
+    }
+
+    @Override
+    public String name() {
+      return WORKER_POOL_NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+      return -1;
+    }
+  }
+
+  /**
+   * Create the pool for verticles that have already been deployed.
+   * @param eventBus  the event bus of the verticles
+   * @param instances  number of verticle instances
+   * @param maxQueueDepth  maximum number of queued and running evaluations
+   * @param timeoutInMillis  maximum time to wait for the result of an evaluation
+   */
+  public LoanRulesEvaluationPool(EventBus eventBus, int instances, int maxQueueDepth,
+      long timeoutInMillis) {
+
+    this.eventBus = eventBus;
+    this.instances = instances;
+    this.maxQueueDepth = maxQueueDepth;
+    this.deliveryOptions = new DeliveryOptions().setSendTimeout(timeoutInMillis);
+    eventBus.unregisterDefaultCodec(Evaluation.class);
+    eventBus.registerDefaultCodec(Evaluation.class, new LocalCodec());
+  }
+
+  /**
+   * Deploy the verticles as worker verticles on a worker pool of their own, one thread per instance.
+   * @param vertx  where to deploy
+   * @param instances  number of verticle instances, at least 1
+   * @param maxQueueDepth  maximum number of queued and running evaluations
+   * @return the pool when the verticles are deployed
+   */
+  public static CompletableFuture<LoanRulesEvaluationPool> deploy(Vertx vertx, int instances, int maxQueueDepth) {
+    return deploy(vertx, instances, maxQueueDepth, DEFAULT_TIMEOUT_IN_MILLISECONDS);
+  }
+
+  /**
+   * Deploy the verticles as worker verticles on a worker pool of their own, one thread per instance.
+   * @param vertx  where to deploy
+   * @param instances  number of verticle instances, at least 1
+   * @param maxQueueDepth  maximum number of queued and running evaluations
+   * @param timeoutInMillis  maximum time to wait for the result of an evaluation
+   * @return the pool when the verticles are deployed
+   */
+  public static CompletableFuture<LoanRulesEvaluationPool> deploy(Vertx vertx, int instances,
+      int maxQueueDepth, long timeoutInMillis) {
+
+    CompletableFuture<LoanRulesEvaluationPool> deployed = new CompletableFuture<>();
+    LoanRulesEvaluationPool pool = new LoanRulesEvaluationPool(vertx.eventBus(), instances,
+        maxQueueDepth, timeoutInMillis);
+    DeploymentOptions options = new DeploymentOptions()
+        .setWorker(true)
+        .setInstances(instances)
+        .setWorkerPoolName(WORKER_POOL_NAME)
+        .setWorkerPoolSize(instances);
+    vertx.deployVerticle(LoanRulesEvaluationVerticle.class, options, result -> {
+      if (result.succeeded()) {
+        pool.deploymentId = result.result();
+        deployed.complete(pool);
+      } else {
+        deployed.completeExceptionally(result.cause());
+      }
+    });
+    return deployed;
+  }
+
+  /**
+   * Run the evaluation on one of the verticles.
+   * @param evaluation  the evaluation, it must be thread-safe
+   * @return the result of the evaluation, completed on the caller's Vert.x context if there is one
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> evaluate(Supplier<T> evaluation) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    if (queueDepth.incrementAndGet() > maxQueueDepth) {
+      queueDepth.decrementAndGet();
+      rejected.increment();
+      future.completeExceptionally(new RejectedExecutionException(
+          "Too many loan rules evaluations queued: " + maxQueueDepth));
+      return future;
+    }
+    Evaluation sent = new Evaluation(evaluation, queueLatency, queueDepth::decrementAndGet);
+    eventBus.<Evaluation>send(ADDRESS, sent, deliveryOptions, reply -> {
+      if (reply.failed()) {
+        // after a timeout the evaluation is still queued or running, it finishes itself
+        if (! isTimeout(reply.cause())) {
+          sent.finish();
+        }
+        future.completeExceptionally(reply.cause());
+        return;
+      }
+      completed.increment();
+      Evaluation evaluated = reply.result().body();
+      if (evaluated.failure != null) {
+        future.completeExceptionally(evaluated.failure);
+        return;
+      }
+      future.complete((T) evaluated.result);
+    });
+    return future;
+  }
+
+  /**
+   * Undeploy the verticles deployed by {@link #deploy}, this releases their worker pool
+   * and their event bus consumers.
+   * @param vertx  where the verticles have been deployed
+   * @return when the verticles are undeployed, at once if they haven't been deployed by deploy
+   */
+  public CompletableFuture<Void> undeploy(Vertx vertx) {
+    CompletableFuture<Void> undeployed = new CompletableFuture<>();
+    String id = deploymentId;
+    if (id == null) {
+      undeployed.complete(null);
+      return undeployed;
+    }
+    deploymentId = null;
+    vertx.undeploy(id, result -> {
+      if (result.succeeded()) {
+        undeployed.complete(null);
+      } else {
+        undeployed.completeExceptionally(result.cause());
+      }
+    });
+    return undeployed;
+  }
+
+  private static boolean isTimeout(Throwable throwable) {
+    return throwable instanceof ReplyException
+        && ((ReplyException) throwable).failureType() == ReplyFailure.TIMEOUT;
+  }
+
+  /**
+   * @return number of queued and running evaluations
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * @return instances, maxQueueDepth, queueDepth, completed, rejected and queueLatency
+   */
+  public JsonObject getStatistics() {
+    return new JsonObject()
+        .put("instances", instances)
+        .put("maxQueueDepth", maxQueueDepth)
+        .put("queueDepth", queueDepth.get())
+        .put("completed", completed.sum())
+        .put("rejected", rejected.sum())
+        .put("queueLatency", queueLatency.toJson());
+  }
+}
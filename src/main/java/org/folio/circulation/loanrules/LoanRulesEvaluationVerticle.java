@@ -0,0 +1,21 @@
+package org.folio.circulation.loanrules;
+
+import org.folio.circulation.loanrules.LoanRulesEvaluationPool.Evaluation;
+
+import io.vertx.core.AbstractVerticle;
+
+/**
+ * Worker verticle that runs the evaluations sent by {@link LoanRulesEvaluationPool},
+ * one at a time. Each instance is a local consumer of {@link LoanRulesEvaluationPool#ADDRESS},
+ * the event bus distributes the evaluations round-robin.
+ */
+public class LoanRulesEvaluationVerticle extends AbstractVerticle {
+  @Override
+  public void start() {
+    vertx.eventBus().<Evaluation>localConsumer(LoanRulesEvaluationPool.ADDRESS, message -> {
+      Evaluation evaluation = message.body();
+      evaluation.run();
+      message.reply(evaluation);
+    });
+  }
+}
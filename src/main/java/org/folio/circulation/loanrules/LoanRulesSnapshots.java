@@ -0,0 +1,107 @@
+package org.folio.circulation.loanrules;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.folio.circulation.support.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Snapshots of the loan rules of each tenant in a local directory, one file per tenant.
+ * <p>
+ * A snapshot is a JSON object with the loan rules text in property {@link #LOAN_RULES_AS_TEXT_FILE},
+ * its SHA-256 hash in {@link #LOAN_RULES_HASH}, and optional properties like the
+ * Drools file. A snapshot where the hash doesn't match the text is ignored.
+ */
+public class LoanRulesSnapshots {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String LOAN_RULES_AS_TEXT_FILE = "loanRulesAsTextFile";
+  public static final String LOAN_RULES_HASH = "loanRulesHash";
+
+  private static final String SUFFIX = ".json";
+  /** tenant ids that can safely be used as file name */
+  private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+  private final Path directory;
+
+  /**
+   * @param directory  where to store the snapshots
+   */
+  public LoanRulesSnapshots(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Write the snapshot of the tenant, replacing any previous snapshot of the tenant.
+   * An error is logged but not thrown because the snapshot is an optimization only.
+   * @param tenantId  id of the tenant
+   * @param snapshot  the snapshot, the hash is added
+   */
+  public void write(String tenantId, JsonObject snapshot) {
+    if (! TENANT_ID.matcher(tenantId).matches()) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+      JsonObject json = snapshot.copy()
+          .put(LOAN_RULES_HASH, StringUtil.sha256(snapshot.getString(LOAN_RULES_AS_TEXT_FILE)));
+      Path tmp = Files.createTempFile(directory, tenantId, ".tmp");
+      Files.write(tmp, json.encode().getBytes(StandardCharsets.UTF_8));
+      Files.move(tmp, directory.resolve(tenantId + SUFFIX),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (Exception e) {
+      log.error("Cannot write loan rules snapshot of tenant " + tenantId + " to " + directory, e);
+    }
+  }
+
+  /**
+   * @return the valid snapshots by tenant id, empty if there are none
+   */
+  public Map<String,JsonObject> readAll() {
+    Map<String,JsonObject> snapshots = new HashMap<>();
+    if (! Files.isDirectory(directory)) {
+      return snapshots;
+    }
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path path : paths) {
+        String fileName = path.getFileName().toString();
+        String tenantId = fileName.substring(0, fileName.length() - SUFFIX.length());
+        JsonObject snapshot = read(path);
+        if (snapshot != null) {
+          snapshots.put(tenantId, snapshot);
+        }
+      }
+    } catch (IOException e) {
+      log.error("Cannot read loan rules snapshots from " + directory, e);
+    }
+    return snapshots;
+  }
+
+  private static JsonObject read(Path path) {
+    try {
+      JsonObject snapshot = new JsonObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+      String loanRulesAsTextFile = snapshot.getString(LOAN_RULES_AS_TEXT_FILE);
+      if (loanRulesAsTextFile == null
+          || ! StringUtil.sha256(loanRulesAsTextFile).equals(snapshot.getString(LOAN_RULES_HASH))) {
+        log.warn("Ignoring loan rules snapshot with wrong hash: {}", path);
+        return null;
+      }
+      return snapshot;
+    } catch (Exception e) {
+      log.warn("Ignoring invalid loan rules snapshot " + path, e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.folio.circulation.loanrules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * How often each loan rule line wins and how long the evaluations take, for one
+ * set of loan rules.
+ * <p>
+ * Recording is lock-free once a line has won for the first time, and can be called
+ * by several threads at the same time.
+ */
+public class LoanRulesStatistics {
+  /** hits of each loan rule line */
+  private final Map<Integer,LongAdder> lineHits = new ConcurrentHashMap<>();
+  private final LatencyHistogram evaluationLatency = new LatencyHistogram();
+  /** System.currentTimeMillis() of the creation */
+  private final long since = System.currentTimeMillis();
+
+  /**
+   * Count a hit of the line.
+   * @param line  line number of the winning loan rule, 0 for no match
+   */
+  public void hit(int line) {
+    if (line <= 0) {
+      return;
+    }
+    // get first, ConcurrentHashMap.computeIfAbsent may lock even if the key exists
+    LongAdder hits = lineHits.get(line);
+    if (hits == null) {
+      hits = lineHits.computeIfAbsent(line, key -> new LongAdder());
+    }
+    hits.increment();
+  }
+
+  /**
+   * @param line  line number of a loan rule
+   * @return how often the line has won
+   */
+  public long getHits(int line) {
+    LongAdder hits = lineHits.get(line);
+    return hits == null ? 0 : hits.sum();
+  }
+
+  /**
+   * @return the latencies of the evaluations
+   */
+  public LatencyHistogram getEvaluationLatency() {
+    return evaluationLatency;
+  }
+
+  private void record(long start, int line) {
+    evaluationLatency.record(System.nanoTime() - start);
+    hit(line);
+  }
+
+  private static int firstLine(JsonArray matches) {
+    return matches.isEmpty() ? 0 : matches.getJsonObject(0).getInteger("loanRuleLine", 0);
+  }
+
+  /**
+   * An engine that records the winning line and the latency of each evaluation of the engine.
+   * @param engine  the engine to call
+   * @return the recording engine
+   */
+  public LoanRulesEngine recording(LoanRulesEngine engine) {
+    return new LoanRulesEngine() {
+      @Override
+      public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation,
+          String campus, String branch, String collection) {
+        long start = System.nanoTime();
+        Match match = engine.match(itemType, loanType, patronGroup, shelvingLocation,
+            campus, branch, collection);
+        record(start, match.lineNumber);
+        return match;
+      }
+
+      @Override
+      public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation,
+          String campus, String branch, String collection) {
+        long start = System.nanoTime();
+        JsonArray matches = engine.loanPolicies(itemType, loanType, patronGroup, shelvingLocation,
+            campus, branch, collection);
+        record(start, firstLine(matches));
+        return matches;
+      }
+
+      @Override
+      public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation) {
+        long start = System.nanoTime();
+        Match match = engine.match(itemType, loanType, patronGroup, shelvingLocation);
+        record(start, match.lineNumber);
+        return match;
+      }
+
+      @Override
+      public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation) {
+        long start = System.nanoTime();
+        JsonArray matches = engine.loanPolicies(itemType, loanType, patronGroup, shelvingLocation);
+        record(start, firstLine(matches));
+        return matches;
+      }
+    };
+  }
+
+  /**
+   * @return since (epoch milliseconds), the hits of each line that has won sorted
+   *         by line, and the latency of the evaluations
+   */
+  public JsonObject toJson() {
+    List<Integer> lines = new ArrayList<>(lineHits.keySet());
+    lines.sort(null);
+    JsonArray hits = new JsonArray();
+    for (int line : lines) {
+      hits.add(new JsonObject()
+          .put("loanRuleLine", line)
+          .put("hits", getHits(line)));
+    }
+    return new JsonObject()
+        .put("since", since)
+        .put("loanRuleLineHits", hits)
+        .put("latency", evaluationLatency.toJson());
+  }
+}
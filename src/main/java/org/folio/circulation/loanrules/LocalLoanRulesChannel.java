@@ -0,0 +1,28 @@
+package org.folio.circulation.loanrules;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A {@link LoanRulesChannel} within a single process, for instance for unit tests
+ * that play the role of another module instance. The listeners are called synchronously
+ * by {@link #publish(JsonObject)}, each with its own copy of the announcement.
+ */
+public class LocalLoanRulesChannel implements LoanRulesChannel {
+  private final List<Consumer<JsonObject>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void publish(JsonObject announcement) {
+    for (Consumer<JsonObject> listener : listeners) {
+      listener.accept(announcement.copy());
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<JsonObject> listener) {
+    listeners.add(listener);
+  }
+}
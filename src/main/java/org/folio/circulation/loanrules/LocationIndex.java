@@ -0,0 +1,140 @@
+package org.folio.circulation.loanrules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import static org.apache.commons.lang3.StringUtils.defaultString;
+
+/**
+ * The location hierarchy of the shelving locations: campus, branch and collection.
+ * <p>
+ * The index maps each shelving location id to its ancestors, therefore resolving
+ * the ancestors is a single lookup. FOLIO location storage has institution, campus
+ * and library: the library is the branch of the loan rules; there is no collection
+ * level, the collection is always "".
+ * <p>
+ * An instance is immutable and can be used by several threads at the same time.
+ */
+public class LocationIndex {
+  /** index without any location, campus, branch and collection are always "" */
+  public static final LocationIndex EMPTY = new LocationIndex(new HashMap<>());
+
+  private static final String [] NO_ANCESTORS = { "", "", "" };
+  private static final String [] LOCATION_CLASSES = {
+      "\n    CampusLocation(", "\n    BranchLocation(", "\n    CollectionLocation(" };
+
+  /** for each location id: campus, branch and collection, "" if unknown */
+  private final Map<String,String[]> ancestors;
+
+  private LocationIndex(Map<String,String[]> ancestors) {
+    this.ancestors = ancestors;
+  }
+
+  /**
+   * Create the index from location records.
+   * @param locations  location records of location storage, each with id, campusId and libraryId
+   * @return the index
+   */
+  public static LocationIndex fromLocations(JsonArray locations) {
+    Map<String,String[]> ancestors = new HashMap<>(locations.size() * 2);
+    for (int i=0; i<locations.size(); i++) {
+      JsonObject location = locations.getJsonObject(i);
+      String id = location.getString("id");
+      if (id == null) {
+        continue;
+      }
+      ancestors.put(id, new String [] {
+          defaultString(location.getString("campusId")),
+          defaultString(location.getString("libraryId")),
+          "" });
+    }
+    return new LocationIndex(ancestors);
+  }
+
+  /**
+   * Whether loan rules use the campus, branch or collection criterium, and
+   * therefore need a location index.
+   * @param loanRulesAsDrools  loan rules converted by {@link Text2Drools}
+   * @return true if a, b or c is used
+   */
+  public static boolean isNeeded(String loanRulesAsDrools) {
+    for (String locationClass : LOCATION_CLASSES) {
+      if (loanRulesAsDrools.contains(locationClass)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String [] ancestors(String shelvingLocation) {
+    return ancestors.getOrDefault(shelvingLocation, NO_ANCESTORS);
+  }
+
+  /**
+   * @param shelvingLocation  id of the shelving location
+   * @return id of the campus of the shelving location, "" if unknown
+   */
+  public String campus(String shelvingLocation) {
+    return ancestors(shelvingLocation)[0];
+  }
+
+  /**
+   * @param shelvingLocation  id of the shelving location
+   * @return id of the branch (library) of the shelving location, "" if unknown
+   */
+  public String branch(String shelvingLocation) {
+    return ancestors(shelvingLocation)[1];
+  }
+
+  /**
+   * @param shelvingLocation  id of the shelving location
+   * @return id of the collection of the shelving location, "" if unknown
+   */
+  public String collection(String shelvingLocation) {
+    return ancestors(shelvingLocation)[2];
+  }
+
+  /**
+   * @return number of shelving locations
+   */
+  public int size() {
+    return ancestors.size();
+  }
+
+  /**
+   * An engine that passes the campus, branch and collection of the shelving location
+   * to the engine when called without them.
+   * @param engine  the engine to call
+   * @return the resolving engine
+   */
+  public LoanRulesEngine resolving(LoanRulesEngine engine) {
+    return new LoanRulesEngine() {
+      @Override
+      public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation,
+          String campus, String branch, String collection) {
+        return engine.match(itemType, loanType, patronGroup, shelvingLocation, campus, branch, collection);
+      }
+
+      @Override
+      public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation,
+          String campus, String branch, String collection) {
+        return engine.loanPolicies(itemType, loanType, patronGroup, shelvingLocation, campus, branch, collection);
+      }
+
+      @Override
+      public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation) {
+        String [] a = ancestors(shelvingLocation);
+        return engine.match(itemType, loanType, patronGroup, shelvingLocation, a[0], a[1], a[2]);
+      }
+
+      @Override
+      public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation) {
+        String [] a = ancestors(shelvingLocation);
+        return engine.loanPolicies(itemType, loanType, patronGroup, shelvingLocation, a[0], a[1], a[2]);
+      }
+    };
+  }
+}
@@ -10,4 +10,19 @@ public class Match {
   /** line number of the matching rule */
   @SuppressWarnings("squid:ClassVariableVisibilityCheck")  // Drools directly uses public fields
   public int lineNumber;
+
+  /**
+   * Create a Match without loan policy and line number, no rule has matched yet.
+   */
+  public Match() {
+  }
+
+  /**
+   * @param loanPolicyId  loan policy of the matching rule
+   * @param lineNumber  line number of the matching rule
+   */
+  public Match(String loanPolicyId, int lineNumber) {
+    this.loanPolicyId = loanPolicyId;
+    this.lineNumber = lineNumber;
+  }
 }
@@ -0,0 +1,188 @@
+package org.folio.circulation.loanrules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The loan policy of each combination of item type, loan type, patron group and
+ * shelving location, written as NDJSON (one JSON object per line).
+ * <p>
+ * The ids of each dimension are grouped into classes of ids that match the same
+ * rules, for example all ids not mentioned in the loan rules are one class. The
+ * matching rules are calculated once for each combination of classes, using the
+ * intersection of the preceding dimensions, and then expanded to the rows of
+ * all ids of the classes. The rows are ordered by class combination.
+ * <p>
+ * The matrix is written in chunks so that the caller can stream it. The number of
+ * rows each rule line wins is available after the last chunk.
+ * <p>
+ * The campus, branch and collection criteria use the ancestors of the shelving
+ * location in the location index.
+ */
+public class PolicyMatrix {
+  private static final String [] KEYS = { "m", "t", "g", "s" };
+
+  private final CompiledLoanRules compiledLoanRules;
+  /** for each dimension the ids grouped by the rules they match */
+  private final List<List<IdClass>> classes = new ArrayList<>();
+  /** for each rule the number of rows it wins */
+  private final long [] coverage;
+  /** for each rule the end of a row */
+  private final String [] rowEnds;
+
+  /** current class of each dimension */
+  private final int [] position = new int [KEYS.length];
+  /** intersection of the rules of the current classes of dimension 0 up to the index */
+  private final BitSet [] partial = new BitSet [KEYS.length];
+  private boolean started = false;
+  private boolean done = false;
+  /** index of the first matching rule of the current class combination */
+  private int winner;
+  /** number of rows of the current class combination */
+  private long rows;
+  /** next row of the current class combination */
+  private long row;
+
+  /** ids that match the same rules */
+  private static class IdClass {
+    final BitSet rules;
+    /** the ids, already encoded as JSON String */
+    final List<String> ids = new ArrayList<>();
+
+    IdClass(BitSet rules) {
+      this.rules = rules;
+    }
+  }
+
+  PolicyMatrix(CompiledLoanRules compiledLoanRules, List<String> itemTypes, List<String> loanTypes,
+      List<String> patronGroups, List<String> shelvingLocations, LocationIndex locationIndex) {
+
+    this.compiledLoanRules = compiledLoanRules;
+    addClasses(0, itemTypes, locationIndex);
+    addClasses(1, loanTypes, locationIndex);
+    addClasses(2, patronGroups, locationIndex);
+    addClasses(3, shelvingLocations, locationIndex);
+    coverage = new long [compiledLoanRules.size()];
+    rowEnds = new String [compiledLoanRules.size()];
+    for (int i=0; i<rowEnds.length; i++) {
+      LoanRule rule = compiledLoanRules.rule(i);
+      rowEnds[i] = ",\"loanPolicyId\":" + Json.encode(rule.loanPolicyId)
+          + ",\"loanRuleLine\":" + rule.line + "}\n";
+    }
+    for (List<IdClass> idClasses : classes) {
+      if (idClasses.isEmpty()) {
+        done = true;
+      }
+    }
+  }
+
+  private void addClasses(int dimension, List<String> ids, LocationIndex locationIndex) {
+    Map<BitSet,IdClass> byRules = new LinkedHashMap<>();
+    for (String id : new LinkedHashSet<>(ids)) {
+      BitSet rules = compiledLoanRules.matching(dimension, id, locationIndex);
+      byRules.computeIfAbsent(rules, IdClass::new).ids.add(Json.encode(id));
+    }
+    classes.add(new ArrayList<>(byRules.values()));
+  }
+
+  private IdClass idClass(int dimension) {
+    return classes.get(dimension).get(position[dimension]);
+  }
+
+  /**
+   * Move to the next combination of classes.
+   * @return false if there is none
+   */
+  private boolean nextCombination() {
+    int level;
+    if (! started) {
+      started = true;
+      level = 0;
+    } else {
+      level = KEYS.length - 1;
+      while (level >= 0 && ++position[level] == classes.get(level).size()) {
+        position[level] = 0;
+        level--;
+      }
+      if (level < 0) {
+        return false;
+      }
+    }
+    for (int k=level; k<KEYS.length; k++) {
+      BitSet bitSet = (BitSet) idClass(k).rules.clone();
+      if (k > 0) {
+        bitSet.and(partial[k - 1]);
+      }
+      partial[k] = bitSet;
+    }
+    winner = partial[KEYS.length - 1].nextSetBit(0);
+    row = 0;
+    rows = 0;
+    if (winner >= 0) {
+      rows = 1;
+      for (int k=0; k<KEYS.length; k++) {
+        rows *= idClass(k).ids.size();
+      }
+      coverage[winner] += rows;
+    }
+    return true;
+  }
+
+  private void appendRow(StringBuilder out) {
+    String [] ids = new String [KEYS.length];
+    long r = row;
+    for (int k=KEYS.length - 1; k>=0; k--) {
+      List<String> classIds = idClass(k).ids;
+      ids[k] = classIds.get((int) (r % classIds.size()));
+      r /= classIds.size();
+    }
+    char separator = '{';
+    for (int k=0; k<KEYS.length; k++) {
+      out.append(separator).append('"').append(KEYS[k]).append("\":").append(ids[k]);
+      separator = ',';
+    }
+    out.append(rowEnds[winner]);
+  }
+
+  /**
+   * Append the next rows. Combinations without a matching rule are omitted.
+   * @param out  where to append
+   * @param maxLength  stop appending rows when out has this length
+   * @return false if all rows have been written
+   */
+  public boolean write(StringBuilder out, int maxLength) {
+    while (! done && out.length() < maxLength) {
+      if (row < rows) {
+        appendRow(out);
+        row++;
+      } else if (! nextCombination()) {
+        done = true;
+      }
+    }
+    return ! done;
+  }
+
+  /**
+   * @return the number of rows each loan rule line wins, sorted by line;
+   *         only complete after all rows have been written
+   */
+  public JsonArray coverage() {
+    List<JsonObject> list = new ArrayList<>();
+    for (int i=0; i<coverage.length; i++) {
+      list.add(new JsonObject()
+          .put("loanRuleLine", compiledLoanRules.rule(i).line)
+          .put("count", coverage[i]));
+    }
+    list.sort(Comparator.comparingInt(json -> json.getInteger("loanRuleLine")));
+    return new JsonArray(new ArrayList<>(list));
+  }
+}
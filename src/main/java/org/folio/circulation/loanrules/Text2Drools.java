@@ -1,16 +1,25 @@
 package org.folio.circulation.loanrules;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -81,20 +90,27 @@ public class Text2Drools extends LoanRulesBaseListener {
       "\n"
       );
 
+  /** reused for the drools conditions of each line */
+  private StringBuilder conditions = new StringBuilder();
+
+  /** the generated rules, in the same order as in drools */
+  private List<LoanRule> loanRules = new ArrayList<>();
+
   private static class Matcher {
     int indentation;
     Set<String> criteriaUsed = new HashSet<>(4);
     int maxCriteriumPriority;
-    StringBuilder drools;
-    public Matcher(int indentation, Set<String> criteriaUsed, int maxCriteriumPriority, StringBuilder drools) {
+    /** the drools conditions of this line without the conditions of the enclosing lines */
+    String drools = "";
+    List<Criterium> criteria = new ArrayList<>(4);
+    public Matcher(int indentation, Set<String> criteriaUsed, int maxCriteriumPriority) {
       this.indentation = indentation;
       this.criteriaUsed.addAll(criteriaUsed);
       this.maxCriteriumPriority = maxCriteriumPriority;
-      this.drools = drools;
     }
   }
   private LinkedList<Matcher> stack = new LinkedList<>();
-  private static Matcher defaultMatcher = new Matcher(0, Collections.emptySet(), 0, null);
+  private static Matcher defaultMatcher = new Matcher(0, Collections.emptySet(), 0);
 
   private int indentation = 0;
 
@@ -130,19 +146,66 @@ public class Text2Drools extends LoanRulesBaseListener {
    * @return Drools file
    */
   public static String convert(String text) {
-    Text2Drools text2drools = new Text2Drools();
+    return parse(text).drools.toString();
+  }
+
+  /**
+   * Convert loan rules from FOLIO text format into a list of rules.
+   * @param text String with a loan rules file in FOLIO syntax.
+   * @return the rules in the order of the file
+   */
+  static List<LoanRule> loanRules(String text) {
+    return parse(text).loanRules;
+  }
+
+  /**
+   * Cancels the SLL parse on any error, including the errors that the grammar's
+   * error alternatives report.
+   */
+  private static class BailErrorListener extends BaseErrorListener {
+    @Override
+    public void syntaxError(Recognizer<?, ?> recognizer,
+        Object offendingSymbol, int line, int charPositionInLine,
+        String msg, RecognitionException e) {
+      throw new ParseCancellationException(msg, e);
+    }
+  }
+
+  private static final BailErrorListener BAIL_ERROR_LISTENER = new BailErrorListener();
 
+  /**
+   * Parse the text using two-stage parsing: The fast SLL prediction mode succeeds
+   * for any valid loan rules file. Only if it fails the text is parsed again in
+   * full LL mode that reports the error with line and column, or succeeds if
+   * the SLL failure was caused by the weaker SLL prediction.
+   */
+  private static LoanRulesFileContext parseTree(String text) {
     CharStream input = CharStreams.fromString(text);
     LoanRulesLexer lexer = new LoanRulesLexer(input);
     CommonTokenStream tokens = new CommonTokenStream(lexer);
     LoanRulesParser parser = new LoanRulesParser(tokens);
     parser.removeErrorListeners(); // remove ConsoleErrorListener
-    parser.addErrorListener(new ErrorListener());
-    LoanRulesFileContext entryPoint = parser.loanRulesFile();
-    ParseTreeWalker walker = new ParseTreeWalker();
-    walker.walk(text2drools, entryPoint);
+    parser.addErrorListener(BAIL_ERROR_LISTENER);
+    parser.setErrorHandler(new BailErrorStrategy());
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    try {
+      return parser.loanRulesFile();
+    } catch (ParseCancellationException e) {
+      tokens.seek(0);
+      parser.reset();
+      parser.removeErrorListeners();
+      parser.addErrorListener(new ErrorListener());
+      parser.setErrorHandler(new DefaultErrorStrategy());
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      return parser.loanRulesFile();
+    }
+  }
 
-    return text2drools.drools.toString();
+  private static Text2Drools parse(String text) {
+    Text2Drools text2drools = new Text2Drools();
+    ParseTreeWalker walker = new ParseTreeWalker();
+    walker.walk(text2drools, parseTree(text));
+    return text2drools;
   }
 
   /**
@@ -254,13 +317,14 @@ public class Text2Drools extends LoanRulesBaseListener {
     if (previousMatcher == null) {
       previousMatcher = defaultMatcher;
     }
-    StringBuilder s = new StringBuilder();
     Matcher matcher = new Matcher(indentation,
-        previousMatcher.criteriaUsed, previousMatcher.maxCriteriumPriority, s);
+        previousMatcher.criteriaUsed, previousMatcher.maxCriteriumPriority);
 
+    conditions.setLength(0);
     for (CriteriumContext criteriumContext : expr.criterium()) {
       addCriterium(criteriumContext, matcher);
     }
+    matcher.drools = conditions.toString();
     stack.push(matcher);
 
     generateRule(expr.policy());
@@ -272,13 +336,20 @@ public class Text2Drools extends LoanRulesBaseListener {
     }
 
     int line = policy.getStart().getLine();
+    int salience = getSalience(line);
+    String loanPolicyId = policy.NAME(0).getText();
+    List<Criterium> criteria = new ArrayList<>();
     drools.append("rule \"line ").append(line).append("\"\n");
-    drools.append("  salience ").append(getSalience(line)).append("\n");
+    drools.append("  salience ").append(salience).append("\n");
     drools.append("  when\n");
-    stack.descendingIterator().forEachRemaining(matcher -> drools.append(matcher.drools));
+    stack.descendingIterator().forEachRemaining(matcher -> {
+      drools.append(matcher.drools);
+      criteria.addAll(matcher.criteria);
+    });
+    loanRules.add(new LoanRule(line, salience, loanPolicyId, criteria));
     drools.append("  then\n");
     drools.append("    match.loanPolicyId = ");
-    appendQuotedString(drools, policy.NAME(0).getText());
+    appendQuotedString(drools, loanPolicyId);
     drools.append(     ";\n");
     drools.append("    match.lineNumber = ").append(line).append(";\n");
     drools.append("    drools.halt();\n");
@@ -312,7 +383,8 @@ public class Text2Drools extends LoanRulesBaseListener {
     }
   }
 
-  /** Add criteriumContext to matcher: criteriaUsed, maxCriteriumPriority, drools expression.
+  /** Add criteriumContext to matcher: criteriaUsed, maxCriteriumPriority; append the drools
+   * expression to conditions.
    * <p>
    * Two examples for drools expressions:
    * <p>
@@ -337,12 +409,13 @@ public class Text2Drools extends LoanRulesBaseListener {
         Math.max(matcher.maxCriteriumPriority,
                  criteriumPriority.getOrDefault(criteriumTypeLetter, 0));
 
-    matcher.drools.append("    ");
+    conditions.append("    ");
     String field = criteriumTypeClassname(criteriumTypeLetter);
-    matcher.drools.append(field);
+    conditions.append(field);
 
     if (criteriumContext.all() != null) {
-      matcher.drools.append("() // all\n");
+      conditions.append("() // all\n");
+      matcher.criteria.add(new Criterium(criteriumTypeLetter, Collections.emptyList(), false));
       return;
     }
 
@@ -352,24 +425,27 @@ public class Text2Drools extends LoanRulesBaseListener {
       not = true;
     }
 
-    if (criteriumContext.NAME().size() == 1) {
-      matcher.drools.append(not ? "(id != " : "(id == " );
-      appendQuotedString(matcher.drools, criteriumContext.NAME(0).getText());
-      matcher.drools.append(")\n");
+    // NAME() and NAME(i) iterate all children, get the names only once
+    List<TerminalNode> nameNodes = criteriumContext.NAME();
+    List<String> names = new ArrayList<>(nameNodes.size());
+    nameNodes.forEach(name -> names.add(name.getText()));
+    matcher.criteria.add(new Criterium(criteriumTypeLetter, names, not));
+
+    if (names.size() == 1) {
+      conditions.append(not ? "(id != " : "(id == " );
+      appendQuotedString(conditions, names.get(0));
+      conditions.append(")\n");
       return;
     }
 
-    matcher.drools.append(not ? "(id not in (" : "(id in (");
-    boolean first = true;
-    for (int i=0; i<criteriumContext.NAME().size(); i++) {
-      if (first) {
-        first = false;
-      } else {
-        matcher.drools.append(", ");
+    conditions.append(not ? "(id not in (" : "(id in (");
+    for (int i=0; i<names.size(); i++) {
+      if (i > 0) {
+        conditions.append(", ");
       }
-      appendQuotedString(matcher.drools, criteriumContext.NAME(i).getText());
+      appendQuotedString(conditions, names.get(i));
     }
-    matcher.drools.append("))\n");
+    conditions.append("))\n");
   }
 
   /**
@@ -398,7 +474,25 @@ public class Text2Drools extends LoanRulesBaseListener {
    */
   private static void appendQuotedString(StringBuilder sb, String name) {
     sb.append('"');
-    sb.append(StringEscapeUtils.escapeJava(name));
+    if (isPlainName(name)) {
+      sb.append(name);
+    } else {
+      sb.append(StringEscapeUtils.escapeJava(name));
+    }
     sb.append('"');
   }
+
+  /**
+   * @param name - the String to check
+   * @return whether name contains only characters of the NAME token that need no escaping
+   */
+  private static boolean isPlainName(String name) {
+    for (int i=0; i<name.length(); i++) {
+      char c = name.charAt(i);
+      if (! (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-')) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
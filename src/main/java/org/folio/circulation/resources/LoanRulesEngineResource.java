@@ -3,24 +3,57 @@ package org.folio.circulation.resources;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.folio.circulation.loanrules.CompiledLoanRules;
 import org.folio.circulation.loanrules.Drools;
+import org.folio.circulation.loanrules.LatencyHistogram;
+import org.folio.circulation.loanrules.LoanRulesChannel;
+import org.folio.circulation.loanrules.LoanRulesCache;
+import org.folio.circulation.loanrules.LoanRulesEngine;
+import org.folio.circulation.loanrules.LoanRulesEngineCache;
+import org.folio.circulation.loanrules.LoanRulesEvaluationPool;
+import org.folio.circulation.loanrules.LoanRulesSnapshots;
+import org.folio.circulation.loanrules.LoanRulesStatistics;
+import org.folio.circulation.loanrules.LocationIndex;
+import org.folio.circulation.loanrules.PolicyMatrix;
 import org.folio.circulation.loanrules.Text2Drools;
 import org.folio.circulation.support.Clients;
 import org.folio.circulation.support.CollectionResourceClient;
+import org.folio.circulation.support.ForwardOnFailure;
+import org.folio.circulation.support.HttpResult;
 import org.folio.circulation.support.OkJsonHttpResult;
+import org.folio.circulation.support.ServerErrorFailure;
+import org.folio.circulation.support.http.client.Response;
 import org.folio.circulation.support.http.server.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static org.folio.circulation.support.StringUtil.sha256;
 import static org.folio.circulation.support.http.server.ServerErrorResponse.internalError;
 
 /**
@@ -34,29 +67,128 @@ public class LoanRulesEngineResource extends Resource {
   private static final String LOAN_TYPE_ID_NAME = "loan_type_id";
   private static final String PATRON_TYPE_ID_NAME = "patron_type_id";
   private static final String SHELVING_LOCATION_ID_NAME = "shelving_location_id";
+  private static final String [] APPLY_PARAMETER_NAMES = {
+      ITEM_TYPE_ID_NAME, LOAN_TYPE_ID_NAME, PATRON_TYPE_ID_NAME, SHELVING_LOCATION_ID_NAME };
+  private static final String UUID_REGEX =
+      "^[a-fA-F0-9]{8}-[a-fA-F0-9]{4}-[1-5][a-fA-F0-9]{3}-[89abAB][a-fA-F0-9]{3}-[a-fA-F0-9]{12}$";
+
+  /** name of the engine that runs the loan rules in Drools */
+  public static final String DROOLS_ENGINE = "drools";
+  /** name of the engine that runs the loan rules in a {@link CompiledLoanRules} index */
+  public static final String COMPILED_ENGINE = "compiled";
+
+  /** maximum number of apply and apply-all results cached for each tenant */
+  private static final int APPLY_CACHE_SIZE = 10000;
+  /** maximum number of parameter sets of an apply-batch request */
+  public static final int MAX_APPLY_BATCH_SIZE = 1000;
+  /** number of characters of the policy matrix to write at a time */
+  private static final int POLICY_MATRIX_CHUNK_SIZE = 65536;
+  private static final String [] POLICY_MATRIX_PARAMETER_NAMES = {
+      "item_type_ids", "loan_type_ids", "patron_type_ids", "shelving_location_ids" };
+
+  /** after this time the location index is reloaded in the background */
+  private static final long LOCATION_INDEX_MAX_AGE_IN_MILLISECONDS = 5L * 60 * 1000;
+  /** number of locations to fetch with one request */
+  private static final int LOCATIONS_PAGE_SIZE = 1000;
+
+  /** maximum number of engines compiled from the loan_rules parameter of apply-all */
+  private static final int DRAFT_CACHE_SIZE = 100;
+  /** maximum estimated memory of the engines compiled from the loan_rules parameter of apply-all,
+   * see {@link #estimatedEngineBytes(String)} */
+  private static final long DRAFT_CACHE_BYTES = 64L * 1024 * 1024;
 
   private final String applyPath;
   private final String applyAllPath;
+  private final String applyBatchPath;
+  private final String statisticsPath;
+  private final String policyMatrixPath;
+
+  /** default of triggerAgeInMilliseconds */
+  public static final long DEFAULT_TRIGGER_AGE_IN_MILLISECONDS = 4000;
+  /** default of maxAgeInMilliseconds */
+  public static final long DEFAULT_MAX_AGE_IN_MILLISECONDS = 5000;
 
   /** after this time the rules get loaded before executing the loan rules engine */
-  private static long maxAgeInMilliseconds = 5000;
+  private static volatile long maxAgeInMilliseconds = DEFAULT_MAX_AGE_IN_MILLISECONDS;
   /** after this time the loan rules engine is executed first for a fast reply
    * and then the loan rules get reloaded */
-  private static long triggerAgeInMilliseconds = 4000;
+  private static volatile long triggerAgeInMilliseconds = DEFAULT_TRIGGER_AGE_IN_MILLISECONDS;
+  /** name of the engine to use, one of DROOLS_ENGINE and COMPILED_ENGINE */
+  private static volatile String engineName = DROOLS_ENGINE;
+  /** where to write the loan rules of each tenant for a fast start, null to disable */
+  private static volatile LoanRulesSnapshots snapshots;
+  /** announces new loan rules to the other module instances, null to disable */
+  private static volatile LoanRulesChannel channel;
+  /** id of this module instance in the announcements of channel */
+  private static final String INSTANCE_ID = UUID.randomUUID().toString();
+  /** where to evaluate the loan rules, null to evaluate them on the request thread */
+  private static volatile LoanRulesEvaluationPool evaluationPool;
 
-  private class Rules {
-    String loanRulesAsTextFile = "";
-    String loanRulesAsDrools = "";
-    Drools drools;
+  private static class Rules {
+    final String tenantId;
+    volatile String loanRulesAsTextFile = "";
+    volatile String loanRulesAsDrools = "";
+    /** entity tag of the storage response the rules are from, null if the storage doesn't send one */
+    volatile String eTag;
+    /** metadata.updatedDate of the loan rules record, null if the storage doesn't send one */
+    volatile String updatedDate;
+    /** thread-safe engine, several requests may use it at the same time */
+    volatile LoanRulesEngine engine;
+    /** index of loanRulesAsTextFile for the policy matrix, the engine itself if it is compiled,
+     * null until the first policy matrix otherwise; replaced together with loanRulesAsTextFile */
+    volatile CompiledLoanRules compiledLoanRules;
+    /** results of engine */
+    final LoanRulesCache cache = new LoanRulesCache(APPLY_CACHE_SIZE);
+    /** line hits and latency of the evaluations of engine, replaced when new rules are installed */
+    volatile LoanRulesStatistics statistics = new LoanRulesStatistics();
+    /** time to convert and compile the tenant's rules, not reset */
+    final LatencyHistogram compileLatency = new LatencyHistogram();
     /** System.currentTimeMillis() of the last load/reload of the rules from the storage */
-    long reloadTimestamp;
-    boolean reloadInitiated = false;
+    volatile long reloadTimestamp;
+    /** the running reload that all requests join, null if no reload is running; guarded by this */
+    CompletableFuture<HttpResult<LoanRulesEngine>> reload;
+    /** incremented by clearCache so that a running reload doesn't install outdated rules; guarded by this */
+    int generation;
+    /** whether the rules are from a snapshot and haven't been checked against the storage yet */
+    volatile boolean fromSnapshot;
+    /** whether the rules use the campus, branch or collection criterium */
+    volatile boolean usesLocationHierarchy;
+    /** campus, branch and collection of each location, null if not loaded yet */
+    volatile LocationIndex locationIndex;
+    /** System.currentTimeMillis() of the last load of locationIndex */
+    volatile long locationIndexTimestamp;
+    /** the running load of locationIndex, null if none is running; guarded by this */
+    CompletableFuture<HttpResult<LocationIndex>> locationReload;
+    /** System.currentTimeMillis() of the last evaluation request */
+    volatile long lastAccess = System.currentTimeMillis();
+    /** estimated memory of loanRulesAsTextFile, loanRulesAsDrools and engine, set when they are installed */
+    volatile long engineBytes;
+    /** estimated memory of compiledLoanRules if it isn't the engine itself, set when the rules are installed */
+    volatile long indexBytes;
+
+    Rules(String tenantId) {
+      this.tenantId = tenantId;
+    }
   }
   /** rules and Drools for each tenantId */
-  private static Map<String,Rules> rulesMap = new HashMap<>();
+  private static Map<String,Rules> rulesMap = new ConcurrentHashMap<>();
+  /** default of maxIdleInMilliseconds */
+  public static final long DEFAULT_TENANT_MAX_IDLE_IN_MILLISECONDS = 60L * 60 * 1000;
+  /** default of maxTenantBytes */
+  public static final long DEFAULT_TENANT_MAX_BYTES = 256L * 1024 * 1024;
+  /** rules of a tenant without evaluation request for this time get evicted */
+  private static volatile long maxIdleInMilliseconds = DEFAULT_TENANT_MAX_IDLE_IN_MILLISECONDS;
+  /** the least recently used tenants get evicted when the estimated memory of all rules exceeds this */
+  private static volatile long maxTenantBytes = DEFAULT_TENANT_MAX_BYTES;
+  private static final LongAdder idleEvictions = new LongAdder();
+  private static final LongAdder memoryEvictions = new LongAdder();
+  /** engines of loan rules drafts that the rules editor tests using apply-all, for all tenants */
+  private static final LoanRulesEngineCache draftCache = new LoanRulesEngineCache(
+      DRAFT_CACHE_SIZE, DRAFT_CACHE_BYTES, LoanRulesEngineResource::estimatedEngineBytes);
 
   /**
-   * Set the cache time.
+   * Set the cache time. A reload only transfers the loan rules if they have changed,
+   * provided the storage supports entity tags.
    * @param triggerAgeInMilliseconds  after this time the loan rules engine is executed first for a fast reply
    *                                  and then the loan rules get reloaded
    * @param maxAgeInMilliseconds  after this time the rules get loaded before executing the loan rules engine
@@ -66,12 +198,365 @@ public class LoanRulesEngineResource extends Resource {
     LoanRulesEngineResource.maxAgeInMilliseconds = maxAgeInMilliseconds;
   }
 
+  /**
+   * Set the limits of the tenants' rules kept in memory. An evicted tenant's rules are
+   * reloaded from the storage on the tenant's next request.
+   * @param maxIdleInMilliseconds  rules of a tenant without evaluation request for this time get evicted
+   * @param maxTenantBytes  the least recently used tenants get evicted when the estimated memory of
+   *                        all rules exceeds this; the most recently used tenant is never evicted
+   */
+  public static void setTenantLimits(long maxIdleInMilliseconds, long maxTenantBytes) {
+    LoanRulesEngineResource.maxIdleInMilliseconds = maxIdleInMilliseconds;
+    LoanRulesEngineResource.maxTenantBytes = maxTenantBytes;
+  }
+
+  /*
+   * Heap of the engines, measured after garbage collection for loan rules of 100, 1000
+   * and 4000 lines with three UUID criteria each: a Drools KieBase takes about 21 kB per
+   * line on top of about 110 kB; a CompiledLoanRules index about 1 kB per line, and its
+   * bit sets of one bit per line for each criterium value add about lines / 2 bytes per line.
+   */
+  private static final long DROOLS_BASE_BYTES = 110_000;
+  private static final long DROOLS_BYTES_PER_LINE = 22_000;
+  private static final long COMPILED_BYTES_PER_LINE = 1_000;
+  /** an apply cache entry: four UUID strings as key, a loan policy id and a line number */
+  private static final long APPLY_CACHE_ENTRY_BYTES = 700;
+  /** a location of the location index: its id and the ids of its campus and library */
+  private static final long LOCATION_BYTES = 500;
+
+  /**
+   * Set the estimated memory of the rules being installed: two bytes per character of the
+   * loan rules text and the Drools file, the engine and, if the engine is Drools, the index
+   * for the policy matrix by the number of loan rule lines. Call it when installing the rules.
+   */
+  private static void estimate(Rules rules) {
+    String loanRulesAsTextFile = rules.loanRulesAsTextFile;
+    rules.engineBytes = 2L * (loanRulesAsTextFile.length() + rules.loanRulesAsDrools.length())
+        + estimatedEngineBytes(loanRulesAsTextFile);
+    rules.indexBytes = COMPILED_ENGINE.equals(engineName) ? 0 : compiledBytes(lines(loanRulesAsTextFile));
+  }
+
+  /**
+   * The estimated memory of the tenant's rules: the estimate set when they were installed,
+   * the index for the policy matrix if it has been created, and the entries of the apply
+   * cache and the location index.
+   */
+  private static long estimatedBytes(Rules rules) {
+    long bytes = APPLY_CACHE_ENTRY_BYTES * rules.cache.size();
+    LocationIndex locationIndex = rules.locationIndex;
+    if (locationIndex != null) {
+      bytes += LOCATION_BYTES * locationIndex.size();
+    }
+    if (rules.engine == null) {
+      return bytes;
+    }
+    bytes += rules.engineBytes;
+    if (rules.compiledLoanRules != null) {
+      bytes += rules.indexBytes;
+    }
+    return bytes;
+  }
+
+  /**
+   * The estimated memory of the engine set by {@link #setEngine(String)} for the loan rules,
+   * by the number of loan rule lines.
+   * @param loanRulesAsTextFile  loan rules in FOLIO text format
+   * @return the estimated bytes
+   */
+  private static long estimatedEngineBytes(String loanRulesAsTextFile) {
+    long lines = lines(loanRulesAsTextFile);
+    if (COMPILED_ENGINE.equals(engineName)) {
+      return compiledBytes(lines);
+    }
+    return DROOLS_BASE_BYTES + DROOLS_BYTES_PER_LINE * lines;
+  }
+
+  private static long compiledBytes(long lines) {
+    return lines * (COMPILED_BYTES_PER_LINE + lines / 2);
+  }
+
+  private static long lines(String loanRulesAsTextFile) {
+    return 1L + StringUtils.countMatches(loanRulesAsTextFile, '\n');
+  }
+
+  /**
+   * Evict the rules of the tenants that have been idle for longer than the maximum idle time,
+   * then the rules of the least recently used tenants until the estimated memory is within
+   * the limit. See {@link #setTenantLimits(long, long)}.
+   */
+  public static void evictTenants() {
+    evictTenants(null);
+  }
+
+  /**
+   * Like {@link #evictTenants()}, but the rules that have just been installed are kept.
+   * <p>
+   * The rules of a tenant that alone exceed the memory limit are not counted against the
+   * limit and not evicted for it, evicting the other tenants couldn't make room for them.
+   * @param installed  the rules that have just been installed, null for none
+   */
+  private static void evictTenants(Rules installed) {
+    long now = System.currentTimeMillis();
+    long idleLimit = maxIdleInMilliseconds;
+    long bytesLimit = maxTenantBytes;
+    long bytes = 0;
+    // lastAccess may change while sorting, sort a copy
+    Map<Rules,Long> lastAccess = new HashMap<>();
+    Map<Rules,Long> estimates = new HashMap<>();
+    for (Rules rules : rulesMap.values()) {
+      long access = rules.lastAccess;
+      if (rules != installed && now - access > idleLimit) {
+        if (rulesMap.remove(rules.tenantId, rules)) {
+          idleEvictions.increment();
+          log.info("Evicted loan rules of idle tenant {}", rules.tenantId);
+        }
+        continue;
+      }
+      long estimate = estimatedBytes(rules);
+      if (estimate > bytesLimit) {
+        if (rules == installed) {
+          log.warn("Loan rules of tenant {} take an estimated {} bytes, more than the limit of {} bytes "
+              + "for the rules of all tenants", rules.tenantId, estimate, bytesLimit);
+        }
+        continue;
+      }
+      lastAccess.put(rules, access);
+      estimates.put(rules, estimate);
+      bytes += estimate;
+    }
+    if (bytes <= bytesLimit) {
+      return;
+    }
+    List<Rules> leastRecentlyUsedFirst = new ArrayList<>(lastAccess.keySet());
+    leastRecentlyUsedFirst.sort(Comparator.comparing(lastAccess::get));
+    for (int i=0; i<leastRecentlyUsedFirst.size() - 1 && bytes > bytesLimit; i++) {
+      Rules rules = leastRecentlyUsedFirst.get(i);
+      if (rules != installed && rulesMap.remove(rules.tenantId, rules)) {
+        memoryEvictions.increment();
+        bytes -= estimates.get(rules);
+        log.info("Evicted loan rules of tenant {} to stay within {} bytes", rules.tenantId, bytesLimit);
+      }
+    }
+  }
+
+  /**
+   * @return tenants, bytes, maxBytes, maxIdleMilliseconds, idleEvictions and memoryEvictions
+   *         of the rules of all tenants
+   */
+  static JsonObject tenantStatistics() {
+    long bytes = 0;
+    int tenants = 0;
+    for (Rules rules : rulesMap.values()) {
+      bytes += estimatedBytes(rules);
+      tenants++;
+    }
+    return new JsonObject()
+        .put("tenants", tenants)
+        .put("bytes", bytes)
+        .put("maxBytes", maxTenantBytes)
+        .put("maxIdleMilliseconds", maxIdleInMilliseconds)
+        .put("idleEvictions", idleEvictions.sum())
+        .put("memoryEvictions", memoryEvictions.sum());
+  }
+
+  /**
+   * Set the engine that calculates the loan policy. Both engines return the same
+   * results. This drops the cache.
+   * @param engineName  DROOLS_ENGINE or COMPILED_ENGINE
+   */
+  public static void setEngine(String engineName) {
+    if (! DROOLS_ENGINE.equals(engineName) && ! COMPILED_ENGINE.equals(engineName)) {
+      throw new IllegalArgumentException("Unknown loan rules engine: " + engineName);
+    }
+    LoanRulesEngineResource.engineName = engineName;
+    dropCache();
+  }
+
+  /**
+   * Set the pool that evaluates the loan rules for apply, apply-all, apply-batch and
+   * {@link #applyLocallyAsync}.
+   * @param pool  the pool, null to evaluate the loan rules on the request thread
+   */
+  public static void setEvaluationPool(LoanRulesEvaluationPool pool) {
+    evaluationPool = pool;
+  }
+
+  /**
+   * Run the evaluation in the evaluation pool, or on the current thread if there is none.
+   * @param evaluation  what to evaluate
+   * @return the result; fails with RejectedExecutionException if the pool's queue is full
+   */
+  private static <T> CompletableFuture<T> evaluate(Supplier<T> evaluation) {
+    LoanRulesEvaluationPool pool = evaluationPool;
+    if (pool != null) {
+      return pool.evaluate(evaluation);
+    }
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      future.complete(evaluation.get());
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Run the evaluation and pass the result to the resultHandler. On error send the error
+   * message via the routingContext's response: 503 if the evaluation pool is full, 500 otherwise.
+   */
+  private static <T> void evaluate(RoutingContext routingContext, String name,
+      Supplier<T> evaluation, Consumer<T> resultHandler) {
+
+    evaluate(evaluation).whenComplete((result, throwable) -> {
+      Throwable cause = throwable;
+      if (cause == null) {
+        try {
+          resultHandler.accept(result);
+          return;
+        } catch (Exception e) {
+          cause = e;
+        }
+      }
+      if (cause instanceof CompletionException) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof RejectedExecutionException) {
+        ServerErrorResponse.serviceUnavailable(routingContext.response(), cause.getMessage());
+        return;
+      }
+      log.error(name, cause);
+      internalError(routingContext.response(), ExceptionUtils.getStackTrace(cause));
+    });
+  }
+
+  /**
+   * Set the directory for the snapshots of the loan rules. The snapshot of a tenant
+   * is written whenever new loan rules of the tenant have been compiled.
+   * <p>
+   * This starts loading the snapshots in the directory. A tenant's rules loaded from
+   * a snapshot are used immediately while the first request triggers a reload
+   * from the storage in the background.
+   * @param directory  where to store the snapshots, null to disable snapshots
+   * @return when all snapshots have been loaded
+   */
+  public static CompletableFuture<Void> setSnapshotDirectory(String directory) {
+    if (directory == null) {
+      snapshots = null;
+      return CompletableFuture.completedFuture(null);
+    }
+    LoanRulesSnapshots newSnapshots = new LoanRulesSnapshots(Paths.get(directory));
+    snapshots = newSnapshots;
+    // the snapshots are compiled in parallel, each Drools build uses a release id of its own
+    return CompletableFuture.allOf(newSnapshots.readAll().entrySet().stream()
+        .map(entry -> CompletableFuture.runAsync(
+            () -> installSnapshot(entry.getKey(), entry.getValue())))
+        .toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * Compile the snapshot, and install it unless the tenant's rules have been loaded
+   * meanwhile.
+   * @param tenantId  id of the tenant
+   * @param snapshot  the snapshot as read by {@link LoanRulesSnapshots#readAll()}
+   */
+  private static void installSnapshot(String tenantId, JsonObject snapshot) {
+    try {
+      long start = System.nanoTime();
+      String loanRulesAsTextFile = snapshot.getString(LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE);
+      String loanRulesAsDrools = snapshot.getString("loanRulesAsDrools");
+      if (loanRulesAsDrools == null) {
+        loanRulesAsDrools = Text2Drools.convert(loanRulesAsTextFile);
+      }
+      LoanRulesEngine engine = createEngine(loanRulesAsTextFile, loanRulesAsDrools);
+      Rules rules = rulesMap.computeIfAbsent(tenantId, Rules::new);
+      rules.compileLatency.record(System.nanoTime() - start);
+      synchronized (rules) {
+        if (rules.engine != null || rules.reload != null) {
+          return;
+        }
+        rules.loanRulesAsTextFile = loanRulesAsTextFile;
+        rules.loanRulesAsDrools = loanRulesAsDrools;
+        rules.eTag = snapshot.getString("eTag");
+        rules.updatedDate = snapshot.getString("updatedDate");
+        rules.engine = rules.cache.cachingEngine(
+            snapshot.getString(LoanRulesSnapshots.LOAN_RULES_HASH), engine);
+        rules.compiledLoanRules = compiledOrNull(engine);
+        rules.usesLocationHierarchy = LocationIndex.isNeeded(loanRulesAsDrools);
+        rules.fromSnapshot = true;
+        estimate(rules);
+      }
+      log.info("Loaded loan rules snapshot of tenant {}", tenantId);
+      evictTenants(rules);
+    } catch (Exception e) {
+      log.error("Cannot load loan rules snapshot of tenant " + tenantId, e);
+    }
+  }
+
+  /**
+   * Write the snapshot of the rules if snapshots are enabled.
+   */
+  private static void writeSnapshot(Rules rules) {
+    LoanRulesSnapshots currentSnapshots = snapshots;
+    if (currentSnapshots == null) {
+      return;
+    }
+    currentSnapshots.write(rules.tenantId, new JsonObject()
+        .put(LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE, rules.loanRulesAsTextFile)
+        .put("loanRulesAsDrools", rules.loanRulesAsDrools)
+        .put("eTag", rules.eTag)
+        .put("updatedDate", rules.updatedDate));
+  }
+
+  /**
+   * Create the engine set by {@link #setEngine(String)}.
+   * @param loanRulesAsTextFile  loan rules in FOLIO text format
+   * @param loanRulesAsDrools  the same loan rules converted by Text2Drools
+   * @return the engine
+   */
+  private static LoanRulesEngine createEngine(String loanRulesAsTextFile, String loanRulesAsDrools) {
+    if (COMPILED_ENGINE.equals(engineName)) {
+      return new CompiledLoanRules(loanRulesAsTextFile);
+    }
+    return new Drools(loanRulesAsDrools);
+  }
+
+  /**
+   * @return the engine if it is a CompiledLoanRules index, null otherwise
+   */
+  private static CompiledLoanRules compiledOrNull(LoanRulesEngine engine) {
+    return engine instanceof CompiledLoanRules ? (CompiledLoanRules) engine : null;
+  }
+
+  /**
+   * The CompiledLoanRules index of the loan rules text, compiled unless the tenant's
+   * rules already have it. It is kept if the tenant's rules are still the same.
+   * @param rules  the tenant's rules
+   * @param loanRulesAsTextFile  the loan rules text that rules had with compiledLoanRules
+   * @param compiledLoanRules  rules.compiledLoanRules, read together with loanRulesAsTextFile
+   * @return the index
+   */
+  private static CompiledLoanRules compiledLoanRules(Rules rules,
+      String loanRulesAsTextFile, CompiledLoanRules compiledLoanRules) {
+
+    if (compiledLoanRules != null) {
+      return compiledLoanRules;
+    }
+    CompiledLoanRules compiled = new CompiledLoanRules(loanRulesAsTextFile);
+    synchronized (rules) {
+      if (rules.compiledLoanRules == null && rules.loanRulesAsTextFile.equals(loanRulesAsTextFile)) {
+        rules.compiledLoanRules = compiled;
+      }
+    }
+    return compiled;
+  }
+
   /**
    * Completely drop the cache. This enforces rebuilding the drools rules
    * even when the loan rules haven't changed.
    */
   public static void dropCache() {
     rulesMap.clear();
+    draftCache.clear();
   }
 
   /**
@@ -80,9 +565,23 @@ public class LoanRulesEngineResource extends Resource {
    */
   public static void clearCache() {
     for (Rules rules: rulesMap.values()) {
+      invalidate(rules);
+    }
+  }
+
+  /**
+   * Enforce the reload of the rules, and ignore the rules of a running reload because
+   * they may have been fetched before the change.
+   */
+  private static void invalidate(Rules rules) {
+    synchronized (rules) {
       // timestamp in the past enforces reload
       rules.reloadTimestamp = 0;
+      rules.reload = null;
+      rules.generation++;
+      rules.fromSnapshot = false;
     }
+    rules.cache.clear();
   }
 
   /**
@@ -95,19 +594,203 @@ public class LoanRulesEngineResource extends Resource {
     if (rules == null) {
       return;
     }
-    rules.reloadTimestamp = 0;
+    invalidate(rules);
+  }
+
+  /**
+   * Loan rules converted and compiled by {@link #compile(String)}, not yet installed.
+   */
+  static final class CompiledRules {
+    private final String loanRulesAsTextFile;
+    private final String loanRulesAsDrools;
+    private final LoanRulesEngine engine;
+    private final long compileNanos;
+
+    private CompiledRules(String loanRulesAsTextFile, String loanRulesAsDrools,
+        LoanRulesEngine engine, long compileNanos) {
+      this.loanRulesAsTextFile = loanRulesAsTextFile;
+      this.loanRulesAsDrools = loanRulesAsDrools;
+      this.engine = engine;
+      this.compileNanos = compileNanos;
+    }
+  }
+
+  /**
+   * Convert and compile loan rules for {@link #install(String, CompiledRules, int)}.
+   * @param loanRulesAsTextFile  loan rules in FOLIO text format
+   * @return the compiled rules
+   * @throws LoanRulesException  on a syntax error in the loan rules
+   */
+  static CompiledRules compile(String loanRulesAsTextFile) {
+    long start = System.nanoTime();
+    String loanRulesAsDrools = Text2Drools.convert(loanRulesAsTextFile);
+    LoanRulesEngine engine = createEngine(loanRulesAsTextFile, loanRulesAsDrools);
+    return new CompiledRules(loanRulesAsTextFile, loanRulesAsDrools, engine, System.nanoTime() - start);
+  }
+
+  /**
+   * Enforce reload of the tenant's loan rules because they are about to be replaced.
+   * @param tenantId  id of the tenant
+   * @return the generation that {@link #install(String, CompiledRules, int)} expects
+   */
+  static int invalidate(String tenantId) {
+    Rules rules = rulesMap.computeIfAbsent(tenantId, Rules::new);
+    synchronized (rules) {
+      invalidate(rules);
+      return rules.generation;
+    }
   }
 
   /**
-   * Create a loan rules engine that listens at applyPath and applyAllPath.
+   * Install the compiled rules that the storage has accepted, unless the tenant's rules
+   * have been invalidated since {@link #invalidate(String)} returned the generation.
+   * A running reload is abandoned because it may have fetched the replaced rules.
+   * The rules are announced to the other module instances if a channel is set.
+   * @param tenantId  id of the tenant
+   * @param compiledRules  the rules to install
+   * @param generation  the return value of {@link #invalidate(String)}
+   */
+  static void install(String tenantId, CompiledRules compiledRules, int generation) {
+    installCompiled(tenantId, compiledRules, generation);
+    LoanRulesChannel currentChannel = channel;
+    if (currentChannel != null) {
+      currentChannel.publish(LoanRulesChannel.announcement(
+          INSTANCE_ID, tenantId, compiledRules.loanRulesAsTextFile));
+    }
+  }
+
+  private static void installCompiled(String tenantId, CompiledRules compiledRules, int generation) {
+    Rules rules = rulesMap.get(tenantId);
+    if (rules == null) {
+      return;
+    }
+    rules.compileLatency.record(compiledRules.compileNanos);
+    LoanRulesEngine engine = rules.cache.cachingEngine(
+        sha256(compiledRules.loanRulesAsTextFile), compiledRules.engine);
+    synchronized (rules) {
+      if (generation != rules.generation) {
+        return;
+      }
+      rules.generation++;
+      rules.reload = null;
+      rules.loanRulesAsTextFile = compiledRules.loanRulesAsTextFile;
+      rules.loanRulesAsDrools = compiledRules.loanRulesAsDrools;
+      // unknown until the next reload, that transfers the loan rules but doesn't recompile them
+      rules.eTag = null;
+      rules.updatedDate = null;
+      rules.engine = engine;
+      rules.compiledLoanRules = compiledOrNull(compiledRules.engine);
+      rules.usesLocationHierarchy = LocationIndex.isNeeded(compiledRules.loanRulesAsDrools);
+      rules.reloadTimestamp = System.currentTimeMillis();
+      rules.fromSnapshot = false;
+      rules.cache.clear();
+      rules.statistics = new LoanRulesStatistics();
+      estimate(rules);
+    }
+    writeSnapshot(rules);
+    evictTenants(rules);
+  }
+
+  /**
+   * Set the channel that announces new loan rules saved by this module instance to
+   * the other instances, and that receives their announcements.
+   * @param newChannel  the channel, null to disable announcements
+   */
+  public static void setChannel(LoanRulesChannel newChannel) {
+    channel = newChannel;
+    if (newChannel == null) {
+      return;
+    }
+    newChannel.subscribe(announcement -> {
+      // ignore a channel that has been replaced
+      if (channel == newChannel) {
+        receive(announcement);
+      }
+    });
+  }
+
+  /**
+   * Install the loan rules that another module instance has saved, unless the tenant's
+   * rules haven't been loaded yet or are the same. An announcement whose loan rules don't
+   * match its hash is ignored. The compilation runs in the evaluation pool, or in the
+   * background if there is none; until it is installed the next request reloads the
+   * rules from the storage.
+   * @param announcement  see {@link LoanRulesChannel}
+   */
+  private static void receive(JsonObject announcement) {
+    if (INSTANCE_ID.equals(announcement.getString(LoanRulesChannel.INSTANCE_ID))) {
+      return;
+    }
+    String tenantId = announcement.getString(LoanRulesChannel.TENANT_ID);
+    String loanRulesAsTextFile = announcement.getString(LoanRulesChannel.LOAN_RULES_AS_TEXT_FILE);
+    if (tenantId == null || loanRulesAsTextFile == null) {
+      return;
+    }
+    if (! sha256(loanRulesAsTextFile).equals(announcement.getString(LoanRulesChannel.LOAN_RULES_HASH))) {
+      log.warn("Ignoring announced loan rules of tenant {}, they don't match their hash", tenantId);
+      return;
+    }
+    Rules rules = rulesMap.get(tenantId);
+    if (rules == null || rules.engine != null && rules.loanRulesAsTextFile.equals(loanRulesAsTextFile)) {
+      return;
+    }
+    int generation = invalidate(tenantId);
+    Supplier<Void> installation = () -> {
+      installCompiled(tenantId, compile(loanRulesAsTextFile), generation);
+      return null;
+    };
+    // this runs on an event loop, without pool compile in the background rather than here
+    LoanRulesEvaluationPool pool = evaluationPool;
+    CompletableFuture<Void> installed = pool == null
+        ? CompletableFuture.supplyAsync(installation)
+        : pool.evaluate(installation);
+    installed.whenComplete((result, e) -> {
+      if (e != null) {
+        log.error("Cannot install announced loan rules of tenant " + tenantId,
+            e instanceof CompletionException ? e.getCause() : e);
+      }
+    });
+  }
+
+  /**
+   * The loan rules converted into a Drools file, taken from the tenant's engine if it
+   * has been compiled from the same loan rules.
+   * @param tenantId  id of the tenant
+   * @param loanRulesAsTextFile  loan rules in FOLIO text format
+   * @return the Drools file
+   * @throws LoanRulesException  on a syntax error in the loan rules
+   */
+  static String loanRulesAsDrools(String tenantId, String loanRulesAsTextFile) {
+    Rules rules = rulesMap.get(tenantId);
+    if (rules != null) {
+      synchronized (rules) {
+        if (rules.engine != null && rules.loanRulesAsTextFile.equals(loanRulesAsTextFile)) {
+          return rules.loanRulesAsDrools;
+        }
+      }
+    }
+    return Text2Drools.convert(loanRulesAsTextFile);
+  }
+
+  /**
+   * Create a loan rules engine that listens at applyPath, applyAllPath, applyBatchPath,
+   * statisticsPath and policyMatrixPath.
    * @param applyPath  URL path for loan rules triggering that returns the first match
    * @param applyAllPath  URL path for loan rules triggering that returns all matches
+   * @param applyBatchPath  URL path for loan rules triggering for a list of parameters
+   * @param statisticsPath  URL path for the statistics of the tenant's loan rules engine
+   * @param policyMatrixPath  URL path for the loan policy of all combinations of lists of ids
    * @param client  the HttpClient to use for requests via Okapi
    */
-  public LoanRulesEngineResource(String applyPath, String applyAllPath, HttpClient client) {
+  public LoanRulesEngineResource(String applyPath, String applyAllPath,
+      String applyBatchPath, String statisticsPath, String policyMatrixPath, HttpClient client) {
+
     super(client);
     this.applyPath = applyPath;
     this.applyAllPath = applyAllPath;
+    this.applyBatchPath = applyBatchPath;
+    this.statisticsPath = statisticsPath;
+    this.policyMatrixPath = policyMatrixPath;
   }
 
   /**
@@ -117,6 +800,11 @@ public class LoanRulesEngineResource extends Resource {
   public void register(Router router) {
     router.get(applyPath   ).handler(this::apply);
     router.get(applyAllPath).handler(this::applyAll);
+    router.post(applyBatchPath).handler(BodyHandler.create());
+    router.post(applyBatchPath).handler(this::applyBatch);
+    router.get(statisticsPath).handler(this::statistics);
+    router.post(policyMatrixPath).handler(BodyHandler.create());
+    router.post(policyMatrixPath).handler(this::policyMatrix);
   }
 
   private String getTenantId(RoutingContext routingContext) {
@@ -128,126 +816,418 @@ public class LoanRulesEngineResource extends Resource {
   }
 
   private boolean isCurrent(Rules rules) {
-    if (rules == null) {
-      return false;
-    }
-    return rules.reloadTimestamp + maxAgeInMilliseconds > System.currentTimeMillis();
+    return rules.engine != null
+        && (rules.fromSnapshot
+            || rules.reloadTimestamp + maxAgeInMilliseconds > System.currentTimeMillis());
   }
 
   /**
-   * Reload is needed if the last reload is TRIGGER_AGE_IN_MILLISECONDS old
-   * and a reload hasn't been initiated yet.
+   * Reload is needed if the last reload is TRIGGER_AGE_IN_MILLISECONDS old.
    * @param rules - rules to reload
    * @return whether reload is needed
    */
   private boolean reloadNeeded(Rules rules) {
-    if (rules.reloadInitiated) {
-      return false;
-    }
     return rules.reloadTimestamp + triggerAgeInMilliseconds < System.currentTimeMillis();
   }
 
   /**
-   * Load the loan rules from the storage module.
+   * Load the loan rules from the storage module. If a reload of the tenant's rules is
+   * already running return that reload so that concurrent requests fetch and compile
+   * the rules only once. The compilation runs off the request thread, the previous
+   * engine keeps serving until the new engine is installed.
    * @param rules - where to store the rules and reload information
-   * @param routingContext - where to report any error
-   * @param done - invoked after success
+   * @param routingContext - the request that triggers the reload
+   * @return the engine of the reloaded rules, or the failure
    */
-  private void reloadRules(Rules rules, RoutingContext routingContext, Handler<Void> done) {
-    final Clients clients = Clients.create(new WebContext(routingContext), client);
-    CollectionResourceClient loansRulesClient = clients.loanRulesStorage();
+  private CompletableFuture<HttpResult<LoanRulesEngine>> reloadRules(
+      Rules rules, RoutingContext routingContext) {
 
-    if (loansRulesClient == null) {
-      return;
+    synchronized (rules) {
+      if (rules.reload != null) {
+        return rules.reload;
+      }
+      int generation = rules.generation;
+      final Clients clients = Clients.create(new WebContext(routingContext), client);
+      CollectionResourceClient loansRulesClient = clients.loanRulesStorage();
+
+      if (loansRulesClient == null) {
+        return CompletableFuture.completedFuture(HttpResult.failed(
+          new ServerErrorFailure("Cannot create loan rules storage client")));
+      }
+
+      // only ask for a changed body if there is an engine for the current body
+      String eTag = rules.engine == null ? null : rules.eTag;
+      CompletableFuture<HttpResult<LoanRulesEngine>> reload = loansRulesClient.getIfNoneMatch(eTag)
+          .thenApplyAsync(response -> install(rules, generation, response))
+          .exceptionally(e -> {
+            log.error("reloadRules", e);
+            return HttpResult.failed(new ServerErrorFailure(e));
+          });
+      rules.reload = reload;
+      reload.whenComplete((result, e) -> {
+        synchronized (rules) {
+          if (rules.reload == reload) {
+            rules.reload = null;
+          }
+        }
+      });
+      return reload;
     }
+  }
 
-    loansRulesClient.get().thenAccept(response -> {
-      try {
-        if (response.getStatusCode() != 200) {
-          ForwardResponse.forward(routingContext.response(), response);
-          log.error("{} {}", response.getStatusCode(), response.getBody());
-          return;
+  /**
+   * Compile the loan rules of the storage response unless they are unchanged,
+   * and install them unless the rules have been invalidated since fetching them.
+   * The loan rules are unchanged if the storage replies 304 Not Modified, or if
+   * the metadata.updatedDate or the text is the same.
+   * @param rules - where to store the rules and reload information
+   * @param generation - rules.generation when the reload started
+   * @param response - response of the loan rules storage
+   * @return the engine of the loan rules in the response, or the failure
+   */
+  private static HttpResult<LoanRulesEngine> install(Rules rules, int generation, Response response) {
+    try {
+      if (response.getStatusCode() == 304 && rules.engine != null) {
+        refreshed(rules, generation);
+        return HttpResult.succeeded(rules.engine);
+      }
+      if (response.getStatusCode() != 200) {
+        log.error("{} {}", response.getStatusCode(), response.getBody());
+        return HttpResult.failed(new ForwardOnFailure(response));
+      }
+
+      JsonObject loanRules = response.getJson();
+      if (log.isDebugEnabled()) {
+        log.debug("loanRules = {}", loanRules.encodePrettily());
+      }
+      String loanRulesAsTextFile = loanRules.getString("loanRulesAsTextFile");
+      if (loanRulesAsTextFile == null) {
+        throw new NullPointerException("loanRulesAsTextFile");
+      }
+      String eTag = response.getHeader("ETag");
+      String updatedDate = loanRules.getJsonObject("metadata", new JsonObject()).getString("updatedDate");
+      if (rules.engine != null
+          && (updatedDate != null && updatedDate.equals(rules.updatedDate)
+              || rules.loanRulesAsTextFile.equals(loanRulesAsTextFile))) {
+        rules.eTag = eTag;
+        refreshed(rules, generation);
+        return HttpResult.succeeded(rules.engine);
+      }
+      long start = System.nanoTime();
+      String loanRulesAsDrools = Text2Drools.convert(loanRulesAsTextFile);
+      log.debug("loanRulesAsDrools = {}", loanRulesAsDrools);
+      LoanRulesEngine createdEngine = createEngine(loanRulesAsTextFile, loanRulesAsDrools);
+      LoanRulesEngine engine = rules.cache.cachingEngine(sha256(loanRulesAsTextFile), createdEngine);
+      rules.compileLatency.record(System.nanoTime() - start);
+      boolean installed = false;
+      synchronized (rules) {
+        if (generation == rules.generation) {
+          installed = true;
+          rules.loanRulesAsTextFile = loanRulesAsTextFile;
+          rules.loanRulesAsDrools = loanRulesAsDrools;
+          rules.eTag = eTag;
+          rules.updatedDate = updatedDate;
+          rules.engine = engine;
+          rules.compiledLoanRules = compiledOrNull(createdEngine);
+          rules.usesLocationHierarchy = LocationIndex.isNeeded(loanRulesAsDrools);
+          rules.reloadTimestamp = System.currentTimeMillis();
+          rules.fromSnapshot = false;
+          rules.cache.clear();
+          rules.statistics = new LoanRulesStatistics();
+          estimate(rules);
         }
+      }
+      if (installed) {
+        writeSnapshot(rules);
+        evictTenants(rules);
+      }
+      return HttpResult.succeeded(engine);
+    }
+    catch (Exception e) {
+      log.error("reloadRules", e);
+      return HttpResult.failed(new ServerErrorFailure(e));
+    }
+  }
 
+  /**
+   * Mark the installed rules as up to date unless they have been invalidated.
+   * @param rules - the rules to mark
+   * @param generation - rules.generation when the reload started
+   */
+  private static void refreshed(Rules rules, int generation) {
+    synchronized (rules) {
+      if (generation == rules.generation) {
         rules.reloadTimestamp = System.currentTimeMillis();
-        rules.reloadInitiated = false;
-        JsonObject loanRules = new JsonObject(response.getBody());
-        if (log.isDebugEnabled()) {
-          log.debug("loanRules = {}", loanRules.encodePrettily());
-        }
-        String loanRulesAsTextFile = loanRules.getString("loanRulesAsTextFile");
-        if (loanRulesAsTextFile == null) {
-          throw new NullPointerException("loanRulesAsTextFile");
-        }
-        if (rules.loanRulesAsTextFile.equals(loanRulesAsTextFile)) {
-          done.handle(null);
-          return;
-        }
-        rules.loanRulesAsTextFile = loanRulesAsTextFile;
-        rules.loanRulesAsDrools = Text2Drools.convert(loanRulesAsTextFile);
-        log.debug("loanRulesAsDrools = {}", rules.loanRulesAsDrools);
-        rules.drools = new Drools(rules.loanRulesAsDrools);
-        done.handle(null);
-      }
-      catch (Exception e) {
-        log.error("reloadRules", e);
-        if (routingContext.response().ended()) {
-          return;
+        rules.fromSnapshot = false;
+      }
+    }
+  }
+
+  /**
+   * Load the locations of the tenant and build the location index. If a load is
+   * already running return that load.
+   * @param rules - where to store the location index
+   * @param routingContext - the request that triggers the load
+   * @return the location index, or the failure
+   */
+  private CompletableFuture<HttpResult<LocationIndex>> reloadLocations(
+      Rules rules, RoutingContext routingContext) {
+
+    synchronized (rules) {
+      if (rules.locationReload != null) {
+        return rules.locationReload;
+      }
+      final Clients clients = Clients.create(new WebContext(routingContext), client);
+      CollectionResourceClient locationsClient = clients.locationsStorage();
+
+      if (locationsClient == null) {
+        return CompletableFuture.completedFuture(HttpResult.failed(
+          new ServerErrorFailure("Cannot create locations storage client")));
+      }
+
+      CompletableFuture<HttpResult<LocationIndex>> reload =
+          fetchLocations(locationsClient, 0, new JsonArray())
+          .thenApply(result -> {
+            if (result.failed()) {
+              return HttpResult.<LocationIndex>failed(result.cause());
+            }
+            LocationIndex locationIndex = LocationIndex.fromLocations(result.value());
+            rules.locationIndex = locationIndex;
+            rules.locationIndexTimestamp = System.currentTimeMillis();
+            log.info("Loaded {} locations of tenant {}", locationIndex.size(), rules.tenantId);
+            return HttpResult.succeeded(locationIndex);
+          })
+          .exceptionally(e -> {
+            log.error("reloadLocations", e);
+            return HttpResult.failed(new ServerErrorFailure(e));
+          });
+      rules.locationReload = reload;
+      reload.whenComplete((result, e) -> {
+        synchronized (rules) {
+          if (rules.locationReload == reload) {
+            rules.locationReload = null;
+          }
         }
-        internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
+      });
+      return reload;
+    }
+  }
+
+  /**
+   * Fetch all locations page by page, starting at offset.
+   * @param locationsClient - client of the location storage
+   * @param offset - index of the first location to fetch
+   * @param locations - where to add the locations
+   * @return locations, or the failure
+   */
+  private static CompletableFuture<HttpResult<JsonArray>> fetchLocations(
+      CollectionResourceClient locationsClient, int offset, JsonArray locations) {
+
+    return locationsClient.getMany(null, LOCATIONS_PAGE_SIZE, offset).thenCompose(response -> {
+      if (response.getStatusCode() != 200) {
+        log.error("{} {}", response.getStatusCode(), response.getBody());
+        return CompletableFuture.completedFuture(HttpResult.failed(new ForwardOnFailure(response)));
       }
+      JsonArray page = response.getJson().getJsonArray("locations", new JsonArray());
+      locations.addAll(page);
+      if (page.size() < LOCATIONS_PAGE_SIZE) {
+        return CompletableFuture.completedFuture(HttpResult.succeeded(locations));
+      }
+      return fetchLocations(locationsClient, offset + page.size(), locations);
     });
   }
 
   /**
-   * Return a Drools for the tenantId of the routingContext. On error send the
+   * Return a LoanRulesEngine for the tenantId of the routingContext. On error send the
    * error message via the routingContext's response.
    * @param routingContext - where to get the tenantId and send any error message
-   * @param droolsHandler - where to provide the Drools
+   * @param engineHandler - where to provide the LoanRulesEngine
+   */
+  private void engine(RoutingContext routingContext, Handler<LoanRulesEngine> engineHandler) {
+    rulesEngine(routingContext, (rules, engine) -> engineHandler.handle(engine));
+  }
+
+  /**
+   * Like {@link #engine(RoutingContext, Handler)} but also provide the tenant's rules
+   * the engine has been resolved from.
    */
-  private void drools(RoutingContext routingContext, Handler<Drools> droolsHandler) {
+  private void rulesEngine(RoutingContext routingContext,
+      BiConsumer<Rules, LoanRulesEngine> engineHandler) {
+
     try {
       String tenantId = getTenantId(routingContext);
-      Rules rules = rulesMap.get(tenantId);
+      Rules rules = rulesMap.computeIfAbsent(tenantId, Rules::new);
+      rules.lastAccess = System.currentTimeMillis();
+      Handler<LoanRulesEngine> recordingHandler =
+          engine -> engineHandler.accept(rules, rules.statistics.recording(engine));
       if (isCurrent(rules)) {
-        droolsHandler.handle(rules.drools);
+        resolveLocations(rules, routingContext, rules.engine, recordingHandler);
         if (reloadNeeded(rules)) {
-          rules.reloadInitiated = true;
-          reloadRules(rules, routingContext, done -> {});
+          reloadRules(rules, routingContext);
         }
         return;
       }
 
-      if (rules == null) {
-        rules = new Rules();
-        rulesMap.put(tenantId, rules);
-      }
-      Rules finalRules = rules;
-
-      reloadRules(rules, routingContext, done -> {
-        try {
-          droolsHandler.handle(finalRules.drools);
-        } catch (Exception e) {
-          log.error("drools droolsHandler", e);
-          internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
+      reloadRules(rules, routingContext).thenAccept(result -> {
+        if (result.failed()) {
+          result.cause().writeTo(routingContext.response());
+          return;
         }
+        resolveLocations(rules, routingContext, result.value(), recordingHandler);
       });
     } catch (Exception e) {
-      log.error("drools", e);
+      log.error("engine", e);
       internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
     }
   }
 
-  private boolean invalidUuid(HttpServerRequest request, String paramName) {
-    final String regex = "^[a-fA-F0-9]{8}-[a-fA-F0-9]{4}-[1-5][a-fA-F0-9]{3}-[89abAB][a-fA-F0-9]{3}-[a-fA-F0-9]{12}$";
-    String uuid = request.getParam(paramName);
+  /**
+   * Provide the engine to the engineHandler. If the loan rules use the campus, branch
+   * or collection criterium the engine gets them from the tenant's location index;
+   * an outdated location index is used while it is reloaded in the background.
+   * On error send the error message via the routingContext's response.
+   */
+  private void resolveLocations(Rules rules, RoutingContext routingContext,
+      LoanRulesEngine engine, Handler<LoanRulesEngine> engineHandler) {
+
+    try {
+      LocationIndex locationIndex = rules.locationIndex;
+      if (! rules.usesLocationHierarchy) {
+        engineHandler.handle(engine);
+        return;
+      }
+      if (locationIndex != null) {
+        engineHandler.handle(locationIndex.resolving(engine));
+        if (rules.locationIndexTimestamp + LOCATION_INDEX_MAX_AGE_IN_MILLISECONDS
+            < System.currentTimeMillis()) {
+          reloadLocations(rules, routingContext);
+        }
+        return;
+      }
+    } catch (Exception e) {
+      log.error("engine engineHandler", e);
+      internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
+      return;
+    }
+
+    reloadLocations(rules, routingContext).thenAccept(result -> {
+      try {
+        if (result.failed()) {
+          result.cause().writeTo(routingContext.response());
+          return;
+        }
+        engineHandler.handle(result.value().resolving(engine));
+      } catch (Exception e) {
+        log.error("engine engineHandler", e);
+        internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
+      }
+    });
+  }
+
+  /**
+   * Apply the tenant's loan rules within this module instance, without the
+   * HTTP request to applyPath. This uses the same engine and cache as applyPath
+   * and is possible only if the loan rules are loaded, no reload is due yet,
+   * the location index is loaded if the loan rules need it, and all ids are valid.
+   * @param tenantId  id of the tenant
+   * @param itemTypeId  material type id of the item
+   * @param loanTypeId  loan type id of the item
+   * @param patronGroupId  patron group id of the user
+   * @param shelvingLocationId  location id of the item
+   * @return the loan policy id, or null if the loan rules need to be applied via applyPath
+   */
+  public static String applyLocally(String tenantId, String itemTypeId, String loanTypeId,
+      String patronGroupId, String shelvingLocationId) {
+
+    LoanRulesEngine engine = localEngine(tenantId, itemTypeId, loanTypeId, patronGroupId, shelvingLocationId);
+    if (engine == null) {
+      return null;
+    }
+    try {
+      return engine.loanPolicy(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId);
+    } catch (Exception e) {
+      log.error("applyLocally", e);
+      return null;
+    }
+  }
+
+  /**
+   * Like {@link #applyLocally(String, String, String, String, String)} but evaluates the
+   * loan rules in the evaluation pool if there is one.
+   * @return the loan policy id, or null if the loan rules need to be applied via applyPath;
+   *         this includes a full evaluation pool because applyPath reports it
+   */
+  public static CompletableFuture<String> applyLocallyAsync(String tenantId, String itemTypeId,
+      String loanTypeId, String patronGroupId, String shelvingLocationId) {
+
+    LoanRulesEngine engine = localEngine(tenantId, itemTypeId, loanTypeId, patronGroupId, shelvingLocationId);
+    if (engine == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return LoanRulesEngineResource.<String>evaluate(
+        () -> engine.loanPolicy(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId))
+      .exceptionally(e -> {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        if (! (cause instanceof RejectedExecutionException)) {
+          log.error("applyLocallyAsync", cause);
+        }
+        return null;
+      });
+  }
+
+  /**
+   * @return the recording engine for applyLocally, null if the loan rules need to be applied via applyPath
+   */
+  private static LoanRulesEngine localEngine(String tenantId, String itemTypeId, String loanTypeId,
+      String patronGroupId, String shelvingLocationId) {
+
+    Rules rules = rulesMap.get(tenantId == null ? "" : tenantId);
+    if (rules == null) {
+      return null;
+    }
+    rules.lastAccess = System.currentTimeMillis();
+    LoanRulesEngine engine = rules.engine;
+    // a request to applyPath triggers the reload
+    if (engine == null
+        || rules.reloadTimestamp + triggerAgeInMilliseconds < System.currentTimeMillis()) {
+      return null;
+    }
+    if (uuidError(ITEM_TYPE_ID_NAME, itemTypeId) != null
+        || uuidError(LOAN_TYPE_ID_NAME, loanTypeId) != null
+        || uuidError(PATRON_TYPE_ID_NAME, patronGroupId) != null
+        || uuidError(SHELVING_LOCATION_ID_NAME, shelvingLocationId) != null) {
+      return null;
+    }
+    if (rules.usesLocationHierarchy) {
+      LocationIndex locationIndex = rules.locationIndex;
+      if (locationIndex == null) {
+        return null;
+      }
+      engine = locationIndex.resolving(engine);
+    }
+    return rules.statistics.recording(engine);
+  }
+
+  /**
+   * @param paramName  name of the parameter
+   * @param uuid  value of the parameter
+   * @return the error message if uuid is null or invalid, null otherwise
+   */
+  private static String uuidError(String paramName, String uuid) {
     if (uuid == null) {
-      ClientErrorResponse.badRequest(request.response(), "required query parameter missing: " + paramName);
-      return true;
+      return "required query parameter missing: " + paramName;
+    }
+    if (! uuid.matches(UUID_REGEX)) {
+      return "invalid uuid format of " + paramName +
+          ", expecting " + UUID_REGEX + " but it is " + uuid;
     }
-    if (! uuid.matches(regex)) {
-      ClientErrorResponse.badRequest(request.response(), "invalid uuid format of " + paramName +
-          ", expecting " + regex + " but it is " + uuid);
+    return null;
+  }
+
+  private boolean invalidUuid(HttpServerRequest request, String paramName) {
+    String error = uuidError(paramName, request.getParam(paramName));
+    if (error != null) {
+      ClientErrorResponse.badRequest(request.response(), error);
       return true;
     }
     return false;
@@ -266,62 +1246,286 @@ public class LoanRulesEngineResource extends Resource {
     if (invalidApplyParameters(request)) {
       return;
     }
-    drools(routingContext, drools -> {
-      try {
-        String itemTypeId = request.getParam(ITEM_TYPE_ID_NAME);
-        String loanTypeId = request.getParam(LOAN_TYPE_ID_NAME);
-        String patronGroupId = request.getParam(PATRON_TYPE_ID_NAME);
-        String shelvingLocationId = request.getParam(SHELVING_LOCATION_ID_NAME);
-        String loanPolicyId = drools.loanPolicy(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId);
-        JsonObject json = new JsonObject().put("loanPolicyId", loanPolicyId);
+    String itemTypeId = request.getParam(ITEM_TYPE_ID_NAME);
+    String loanTypeId = request.getParam(LOAN_TYPE_ID_NAME);
+    String patronGroupId = request.getParam(PATRON_TYPE_ID_NAME);
+    String shelvingLocationId = request.getParam(SHELVING_LOCATION_ID_NAME);
+    engine(routingContext, engine -> evaluate(routingContext, "apply",
+        () -> engine.loanPolicy(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId),
+        loanPolicyId -> {
+          JsonObject json = new JsonObject().put("loanPolicyId", loanPolicyId);
 
-        new OkJsonHttpResult(json)
-          .writeTo(routingContext.response());
+          new OkJsonHttpResult(json)
+            .writeTo(routingContext.response());
+        }));
+  }
+
+  private void applyAll(RoutingContext routingContext) {
+    String loanRules = routingContext.request().getParam("loan_rules");
+    if (loanRules == null) {
+      engine(routingContext, engine -> applyAll(routingContext, engine));
+      return;
+    }
+
+    // compile in the evaluation pool; concurrent requests for the same draft share the compilation
+    draftCache.get(loanRules, text -> evaluate(() -> createEngine(text, Text2Drools.convert(text))))
+    .whenComplete((engine, throwable) -> {
+      if (throwable == null) {
+        applyAll(routingContext, engine);
+        return;
       }
-      catch (Exception e) {
-        log.error("apply", e);
-        internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
+      Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+      if (cause instanceof RejectedExecutionException) {
+        ServerErrorResponse.serviceUnavailable(routingContext.response(), cause.getMessage());
+        return;
       }
+      log.error("applyAll", cause);
+      internalError(routingContext.response(), ExceptionUtils.getStackTrace(cause));
     });
   }
 
-  private void applyAll(RoutingContext routingContext) {
-    String loanRules = routingContext.pathParam("loan_rules");
-    if (loanRules == null) {
-      drools(routingContext, drools -> applyAll(routingContext, drools));
+  private void applyAll(RoutingContext routingContext, LoanRulesEngine engine) {
+    HttpServerRequest request = routingContext.request();
+    if (invalidApplyParameters(request)) {
       return;
     }
+    String itemTypeId = request.getParam(ITEM_TYPE_ID_NAME);
+    String loanTypeId = request.getParam(LOAN_TYPE_ID_NAME);
+    String patronGroupId = request.getParam(PATRON_TYPE_ID_NAME);
+    String shelvingLocationId = request.getParam(SHELVING_LOCATION_ID_NAME);
+    evaluate(routingContext, "applyAll",
+        () -> engine.loanPolicies(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId),
+        matches -> {
+          JsonObject json = new JsonObject().put("loanRuleMatches", matches);
 
-    try {
-      String droolsFile = Text2Drools.convert(loanRules);
-      Drools drools = new Drools(droolsFile);
-      applyAll(routingContext, drools);
+          new OkJsonHttpResult(json)
+            .writeTo(routingContext.response());
+        });
+  }
+
+  private void statistics(RoutingContext routingContext) {
+    Rules rules = rulesMap.get(getTenantId(routingContext));
+    if (rules == null) {
+      rules = new Rules(getTenantId(routingContext));
     }
-    catch (Exception e) {
-      log.error("applyAll", e);
-      internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
+    JsonObject json = new JsonObject()
+        .put("applyCache", rules.cache.getStatistics())
+        .put("draftCache", draftCache.getStatistics())
+        .put("evaluation", rules.statistics.toJson())
+        .put("compileLatency", rules.compileLatency.toJson())
+        .put("tenantCache", tenantStatistics());
+    LoanRulesEvaluationPool pool = evaluationPool;
+    if (pool != null) {
+      json.put("evaluationPool", pool.getStatistics());
     }
+
+    new OkJsonHttpResult(json)
+      .writeTo(routingContext.response());
   }
 
-  private void applyAll(RoutingContext routingContext, Drools drools) {
-    HttpServerRequest request = routingContext.request();
-    if (invalidApplyParameters(request)) {
+  /**
+   * Validate the apply-batch request body.
+   * @param body  the request body
+   * @return the error message, or null if the body is valid
+   */
+  private static String applyBatchError(JsonObject body) {
+    if (body == null) {
+      return "request body missing";
+    }
+    JsonArray applyRequests = body.getJsonArray("applyRequests");
+    if (applyRequests == null) {
+      return "required property missing: applyRequests";
+    }
+    Object includeLoanRuleMatches = body.getValue("includeLoanRuleMatches");
+    if (includeLoanRuleMatches != null && ! (includeLoanRuleMatches instanceof Boolean)) {
+      return "includeLoanRuleMatches must be a boolean but it is " + includeLoanRuleMatches;
+    }
+    for (int i=0; i<applyRequests.size(); i++) {
+      JsonObject applyRequest = applyRequests.getJsonObject(i);
+      if (applyRequest == null) {
+        return "applyRequests[" + i + "]: must be an object";
+      }
+      for (String name : APPLY_PARAMETER_NAMES) {
+        String uuid = applyRequest.getString(name);
+        if (uuid == null) {
+          return "applyRequests[" + i + "]: required property missing: " + name;
+        }
+        String error = uuidError(name, uuid);
+        if (error != null) {
+          return "applyRequests[" + i + "]: " + error;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Apply the loan rules to a list of parameter sets. All are evaluated using
+   * the same loan rules, each distinct parameter set is evaluated only once.
+   */
+  private void applyBatch(RoutingContext routingContext) {
+    JsonObject body;
+    try {
+      body = routingContext.getBodyAsJson();
+    } catch (Exception e) {
+      ClientErrorResponse.badRequest(routingContext.response(), e.getMessage());
       return;
     }
+    String error;
     try {
-      String itemTypeId = request.getParam(ITEM_TYPE_ID_NAME);
-      String loanTypeId = request.getParam(LOAN_TYPE_ID_NAME);
-      String patronGroupId = request.getParam(PATRON_TYPE_ID_NAME);
-      String shelvingLocationId = request.getParam(SHELVING_LOCATION_ID_NAME);
-      JsonArray matches = drools.loanPolicies(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId);
-      JsonObject json = new JsonObject().put("loanRuleMatches", matches);
+      // reject a large batch before validating each parameter set
+      JsonArray applyRequests = body == null ? null : body.getJsonArray("applyRequests");
+      if (applyRequests != null && applyRequests.size() > MAX_APPLY_BATCH_SIZE) {
+        ClientErrorResponse.payloadTooLarge(routingContext.response(), "Too many applyRequests: "
+            + applyRequests.size() + ", maximum is " + MAX_APPLY_BATCH_SIZE);
+        return;
+      }
+      error = applyBatchError(body);
+    } catch (ClassCastException e) {
+      error = "invalid applyRequests: " + e.getMessage();
+    }
+    if (error != null) {
+      ClientErrorResponse.badRequest(routingContext.response(), error);
+      return;
+    }
+
+    JsonArray applyRequests = body.getJsonArray("applyRequests");
+    boolean includeLoanRuleMatches = body.getBoolean("includeLoanRuleMatches", false);
+
+    engine(routingContext, engine -> evaluate(routingContext, "applyBatch", () -> {
+        Map<List<String>,JsonObject> resultsByParameters = new HashMap<>();
+        JsonArray applyResults = new JsonArray();
+        for (int i=0; i<applyRequests.size(); i++) {
+          JsonObject applyRequest = applyRequests.getJsonObject(i);
+          List<String> parameters = Arrays.asList(
+              applyRequest.getString(ITEM_TYPE_ID_NAME),
+              applyRequest.getString(LOAN_TYPE_ID_NAME),
+              applyRequest.getString(PATRON_TYPE_ID_NAME),
+              applyRequest.getString(SHELVING_LOCATION_ID_NAME));
+          applyResults.add(resultsByParameters.computeIfAbsent(parameters,
+              key -> applyResult(engine, key, includeLoanRuleMatches)));
+        }
+        return applyResults;
+      },
+      applyResults -> {
+        JsonObject json = new JsonObject().put("applyResults", applyResults);
+
+        new OkJsonHttpResult(json)
+          .writeTo(routingContext.response());
+      }));
+  }
 
-      new OkJsonHttpResult(json)
-        .writeTo(routingContext.response());
+  private static JsonObject applyResult(LoanRulesEngine engine, List<String> parameters,
+      boolean includeLoanRuleMatches) {
+
+    String itemTypeId = parameters.get(0);
+    String loanTypeId = parameters.get(1);
+    String patronGroupId = parameters.get(2);
+    String shelvingLocationId = parameters.get(3);
+    JsonObject json = new JsonObject();
+    if (! includeLoanRuleMatches) {
+      return json.put("loanPolicyId",
+          engine.loanPolicy(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId));
     }
-    catch (Exception e) {
-      log.error("applyAll", e);
-      internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
+    JsonArray matches = engine.loanPolicies(itemTypeId, loanTypeId, patronGroupId, shelvingLocationId);
+    String loanPolicyId = matches.isEmpty() ? null : matches.getJsonObject(0).getString("loanPolicyId");
+    return json
+        .put("loanPolicyId", loanPolicyId)
+        .put("loanRuleMatches", matches);
+  }
+
+  /**
+   * Validate the policy-matrix request body.
+   * @param body  the request body
+   * @return the error message, or null if the body is valid
+   */
+  private static String policyMatrixError(JsonObject body) {
+    if (body == null) {
+      return "request body missing";
+    }
+    for (String name : POLICY_MATRIX_PARAMETER_NAMES) {
+      JsonArray ids = body.getJsonArray(name);
+      if (ids == null) {
+        return "required property missing: " + name;
+      }
+      for (int i=0; i<ids.size(); i++) {
+        String error = uuidError(name + "[" + i + "]", ids.getString(i));
+        if (error != null) {
+          return error;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static List<String> ids(JsonObject body, String name) {
+    List<String> ids = new ArrayList<>();
+    body.getJsonArray(name).forEach(id -> ids.add((String) id));
+    return ids;
+  }
+
+  /**
+   * Stream the loan policy of each combination of the ids in the request body as
+   * NDJSON, followed by a line with the number of combinations each loan rule line wins.
+   */
+  private void policyMatrix(RoutingContext routingContext) {
+    JsonObject body;
+    String error;
+    try {
+      body = routingContext.getBodyAsJson();
+      error = policyMatrixError(body);
+    } catch (Exception e) {
+      ClientErrorResponse.badRequest(routingContext.response(), e.getMessage());
+      return;
+    }
+    if (error != null) {
+      ClientErrorResponse.badRequest(routingContext.response(), error);
+      return;
+    }
+
+    rulesEngine(routingContext, (rules, engine) -> {
+      String loanRulesAsTextFile;
+      CompiledLoanRules compiledLoanRules;
+      synchronized (rules) {
+        loanRulesAsTextFile = rules.loanRulesAsTextFile;
+        compiledLoanRules = rules.compiledLoanRules;
+      }
+      LocationIndex locationIndex = rules.locationIndex;
+      evaluate(routingContext, "policyMatrix",
+          () -> compiledLoanRules(rules, loanRulesAsTextFile, compiledLoanRules).policyMatrix(
+              ids(body, POLICY_MATRIX_PARAMETER_NAMES[0]), ids(body, POLICY_MATRIX_PARAMETER_NAMES[1]),
+              ids(body, POLICY_MATRIX_PARAMETER_NAMES[2]), ids(body, POLICY_MATRIX_PARAMETER_NAMES[3]),
+              locationIndex == null ? LocationIndex.EMPTY : locationIndex),
+          matrix -> {
+            HttpServerResponse response = routingContext.response();
+            response.setStatusCode(200);
+            response.putHeader("Content-Type", "application/x-ndjson");
+            response.setChunked(true);
+            writePolicyMatrix(response, matrix);
+          });
+    });
+  }
+
+  /**
+   * Write chunks of the matrix until the write queue is full, and continue when it has been drained.
+   */
+  private static void writePolicyMatrix(HttpServerResponse response, PolicyMatrix matrix) {
+    try {
+      while (! response.writeQueueFull()) {
+        StringBuilder chunk = new StringBuilder(POLICY_MATRIX_CHUNK_SIZE + 1000);
+        boolean more = matrix.write(chunk, POLICY_MATRIX_CHUNK_SIZE);
+        if (! more) {
+          chunk.append(new JsonObject().put("loanRuleLineCoverage", matrix.coverage()).encode());
+          response.end(chunk.toString());
+          return;
+        }
+        response.write(chunk.toString());
+      }
+      response.drainHandler(v -> writePolicyMatrix(response, matrix));
+    } catch (Exception e) {
+      // the status code has been sent, closing the connection signals the error
+      log.error("writePolicyMatrix", e);
+      response.close();
     }
   }
 }
@@ -9,7 +9,6 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.folio.circulation.loanrules.LoanRulesException;
-import org.folio.circulation.loanrules.Text2Drools;
 import org.folio.circulation.support.Clients;
 import org.folio.circulation.support.CollectionResourceClient;
 import org.folio.circulation.support.JsonHttpResult;
@@ -19,6 +18,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.folio.circulation.support.http.server.ServerErrorResponse.internalError;
 
@@ -69,8 +70,9 @@ public class LoanRulesResource extends Resource {
           ForwardResponse.forward(routingContext.response(), response);
           return;
         }
-        JsonObject loanRules = new JsonObject(response.getBody());
-        loanRules.put("loanRulesAsDrools", Text2Drools.convert(
+        JsonObject loanRules = response.getJson();
+        loanRules.put("loanRulesAsDrools", LoanRulesEngineResource.loanRulesAsDrools(
+          new WebContext(routingContext).getTenantId(),
           loanRules.getString("loanRulesAsTextFile")));
 
         new OkJsonHttpResult(loanRules)
@@ -82,8 +84,6 @@ public class LoanRulesResource extends Resource {
     });
   }
 
-  //Cannot combine exception catching as cannot resolve overloaded method for error
-  @SuppressWarnings("squid:S2147")
   private void put(RoutingContext routingContext) {
     final Clients clients = Clients.create(new WebContext(routingContext), client);
     CollectionResourceClient loansRulesClient = clients.loanRulesStorage();
@@ -96,12 +96,7 @@ public class LoanRulesResource extends Resource {
 
     JsonObject rulesInput;
     try {
-      // try to convert, do not safe if conversion fails
       rulesInput = routingContext.getBodyAsJson();
-      Text2Drools.convert(rulesInput.getString("loanRulesAsTextFile"));
-    } catch (LoanRulesException e) {
-      loanRulesError(routingContext.response(), e);
-      return;
     } catch (DecodeException e) {
       loanRulesError(routingContext.response(), e);
       return;
@@ -109,18 +104,36 @@ public class LoanRulesResource extends Resource {
       internalError(routingContext.response(), ExceptionUtils.getStackTrace(e));
       return;
     }
-    LoanRulesEngineResource.clearCache(new WebContext(routingContext).getTenantId());
-    JsonObject rules = rulesInput.copy();
-
-    rules.remove("loanRulesAsDrools");
-
-    loansRulesClient.put(rules).thenAccept(response -> {
-      if (response.getStatusCode() == 204) {
-        SuccessResponse.noContent(routingContext.response());
-      } else {
-        ForwardResponse.forward(routingContext.response(), response);
-      }
-    });
+    String tenantId = new WebContext(routingContext).getTenantId();
+    String loanRulesAsTextFile = rulesInput.getString("loanRulesAsTextFile");
+
+    // compile off the event loop, do not save if the conversion fails
+    CompletableFuture.supplyAsync(() -> LoanRulesEngineResource.compile(loanRulesAsTextFile))
+      .whenComplete((compiledRules, throwable) -> {
+        if (throwable != null) {
+          Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+          if (cause instanceof LoanRulesException) {
+            loanRulesError(routingContext.response(), (LoanRulesException) cause);
+          } else {
+            internalError(routingContext.response(), ExceptionUtils.getStackTrace(cause));
+          }
+          return;
+        }
+        int generation = LoanRulesEngineResource.invalidate(tenantId);
+        JsonObject rules = rulesInput.copy();
+
+        rules.remove("loanRulesAsDrools");
+
+        loansRulesClient.put(rules).thenAccept(response -> {
+          if (response.getStatusCode() == 204) {
+            // the storage has accepted the rules, the next /apply needn't fetch and compile them
+            LoanRulesEngineResource.install(tenantId, compiledRules, generation);
+            SuccessResponse.noContent(routingContext.response());
+          } else {
+            ForwardResponse.forward(routingContext.response(), response);
+          }
+        });
+      });
   }
 
   private static void loanRulesError(HttpServerResponse response, LoanRulesException e) {
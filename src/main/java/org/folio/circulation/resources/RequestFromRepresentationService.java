@@ -11,6 +11,7 @@ import org.folio.circulation.domain.Request;
 import org.folio.circulation.domain.RequestAndRelatedRecords;
 import org.folio.circulation.domain.RequestQueueRepository;
 import org.folio.circulation.domain.RequestStatus;
+import org.folio.circulation.domain.User;
 import org.folio.circulation.domain.ServicePointRepository;
 import org.folio.circulation.domain.UserRepository;
 import org.folio.circulation.domain.validation.ProxyRelationshipValidator;
@@ -58,8 +59,7 @@ class RequestFromRepresentationService {
       .thenApply(r -> r.map(Request::from))
       //.thenComposeAsync(r -> r.combineAfter(loanRepository::findOpenLoanById, Request::withLoan))
       .thenComposeAsync(r -> r.combineAfter(itemRepository::fetchFor, Request::withItem))
-      .thenComposeAsync(r -> r.combineAfter(userRepository::getUser, Request::withRequester))
-      .thenComposeAsync(r -> r.combineAfter(userRepository::getProxyUser, Request::withProxy))
+      .thenComposeAsync(r -> r.after(this::fetchRequesterAndProxy))
       .thenComposeAsync(r -> r.combineAfter(servicePointRepository::getServicePointForRequest, Request::withPickupServicePoint))
       .thenApply(r -> r.map(RequestAndRelatedRecords::new))
       .thenComposeAsync(r -> r.combineAfter(requestQueueRepository::get,
@@ -68,6 +68,18 @@ class RequestFromRepresentationService {
       .thenApply(servicePointPickupLocationValidator::checkServicePointPickupLocation);
   }
 
+  /**
+   * Both users are requested before either arrives, so that the GETs can be batched.
+   */
+  private CompletableFuture<HttpResult<Request>> fetchRequesterAndProxy(Request request) {
+    CompletableFuture<HttpResult<User>> requester = userRepository.getUser(request);
+    CompletableFuture<HttpResult<User>> proxy = userRepository.getProxyUser(request);
+
+    return requester.thenCombine(proxy, (requesterResult, proxyResult) ->
+      requesterResult.combine(proxyResult, (requestingUser, proxyUser) ->
+        request.withRequester(requestingUser).withProxy(proxyUser)));
+  }
+
   private HttpResult<JsonObject> validateStatus(JsonObject representation) {
     RequestStatus status = RequestStatus.from(representation);
 
@@ -0,0 +1,39 @@
+package org.folio.circulation.resources;
+
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.folio.circulation.support.IdentityMap;
+import org.folio.circulation.support.InFlightGets;
+import org.folio.circulation.support.OkJsonHttpResult;
+import org.folio.circulation.support.http.server.WebContext;
+
+/**
+ * The storage calls of the tenant that this module instance has saved since its start,
+ * by the identity maps of the requests and by coalescing identical GETs.
+ */
+public class StorageStatisticsResource extends Resource {
+  private final String rootPath;
+
+  public StorageStatisticsResource(String rootPath, HttpClient client) {
+    super(client);
+    this.rootPath = rootPath;
+  }
+
+  @Override
+  public void register(Router router) {
+    router.get(rootPath).handler(this::get);
+  }
+
+  private void get(RoutingContext routingContext) {
+    String tenantId = new WebContext(routingContext).getTenantId();
+
+    JsonObject json = new JsonObject()
+      .put("identityMap", IdentityMap.getStatistics(tenantId))
+      .put("coalescedGets", InFlightGets.getStatistics(tenantId));
+
+    new OkJsonHttpResult(json)
+      .writeTo(routingContext.response());
+  }
+}
@@ -7,6 +7,7 @@ import org.folio.circulation.support.http.server.WebContext;
 import java.net.MalformedURLException;
 
 public class Clients {
+  private final IdentityMap identityMap;
   private final CollectionResourceClient requestsStorageClient;
   private final CollectionResourceClient itemsStorageClient;
   private final CollectionResourceClient holdingsStorageClient;
@@ -28,6 +29,7 @@ public class Clients {
   }
 
   private Clients(OkapiHttpClient client, WebContext context) {
+    identityMap = new IdentityMap(context.getTenantId());
     try {
       requestsStorageClient = createRequestsStorageClient(client, context);
       itemsStorageClient = createItemsStorageClient(client, context);
@@ -111,16 +113,31 @@ public class Clients {
     return loanRulesStorageClient;
   }
 
-  private static CollectionResourceClient getCollectionResourceClient(
+  private CollectionResourceClient getCollectionResourceClient(
     OkapiHttpClient client,
     WebContext context,
     String path)
     throws MalformedURLException {
 
-    return new CollectionResourceClient(client, context.getOkapiBasedUrl(path));
+    return getCollectionResourceClient(client, context, path, null);
   }
 
-  private static CollectionResourceClient createRequestsStorageClient(
+  /**
+   * @param recordsPropertyName  name of the records array of the collection, GETs
+   *                             by id are batched if not null
+   */
+  private CollectionResourceClient getCollectionResourceClient(
+    OkapiHttpClient client,
+    WebContext context,
+    String path,
+    String recordsPropertyName)
+    throws MalformedURLException {
+
+    return new CollectionResourceClient(client, context.getOkapiBasedUrl(path),
+      identityMap, recordsPropertyName);
+  }
+
+  private CollectionResourceClient createRequestsStorageClient(
     OkapiHttpClient client,
     WebContext context)
     throws MalformedURLException {
@@ -128,41 +145,39 @@ public class Clients {
     return getCollectionResourceClient(client, context, "/request-storage/requests");
   }
 
-  private static CollectionResourceClient createItemsStorageClient(
+  private CollectionResourceClient createItemsStorageClient(
     OkapiHttpClient client,
     WebContext context)
     throws MalformedURLException {
 
-    return getCollectionResourceClient(client, context, "/item-storage/items");
+    return getCollectionResourceClient(client, context, "/item-storage/items", "items");
   }
 
-  private static CollectionResourceClient createHoldingsStorageClient(
+  private CollectionResourceClient createHoldingsStorageClient(
     OkapiHttpClient client,
     WebContext context)
     throws MalformedURLException {
 
-    return new CollectionResourceClient(
-      client, context.getOkapiBasedUrl("/holdings-storage/holdings"));
+    return getCollectionResourceClient(client, context, "/holdings-storage/holdings", "holdingsRecords");
   }
 
-  private static CollectionResourceClient createInstanceStorageClient(
+  private CollectionResourceClient createInstanceStorageClient(
     OkapiHttpClient client,
     WebContext context)
     throws MalformedURLException {
 
-    return new CollectionResourceClient(
-      client, context.getOkapiBasedUrl("/instance-storage/instances"));
+    return getCollectionResourceClient(client, context, "/instance-storage/instances", "instances");
   }
 
-  private static CollectionResourceClient createUsersStorageClient(
+  private CollectionResourceClient createUsersStorageClient(
     OkapiHttpClient client,
     WebContext context)
     throws MalformedURLException {
 
-    return getCollectionResourceClient(client, context, "/users");
+    return getCollectionResourceClient(client, context, "/users", "users");
   }
 
-  private static CollectionResourceClient createLoansStorageClient(
+  private CollectionResourceClient createLoansStorageClient(
     OkapiHttpClient client,
     WebContext context)
     throws MalformedURLException {
@@ -170,7 +185,7 @@ public class Clients {
     return getCollectionResourceClient(client, context, "/loan-storage/loans");
   }
 
-  private static CollectionResourceClient createLocationsStorageClient(
+  private CollectionResourceClient createLocationsStorageClient(
     OkapiHttpClient client,
     WebContext context)
     throws MalformedURLException {
@@ -225,7 +240,7 @@ public class Clients {
       OkapiHttpClient client,
       WebContext context)
       throws MalformedURLException {
-    return getCollectionResourceClient(client, context, "/service-points");
+    return getCollectionResourceClient(client, context, "/service-points", "servicepoints");
   }
   
   private CollectionResourceClient createPatronGroupsStorageClient(
@@ -2,33 +2,84 @@ package org.folio.circulation.support;
 
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.http.entity.ContentType;
+import org.folio.circulation.domain.MultipleRecords;
 import org.folio.circulation.support.http.client.OkapiHttpClient;
 import org.folio.circulation.support.http.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonParser;
 
 public class CollectionResourceClient {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  public static final int DEFAULT_MAX_URL_LENGTH = 8000;
+  public static final int DEFAULT_QUERY_PARALLELISM = 4;
+  /** room for ?query=&limit=&offset= around the query */
+  private static final int QUERY_STRING_LENGTH = 32;
+
+  private static volatile int maxUrlLength = DEFAULT_MAX_URL_LENGTH;
+  private static volatile int queryParallelism = DEFAULT_QUERY_PARALLELISM;
+
   private final OkapiHttpClient client;
   private final URL collectionRoot;
+  private final IdentityMap identityMap;
+  private final RecordLoader recordLoader;
 
   public CollectionResourceClient(
     OkapiHttpClient client,
     URL collectionRoot) {
 
+    this(client, collectionRoot, null);
+  }
+
+  /**
+   * @param identityMap  records already fetched during the request, null for none
+   */
+  public CollectionResourceClient(
+    OkapiHttpClient client,
+    URL collectionRoot,
+    IdentityMap identityMap) {
+
+    this(client, collectionRoot, identityMap, null);
+  }
+
+  /**
+   * @param identityMap  records already fetched during the request, null for none
+   * @param recordsPropertyName  name of the records array of a query response,
+   *                             GETs by id are batched into one query on the context
+   *                             of the verticle this client is created in if not null
+   */
+  public CollectionResourceClient(
+    OkapiHttpClient client,
+    URL collectionRoot,
+    IdentityMap identityMap,
+    String recordsPropertyName) {
+
     this.client = client;
     this.collectionRoot = collectionRoot;
+    this.identityMap = identityMap;
+    this.recordLoader = recordsPropertyName == null
+      ? null
+      : new RecordLoader(Vertx.currentContext(), recordsPropertyName,
+          id -> fetch(individualRecordUrl(id)),
+          (query, limit) -> fetch(collectionRoot + createQueryString(query, limit, 0)));
   }
 
   public CompletableFuture<Response> post(
@@ -36,11 +87,13 @@ public class CollectionResourceClient {
 
     CompletableFuture<Response> future = new CompletableFuture<>();
 
+    invalidate(resourceRepresentation.getString("id"));
+
     client.post(collectionRoot,
       resourceRepresentation,
       responseConversationHandler(future::complete));
 
-    return future;
+    return invalidatedWhenComplete(resourceRepresentation.getString("id"), future);
   }
 
   public CompletableFuture<Response> put(
@@ -48,11 +101,13 @@ public class CollectionResourceClient {
 
     final CompletableFuture<Response> future = new CompletableFuture<>();
 
+    invalidate(null);
+
     client.put(collectionRoot,
       resourceRepresentation,
       responseConversationHandler(future::complete));
 
-    return future;
+    return invalidatedWhenComplete(null, future);
   }
 
   public CompletableFuture<Response> put(
@@ -61,46 +116,65 @@ public class CollectionResourceClient {
 
     CompletableFuture<Response> future = new CompletableFuture<>();
 
+    invalidate(id);
+
     client.put(individualRecordUrl(id),
       resourceRepresentation,
       responseConversationHandler(future::complete));
 
-    return future;
+    return invalidatedWhenComplete(id, future);
   }
 
   public CompletableFuture<Response> get() {
+    return fetch(collectionRoot.toString());
+  }
+
+  /**
+   * Get the collection root unless it is unchanged.
+   *
+   * @param eTag entity tag of the representation the caller already has, or null
+   * @return response from the server, status 304 if the entity tag still matches
+   */
+  public CompletableFuture<Response> getIfNoneMatch(String eTag) {
     final CompletableFuture<Response> future = new CompletableFuture<>();
 
-    client.get(collectionRoot,
+    client.getIfNoneMatch(collectionRoot.toString(), eTag,
       responseConversationHandler(future::complete));
 
     return future;
   }
 
   public CompletableFuture<Response> get(String id) {
-    final CompletableFuture<Response> future = new CompletableFuture<>();
-
-    client.get(individualRecordUrl(id),
-      responseConversationHandler(future::complete));
+    if (recordLoader == null) {
+      return identityMapGet(individualRecordUrl(id));
+    }
+    if (identityMap == null) {
+      return recordLoader.load(id);
+    }
 
-    return future;
+    return identityMap.get(collectionRoot.getPath(), individualRecordUrl(id),
+      () -> recordLoader.load(id));
   }
 
   public CompletableFuture<Response> delete(String id) {
     final CompletableFuture<Response> future = new CompletableFuture<>();
 
+    invalidate(id);
+
     client.delete(individualRecordUrl(id),
       responseConversationHandler(future::complete));
 
-    return future;
+    return invalidatedWhenComplete(id, future);
   }
 
   public CompletableFuture<Response> delete() {
     final CompletableFuture<Response> future = new CompletableFuture<>();
 
+    invalidate(null);
+
     client.delete(collectionRoot, responseConversationHandler(future::complete));
 
-    return future;
+    return invalidatedWhenComplete(null, future);
   }
 
   /**
@@ -115,15 +189,11 @@ public class CollectionResourceClient {
   public CompletableFuture<Response> getManyWithRawQueryStringParameters(
     String rawQueryString) {
 
-    final CompletableFuture<Response> future = new CompletableFuture<>();
-
     String url = isProvided(rawQueryString)
       ? String.format("%s?%s", collectionRoot, rawQueryString)
       : collectionRoot.toString();
 
-    client.get(url, responseConversationHandler(future::complete));
-
-    return future;
+    return fetch(url);
   }
 
   public CompletableFuture<Response> getMany(
@@ -131,20 +201,271 @@ public class CollectionResourceClient {
     Integer pageLimit,
     Integer pageOffset) {
 
-    final CompletableFuture<Response> future = new CompletableFuture<>();
+    String url = collectionRoot + createQueryString(
+      urlEncodedCqlQuery, pageLimit, pageOffset);
+
+    if (isBarcodeQuery(urlEncodedCqlQuery)) {
+      return identityMapGet(url);
+    }
+
+    return fetch(url);
+  }
+
+  /**
+   * Get multiple records and decode the response while it is received, mapping
+   * one record at a time, see {@link #getMany(String, Integer, Integer)}.
+   * When {@link InFlightGets} is enabled the response is received completely
+   * instead, so that it can be shared with identical GETs.
+   *
+   * @param mapper  maps each record
+   * @param recordsPropertyName  name of the property of the records array
+   * @return the mapped records and the total records, or the failure
+   */
+  public <T> CompletableFuture<HttpResult<MultipleRecords<T>>> getMany(
+    String urlEncodedCqlQuery,
+    Integer pageLimit,
+    Integer pageOffset,
+    Function<JsonObject, T> mapper,
+    String recordsPropertyName) {
+
+    if ((identityMap != null && isBarcodeQuery(urlEncodedCqlQuery))
+      || InFlightGets.isEnabled()) {
+
+      return getMany(urlEncodedCqlQuery, pageLimit, pageOffset)
+        .thenApply(response -> MultipleRecords.from(response, mapper, recordsPropertyName));
+    }
+
+    final CompletableFuture<HttpResult<MultipleRecords<T>>> future = new CompletableFuture<>();
 
     String url = collectionRoot + createQueryString(
       urlEncodedCqlQuery, pageLimit, pageOffset);
 
-    client.get(url, responseConversationHandler(future::complete));
+    client.get(url, multipleRecordsHandler(future, mapper, recordsPropertyName));
+
+    return future;
+  }
+
+  /**
+   * Get multiple records using raw query string parameters and decode the response
+   * while it is received, see {@link #getManyWithRawQueryStringParameters(String)}.
+   *
+   * @param mapper  maps each record
+   * @param recordsPropertyName  name of the property of the records array
+   * @return the mapped records and the total records, or the failure
+   */
+  public <T> CompletableFuture<HttpResult<MultipleRecords<T>>> getManyWithRawQueryStringParameters(
+    String rawQueryString,
+    Function<JsonObject, T> mapper,
+    String recordsPropertyName) {
+
+    final CompletableFuture<HttpResult<MultipleRecords<T>>> future = new CompletableFuture<>();
+
+    String url = isProvided(rawQueryString)
+      ? String.format("%s?%s", collectionRoot, rawQueryString)
+      : collectionRoot.toString();
+
+    client.get(url, multipleRecordsHandler(future, mapper, recordsPropertyName));
 
     return future;
   }
 
+  /**
+   * Get the records matching any of the values, see
+   * {@link CqlHelper#multipleRecordsCqlQuery(String, String, Collection)}.
+   * The values are split into as many queries as needed to keep each URL within
+   * the maximum URL length, at most {@link #setQueryLimits query parallelism}
+   * of them are sent at the same time.
+   *
+   * @param prefixQueryFragment  fragment of CQL to include at the beginning, may be null
+   * @param indexName  name of the index (property) to match values to
+   * @param values  values to search for
+   * @param mapper  maps each record
+   * @param recordsPropertyName  name of the property of the records array
+   * @return the records of all queries in the order of the values, and the sum
+   * of their total records, or the first failure
+   */
+  public <T> CompletableFuture<HttpResult<MultipleRecords<T>>> getManyByIndex(
+    String prefixQueryFragment,
+    String indexName,
+    Collection<String> values,
+    Function<JsonObject, T> mapper,
+    String recordsPropertyName) {
+
+    final int maxQueryLength = maxUrlLength
+      - collectionRoot.toString().length() - QUERY_STRING_LENGTH;
+
+    final List<List<String>> chunks = CqlHelper.multipleRecordsCqlQueryChunks(
+      prefixQueryFragment, indexName, values, maxQueryLength);
+
+    return fanOut(chunks.size(), queryParallelism,
+      index -> CqlHelper.multipleRecordsCqlQuery(
+        prefixQueryFragment, indexName, chunks.get(index))
+        .after(query -> getMany(query, chunks.get(index).size(), 0,
+          mapper, recordsPropertyName)));
+  }
+
+  public <T> CompletableFuture<HttpResult<MultipleRecords<T>>> getManyByIds(
+    Collection<String> ids,
+    Function<JsonObject, T> mapper,
+    String recordsPropertyName) {
+
+    return getManyByIndex(null, "id", ids, mapper, recordsPropertyName);
+  }
+
+  /**
+   * Set the limits of {@link #getManyByIndex}.
+   *
+   * @param maxUrlLength  maximum length of the URL of each query
+   * @param queryParallelism  maximum number of queries of one call sent at the same time
+   */
+  public static void setQueryLimits(int maxUrlLength, int queryParallelism) {
+    if (queryParallelism < 1) {
+      throw new IllegalArgumentException("queryParallelism must be at least 1");
+    }
+    CollectionResourceClient.maxUrlLength = maxUrlLength;
+    CollectionResourceClient.queryParallelism = queryParallelism;
+  }
+
+  /**
+   * Fetch the chunks with at most parallelism fetches at the same time, starting
+   * the next fetch whenever one completes.
+   *
+   * @return the records of all chunks in chunk order, and the sum of their total
+   * records, or the first failure in chunk order
+   */
+  static <T> CompletableFuture<HttpResult<MultipleRecords<T>>> fanOut(
+    int chunkCount,
+    int parallelism,
+    IntFunction<CompletableFuture<HttpResult<MultipleRecords<T>>>> fetchChunk) {
+
+    if (chunkCount == 0) {
+      return CompletableFuture.completedFuture(
+        HttpResult.succeeded(new MultipleRecords<>(new ArrayList<>(), 0)));
+    }
+    if (chunkCount == 1) {
+      return fetchChunk.apply(0);
+    }
+
+    final List<CompletableFuture<HttpResult<MultipleRecords<T>>>> results =
+      new ArrayList<>(chunkCount);
+
+    for (int i = 0; i < chunkCount; i++) {
+      results.add(new CompletableFuture<>());
+    }
+
+    final AtomicInteger next = new AtomicInteger();
+
+    for (int i = 0; i < Math.min(parallelism, chunkCount); i++) {
+      fetchNextChunk(next, results, fetchChunk);
+    }
+
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+      .thenApply(all -> results.stream()
+        .map(CompletableFuture::join)
+        .reduce(HttpResult.succeeded(new MultipleRecords<>(new ArrayList<>(), 0)),
+          (merged, result) -> merged.combine(result, CollectionResourceClient::concat)));
+  }
+
+  private static <T> void fetchNextChunk(
+    AtomicInteger next,
+    List<CompletableFuture<HttpResult<MultipleRecords<T>>>> results,
+    IntFunction<CompletableFuture<HttpResult<MultipleRecords<T>>>> fetchChunk) {
+
+    final int index = next.getAndIncrement();
+
+    if (index >= results.size()) {
+      return;
+    }
+
+    fetchChunk.apply(index).whenComplete((result, throwable) -> {
+      if (throwable != null) {
+        results.get(index).completeExceptionally(throwable);
+      }
+      else {
+        results.get(index).complete(result);
+      }
+      fetchNextChunk(next, results, fetchChunk);
+    });
+  }
+
+  private static <T> MultipleRecords<T> concat(
+    MultipleRecords<T> first,
+    MultipleRecords<T> second) {
+
+    final List<T> records = new ArrayList<>(first.getRecords());
+    records.addAll(second.getRecords());
+
+    return new MultipleRecords<>(records,
+      totalRecords(first) + totalRecords(second));
+  }
+
+  private static int totalRecords(MultipleRecords<?> records) {
+    return records.getTotalRecords() == null ? 0 : records.getTotalRecords();
+  }
+
   private static boolean isProvided(String query) {
     return StringUtils.isNotBlank(query);
   }
 
+  private static boolean isBarcodeQuery(String query) {
+    return query != null && query.startsWith("barcode==");
+  }
+
+  private CompletableFuture<Response> fetch(String url) {
+    if (InFlightGets.isEnabled()) {
+      return InFlightGets.get(client.getTenantId(), client.getToken(),
+        collectionRoot.getPath(), url, () -> send(url));
+    }
+
+    return send(url);
+  }
+
+  private CompletableFuture<Response> send(String url) {
+    final CompletableFuture<Response> future = new CompletableFuture<>();
+
+    client.get(url, responseConversationHandler(future::complete));
+
+    return future;
+  }
+
+  private CompletableFuture<Response> identityMapGet(String url) {
+    if (identityMap == null) {
+      return fetch(url);
+    }
+
+    return identityMap.get(collectionRoot.getPath(), url, () -> fetch(url));
+  }
+
+  /**
+   * Remove the record and the queries this client has fetched from the identity map,
+   * and stop coalescing GETs of them.
+   *
+   * @param id  id of the record, null for all records
+   */
+  private void invalidate(String id) {
+    if (identityMap != null) {
+      identityMap.invalidate(collectionRoot.toString(), id);
+    }
+    if (InFlightGets.isEnabled()) {
+      InFlightGets.cancel(client.getTenantId(), collectionRoot.toString(), id);
+    }
+  }
+
+  /**
+   * Invalidate again when the write is complete, a GET of the request may
+   * have been answered before the write was applied.
+   */
+  private CompletableFuture<Response> invalidatedWhenComplete(
+    String id,
+    CompletableFuture<Response> write) {
+
+    if (identityMap == null && ! InFlightGets.isEnabled()) {
+      return write;
+    }
+
+    return write.whenComplete((response, throwable) -> invalidate(id));
+  }
+
   /**
    * Combine the optional parameters to a query string.
    * <p>
@@ -193,6 +514,35 @@ public class CollectionResourceClient {
       });
   }
 
+  private <T> Handler<HttpClientResponse> multipleRecordsHandler(
+    CompletableFuture<HttpResult<MultipleRecords<T>>> future,
+    Function<JsonObject, T> mapper,
+    String recordsPropertyName) {
+
+    return response -> {
+      if (response.statusCode() != 200) {
+        responseConversationHandler(failure -> future.complete(
+          MultipleRecords.from(failure, mapper, recordsPropertyName)))
+          .handle(response);
+        return;
+      }
+
+      JsonParser parser = JsonParser.newParser(response);
+      MultipleRecordsDecoder<T> decoder = new MultipleRecordsDecoder<>(
+        parser, recordsPropertyName, mapper);
+
+      parser.endHandler(end -> future.complete(decoder.result()));
+      parser.exceptionHandler(ex -> {
+        log.error("Failed to decode {}", recordsPropertyName, ex);
+        future.complete(HttpResult.failed(new ServerErrorFailure(ex)));
+      });
+      response.exceptionHandler(ex -> {
+        log.error("Unhandled exception in body handler", ex);
+        future.complete(HttpResult.failed(new ServerErrorFailure(ex)));
+      });
+    };
+  }
+
   private String individualRecordUrl(String id) {
     return String.format("%s/%s", collectionRoot, id);
   }
@@ -1,9 +1,12 @@
 package org.folio.circulation.support;
 
+import java.io.UnsupportedEncodingException;
 import java.lang.invoke.MethodHandles;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -47,12 +50,7 @@ public class CqlHelper {
     String indexName,
     Collection<String> valuesToSearchFor) {
 
-    final Collection<String> filteredValues = valuesToSearchFor.stream()
-      .filter(Objects::nonNull)
-      .map(String::toString)
-      .filter(StringUtils::isNotBlank)
-      .distinct()
-      .collect(Collectors.toList());
+    final Collection<String> filteredValues = filterValues(valuesToSearchFor);
 
     if(filteredValues.isEmpty()) {
       return HttpResult.of(() -> null);
@@ -69,4 +67,70 @@ public class CqlHelper {
         String.format("%s %s", prefixQueryFragment, valueQuery));
     }
   }
+
+  /**
+   * Splits the values to search for into chunks, so that the URL encoded query
+   * {@link #multipleRecordsCqlQuery(String, String, Collection)} creates for each
+   * chunk is at most maxQueryLength characters long. A value that is too long on
+   * its own gets a chunk of its own.
+   *
+   * @param prefixQueryFragment fragment of CQL to include at the beginning, may be null
+   * @param indexName Name of the index (property) to match values to
+   * @param valuesToSearchFor Values to search for
+   * @param maxQueryLength maximum length of each URL encoded query
+   * @return the distinct, not blank values in chunks, in their order,
+   * empty if there are no values to search for
+   */
+  public static List<List<String>> multipleRecordsCqlQueryChunks(
+    String prefixQueryFragment,
+    String indexName,
+    Collection<String> valuesToSearchFor,
+    int maxQueryLength) {
+
+    final String start = StringUtils.isBlank(prefixQueryFragment)
+      ? String.format("%s==(", indexName)
+      : String.format("%s %s==(", prefixQueryFragment, indexName);
+    final int overhead = encodedLength(start) + encodedLength(")");
+    final int separator = encodedLength(" or ");
+
+    final List<List<String>> chunks = new ArrayList<>();
+    List<String> chunk = new ArrayList<>();
+    int length = overhead;
+
+    for (String value : filterValues(valuesToSearchFor)) {
+      int valueLength = encodedLength(value);
+      if (! chunk.isEmpty() && length + separator + valueLength > maxQueryLength) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+        length = overhead;
+      }
+      if (! chunk.isEmpty()) {
+        length += separator;
+      }
+      chunk.add(value);
+      length += valueLength;
+    }
+    if (! chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  private static List<String> filterValues(Collection<String> values) {
+    return values.stream()
+      .filter(Objects::nonNull)
+      .map(String::toString)
+      .filter(StringUtils::isNotBlank)
+      .distinct()
+      .collect(Collectors.toList());
+  }
+
+  private static int encodedLength(String text) {
+    try {
+      return URLEncoder.encode(text, String.valueOf(StandardCharsets.UTF_8)).length();
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
 }
@@ -0,0 +1,108 @@
+package org.folio.circulation.support;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.folio.circulation.support.http.client.Response;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The storage records fetched during one request to this module, by URL. The
+ * first GET of a record by id or barcode goes to storage, later GETs of the same
+ * URL within the request, including concurrent ones, get the same response.
+ * Writes through the clients of the request remove the entries of the collection
+ * they change.
+ * <p>
+ * The number of storage calls saved is counted by tenant, cumulative since the
+ * start of this module instance.
+ */
+public class IdentityMap {
+  /** storage calls that were answered from an identity map, by tenant and collection path */
+  private static final Map<String, Map<String, LongAdder>> savedCalls = new ConcurrentHashMap<>();
+
+  private final Map<String, LongAdder> tenantSavedCalls;
+  private final Map<String, CompletableFuture<Response>> responses = new ConcurrentHashMap<>();
+
+  /**
+   * @param tenantId  the tenant of the request, for the statistics
+   */
+  public IdentityMap(String tenantId) {
+    tenantSavedCalls = savedCalls.computeIfAbsent(tenantId == null ? "" : tenantId,
+      tenant -> new ConcurrentHashMap<>());
+  }
+
+  /**
+   * The response for url, fetched if this request hasn't fetched it yet. Only
+   * 200 responses are kept.
+   *
+   * @param collectionPath  path of the collection the record belongs to, for the statistics
+   * @param url  URL of the record or barcode query
+   * @param fetch  GET of url
+   * @return the response
+   */
+  CompletableFuture<Response> get(
+    String collectionPath,
+    String url,
+    Supplier<CompletableFuture<Response>> fetch) {
+
+    CompletableFuture<Response> fetched = new CompletableFuture<>();
+    CompletableFuture<Response> cached = responses.putIfAbsent(url, fetched);
+    if (cached != null) {
+      tenantSavedCalls.computeIfAbsent(collectionPath, path -> new LongAdder()).increment();
+      return cached;
+    }
+
+    final CompletableFuture<Response> sent;
+    try {
+      sent = fetch.get();
+    }
+    catch (RuntimeException e) {
+      responses.remove(url, fetched);
+      fetched.completeExceptionally(e);
+      return fetched;
+    }
+
+    sent.whenComplete((response, throwable) -> {
+      if (throwable != null || response.getStatusCode() != 200) {
+        responses.remove(url, fetched);
+      }
+      if (throwable != null) {
+        fetched.completeExceptionally(throwable);
+      } else {
+        fetched.complete(response);
+      }
+    });
+    return fetched;
+  }
+
+  /**
+   * Remove the record with the id and all queries of the collection.
+   *
+   * @param collectionUrl  URL of the collection
+   * @param id  id of the record, null to remove all records of the collection
+   */
+  void invalidate(String collectionUrl, String id) {
+    String recordUrl = id == null ? null : collectionUrl + "/" + id;
+
+    responses.keySet().removeIf(url -> url.startsWith(collectionUrl + "?")
+      || (recordUrl == null ? url.startsWith(collectionUrl + "/") : url.equals(recordUrl)));
+  }
+
+  /**
+   * @param tenantId  the tenant
+   * @return the number of storage calls saved by the identity maps of all
+   * requests of the tenant since start, by collection path
+   */
+  public static JsonObject getStatistics(String tenantId) {
+    JsonObject json = new JsonObject();
+    Map<String, LongAdder> tenantCalls = savedCalls.get(tenantId == null ? "" : tenantId);
+    if (tenantCalls != null) {
+      tenantCalls.forEach((path, calls) -> json.put(path, calls.sum()));
+    }
+    return json;
+  }
+}
@@ -0,0 +1,153 @@
+package org.folio.circulation.support;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.folio.circulation.support.http.client.Response;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Storage GETs that are in flight, shared by all requests to this module
+ * instance. While a GET is outstanding an identical GET, same tenant, token
+ * and URL, gets the response of the outstanding one instead of sending its own.
+ * A write to a URL ends the coalescing of the GETs of that record and of the
+ * queries of its collection, later GETs are sent again.
+ * <p>
+ * The number of coalesced GETs is counted by tenant, cumulative since the
+ * start of this module instance.
+ */
+public final class InFlightGets {
+  private static volatile boolean enabled = false;
+  private static final Map<Key, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+  /** GETs that were not sent because an identical GET was in flight, by tenant and collection path */
+  private static final Map<String, Map<String, LongAdder>> coalesced = new ConcurrentHashMap<>();
+
+  private InFlightGets() {
+    throw new UnsupportedOperationException();
+  }
+
+  private static final class Key {
+    private final String tenantId;
+    private final String token;
+    private final String url;
+
+    private Key(String tenantId, String token, String url) {
+      this.tenantId = tenantId;
+      this.token = token;
+      this.url = url;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (! (object instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) object;
+      return url.equals(other.url)
+        && Objects.equals(tenantId, other.tenantId)
+        && Objects.equals(token, other.token);
+    }
+
+    @Override
+    public int hashCode() {
+      return url.hashCode();
+    }
+  }
+
+  /**
+   * @param enable  whether identical GETs are coalesced, off by default
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * The response of the GET of url that is in flight for the tenant and token,
+   * or of a new GET.
+   *
+   * @param collectionPath  path of the collection, for the statistics
+   * @param send  sends the GET
+   * @return the response
+   */
+  static CompletableFuture<Response> get(
+    String tenantId,
+    String token,
+    String collectionPath,
+    String url,
+    Supplier<CompletableFuture<Response>> send) {
+
+    Key key = new Key(tenantId, token, url);
+    CompletableFuture<Response> response = new CompletableFuture<>();
+    CompletableFuture<Response> outstanding = inFlight.putIfAbsent(key, response);
+    if (outstanding != null) {
+      coalesced.computeIfAbsent(tenantKey(tenantId), tenant -> new ConcurrentHashMap<>())
+        .computeIfAbsent(collectionPath, path -> new LongAdder()).increment();
+      return outstanding;
+    }
+
+    final CompletableFuture<Response> sent;
+    try {
+      sent = send.get();
+    }
+    catch (RuntimeException e) {
+      inFlight.remove(key, response);
+      response.completeExceptionally(e);
+      return response;
+    }
+
+    sent.whenComplete((result, throwable) -> {
+      inFlight.remove(key, response);
+      if (throwable != null) {
+        response.completeExceptionally(throwable);
+      } else {
+        response.complete(result);
+      }
+    });
+    return response;
+  }
+
+  /**
+   * Stop coalescing the GETs of the record and of the queries of the collection,
+   * for the tenant.
+   *
+   * @param collectionUrl  URL of the collection
+   * @param id  id of the record, null for all records of the collection
+   */
+  static void cancel(String tenantId, String collectionUrl, String id) {
+    if (inFlight.isEmpty()) {
+      return;
+    }
+    String recordUrl = id == null ? null : collectionUrl + "/" + id;
+
+    inFlight.keySet().removeIf(key -> Objects.equals(key.tenantId, tenantId)
+      && (key.url.startsWith(collectionUrl + "?")
+        || (recordUrl == null ? key.url.startsWith(collectionUrl + "/") : key.url.equals(recordUrl))));
+  }
+
+  /**
+   * @param tenantId  the tenant
+   * @return the number of GETs of the tenant that were coalesced since start,
+   * by collection path
+   */
+  public static JsonObject getStatistics(String tenantId) {
+    JsonObject json = new JsonObject();
+    Map<String, LongAdder> tenantCoalesced = coalesced.get(tenantKey(tenantId));
+    if (tenantCoalesced != null) {
+      tenantCoalesced.forEach((path, count) -> json.put(path, count.sum()));
+    }
+    return json;
+  }
+
+  private static String tenantKey(String tenantId) {
+    return tenantId == null ? "" : tenantId;
+  }
+}
@@ -3,7 +3,6 @@ package org.folio.circulation.support;
 import io.vertx.core.json.JsonObject;
 import org.apache.commons.lang3.StringUtils;
 import org.folio.circulation.domain.*;
-import org.folio.circulation.support.http.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -138,11 +137,7 @@ public class ItemRepository {
         .filter(Objects::nonNull)
         .collect(Collectors.toList());
 
-      String instancesQuery = CqlHelper.multipleRecordsCqlQuery(instanceIds);
-
-      return instancesClient.getMany(instancesQuery, instanceIds.size(), 0)
-        .thenApply(instancesResponse ->
-          MultipleRecords.from(instancesResponse, identity(), "instances"))
+      return instancesClient.getManyByIds(instanceIds, identity(), "instances")
         .thenApply(r -> r.map(instances -> items.stream()
           .map(item -> item.withInstance(
             findById(item.getInstanceId(), instances.getRecords()).orElse(null)))
@@ -159,11 +154,7 @@ public class ItemRepository {
         .filter(Objects::nonNull)
         .collect(Collectors.toList());
 
-      String holdingsQuery = CqlHelper.multipleRecordsCqlQuery(holdingsIds);
-
-      return holdingsClient.getMany(holdingsQuery, holdingsIds.size(), 0)
-        .thenApply(holdingsResponse ->
-          MultipleRecords.from(holdingsResponse, identity(), "holdingsRecords"))
+      return holdingsClient.getManyByIds(holdingsIds, identity(), "holdingsRecords")
         .thenApply(r -> r.map(holdings -> items.stream()
           .map(item -> item.withHoldingsRecord(
             findById(item.getHoldingsRecordId(), holdings.getRecords()).orElse(null)))
@@ -183,10 +174,7 @@ public class ItemRepository {
   private CompletableFuture<HttpResult<Collection<Item>>> fetchItems(
     Collection<String> itemIds) {
 
-    String itemsQuery = CqlHelper.multipleRecordsCqlQuery(itemIds);
-
-    return itemsClient.getMany(itemsQuery, itemIds.size(), 0)
-      .thenApply(r -> MultipleRecords.from(r, Item::from, "items"))
+    return itemsClient.getManyByIds(itemIds, Item::from, "items")
       .thenApply(r -> r.map(MultipleRecords::getRecords));
   }
 
@@ -199,17 +187,13 @@ public class ItemRepository {
   private CompletableFuture<HttpResult<Item>> fetchItemByBarcode(String barcode) {
     log.info("Fetching item with barcode: {}", barcode);
 
-    return itemsClient.getMany(String.format("barcode==%s", barcode), 1, 0)
-      .thenApply(this::mapMultipleToResult)
+    return itemsClient.getMany(String.format("barcode==%s", barcode), 1, 0,
+        identity(), "items")
+      .thenApply(r -> r.map(items -> items.getRecords().stream().findFirst().orElse(null)))
       .thenApply(r -> r.map(Item::from))
       .exceptionally(e -> failed(new ServerErrorFailure(e)));
   }
 
-  private HttpResult<JsonObject> mapMultipleToResult(Response response) {
-    return MultipleRecords.from(response, identity(), "items")
-      .map(items -> items.getRecords().stream().findFirst().orElse(null));
-  }
-
   private CompletableFuture<HttpResult<Item>> fetchHoldingsRecord(
     HttpResult<Item> result) {
 
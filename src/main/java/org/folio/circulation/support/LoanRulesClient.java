@@ -10,17 +10,60 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 public class LoanRulesClient {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Applies the loan rules of a tenant in this module instance.
+   */
+  @FunctionalInterface
+  public interface LocalLoanRules {
+    /**
+     * @return the loan policy id, or null if the loan rules of the tenant are not loaded
+     */
+    CompletableFuture<String> apply(String tenantId, String itemTypeId,
+      String loanTypeId, String patronGroupId, String shelvingLocationId);
+  }
+
+  private static volatile LocalLoanRules localLoanRules =
+    (tenantId, itemTypeId, loanTypeId, patronGroupId, shelvingLocationId) ->
+      CompletableFuture.completedFuture(null);
   private final OkapiHttpClient client;
   private final URL root;
+  private final String tenantId;
 
   public LoanRulesClient(OkapiHttpClient client, WebContext context)
     throws MalformedURLException {
 
     this.client = client;
     root = context.getOkapiBasedUrl("/circulation/loan-rules");
+    tenantId = context.getTenantId();
+  }
+
+  /**
+   * Apply the loan rules in this module instance if they are already loaded,
+   * avoiding the request via Okapi.
+   *
+   * @return the loan policy id, or null if {@link #applyRules} needs to be used
+   */
+  public CompletableFuture<String> applyRulesLocally(
+    String loanTypeId,
+    String locationId,
+    String materialTypeId,
+    String patronGroup) {
+
+    return localLoanRules.apply(tenantId,
+      materialTypeId, loanTypeId, patronGroup, locationId);
+  }
+
+  /**
+   * @param localLoanRules  the loan rules of this module instance, by default
+   *                        {@link #applyRulesLocally} always returns null
+   */
+  public static void setLocalLoanRules(LocalLoanRules localLoanRules) {
+    LoanRulesClient.localLoanRules = localLoanRules;
   }
 
   public void applyRules(
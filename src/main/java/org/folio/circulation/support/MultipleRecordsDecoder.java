@@ -0,0 +1,115 @@
+package org.folio.circulation.support;
+
+import static org.folio.circulation.support.HttpResult.failed;
+import static org.folio.circulation.support.HttpResult.succeeded;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.folio.circulation.domain.MultipleRecords;
+
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEvent;
+import io.vertx.core.parsetools.JsonParser;
+
+/**
+ * Decodes a storage collection response while it is received. Each record of
+ * the records array is decoded and mapped on its own, so that neither the
+ * whole body nor the whole JSON tree is held in memory.
+ *
+ * @param <T> type of the mapped records
+ */
+class MultipleRecordsDecoder<T> implements Handler<JsonEvent> {
+  private static final String TOTAL_RECORDS_PROPERTY_NAME = "totalRecords";
+
+  private final JsonParser parser;
+  private final String recordsPropertyName;
+  private final Function<JsonObject, T> mapper;
+  private final List<T> records = new ArrayList<>();
+  private Integer totalRecords;
+  /** nesting depth of the current event, 1 is the top level object */
+  private int depth = 0;
+  private boolean withinRecords = false;
+  private Throwable failure;
+
+  /**
+   * @param parser  parser to handle the events of, receives the body
+   * @param recordsPropertyName  name of the property of the records array
+   * @param mapper  maps a record
+   */
+  MultipleRecordsDecoder(
+    JsonParser parser,
+    String recordsPropertyName,
+    Function<JsonObject, T> mapper) {
+
+    this.parser = parser;
+    this.recordsPropertyName = recordsPropertyName;
+    this.mapper = mapper;
+
+    parser.objectEventMode();
+    parser.handler(this);
+  }
+
+  @Override
+  public void handle(JsonEvent event) {
+    switch (event.type()) {
+      case START_OBJECT:
+        depth++;
+        break;
+      case START_ARRAY:
+        depth++;
+        if (depth == 2 && recordsPropertyName.equals(event.fieldName())) {
+          withinRecords = true;
+          parser.objectValueMode();
+        }
+        break;
+      case END_ARRAY:
+        if (withinRecords && depth == 2) {
+          withinRecords = false;
+          parser.objectEventMode();
+        }
+        depth--;
+        break;
+      case END_OBJECT:
+        depth--;
+        break;
+      case VALUE:
+        if (withinRecords) {
+          addRecord(event);
+        }
+        else if (depth == 1 && TOTAL_RECORDS_PROPERTY_NAME.equals(event.fieldName())
+          && event.isNumber()) {
+          totalRecords = event.integerValue();
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void addRecord(JsonEvent event) {
+    if (failure != null || ! event.isObject()) {
+      return;
+    }
+    try {
+      records.add(mapper.apply(event.objectValue()));
+    }
+    catch (Exception e) {
+      failure = e;
+    }
+  }
+
+  /**
+   * @return the records and total records after the end of the body,
+   * or the failure of mapping a record
+   */
+  HttpResult<MultipleRecords<T>> result() {
+    if (failure != null) {
+      return failed(new ServerErrorFailure(failure));
+    }
+
+    return succeeded(new MultipleRecords<>(records, totalRecords));
+  }
+}
@@ -0,0 +1,136 @@
+package org.folio.circulation.support;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.entity.ContentType;
+import org.folio.circulation.support.http.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.Context;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Collects the GETs by id of one collection and fetches them with one
+ * id==(a or b or ...) query, like a DataLoader. The query is sent by a task on the
+ * context of the verticle, all GETs issued before that task runs, from that
+ * context or from other threads, are part of it. Each caller gets the response
+ * a GET by id would give: 200 with the record, or 404 if the query didn't return
+ * it. Without a context, for a single id, and for the ids of a failing or
+ * undecodable query the records are fetched by id.
+ */
+class RecordLoader {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /** maximum number of ids in one query */
+  static final int MAX_BATCH_SIZE = 50;
+
+  private final Context context;
+  private final String recordsPropertyName;
+  private final Function<String, CompletableFuture<Response>> getById;
+  private final BiFunction<String, Integer, CompletableFuture<Response>> getMany;
+  private Map<String, CompletableFuture<Response>> pending = new LinkedHashMap<>();
+
+  /**
+   * @param context  context of the verticle, null for no batching
+   * @param recordsPropertyName  name of the records array of a query response
+   * @param getById  GET of a record by id
+   * @param getMany  GET of a URL encoded CQL query with a limit
+   */
+  RecordLoader(
+    Context context,
+    String recordsPropertyName,
+    Function<String, CompletableFuture<Response>> getById,
+    BiFunction<String, Integer, CompletableFuture<Response>> getMany) {
+
+    this.context = context;
+    this.recordsPropertyName = recordsPropertyName;
+    this.getById = getById;
+    this.getMany = getMany;
+  }
+
+  CompletableFuture<Response> load(String id) {
+    if (context == null || StringUtils.isBlank(id)) {
+      return getById.apply(id);
+    }
+
+    synchronized (this) {
+      CompletableFuture<Response> response = pending.get(id);
+      if (response != null) {
+        return response;
+      }
+      if (pending.isEmpty()) {
+        context.runOnContext(tick -> dispatch());
+      }
+      response = new CompletableFuture<>();
+      pending.put(id, response);
+      return response;
+    }
+  }
+
+  private void dispatch() {
+    Map<String, CompletableFuture<Response>> batch;
+    synchronized (this) {
+      batch = pending;
+      pending = new LinkedHashMap<>();
+    }
+
+    List<String> ids = new ArrayList<>(batch.keySet());
+    for (int i = 0; i < ids.size(); i += MAX_BATCH_SIZE) {
+      List<String> chunk = ids.subList(i, Math.min(i + MAX_BATCH_SIZE, ids.size()));
+      Map<String, CompletableFuture<Response>> responses = new LinkedHashMap<>();
+      chunk.forEach(id -> responses.put(id, batch.get(id)));
+      if (chunk.size() == 1) {
+        fetchById(responses);
+      } else {
+        fetchByQuery(responses);
+      }
+    }
+  }
+
+  private void fetchById(Map<String, CompletableFuture<Response>> responses) {
+    responses.forEach((id, response) -> getById.apply(id).whenComplete((result, throwable) -> {
+      if (throwable != null) {
+        response.completeExceptionally(throwable);
+      } else {
+        response.complete(result);
+      }
+    }));
+  }
+
+  private void fetchByQuery(Map<String, CompletableFuture<Response>> responses) {
+    String query = CqlHelper.multipleRecordsCqlQuery(responses.keySet());
+
+    getMany.apply(query, responses.size()).whenComplete((result, throwable) -> {
+      if (throwable != null || result.getStatusCode() != 200) {
+        fetchById(responses);
+        return;
+      }
+      Map<String, JsonObject> records = new LinkedHashMap<>();
+      try {
+        JsonArrayHelper.toStream(result.getJson(), recordsPropertyName)
+          .forEach(record -> records.put(record.getString("id"), record));
+      }
+      catch (RuntimeException e) {
+        log.warn("Failed to decode {}, fetching them by id", recordsPropertyName, e);
+        fetchById(responses);
+        return;
+      }
+
+      responses.forEach((id, response) -> {
+        JsonObject record = records.get(id);
+        response.complete(record == null
+          ? new Response(404, String.format("%s not found", id), ContentType.TEXT_PLAIN.toString())
+          : new Response(200, record.encode(), ContentType.APPLICATION_JSON.toString()));
+      });
+    });
+  }
+}
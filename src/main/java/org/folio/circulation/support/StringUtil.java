@@ -3,6 +3,8 @@ package org.folio.circulation.support;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public final class StringUtil {
   private StringUtil() {
@@ -37,4 +39,27 @@ public final class StringUtil {
     // UnsupportedEncodingException.
     return urlEncode(source, StandardCharsets.UTF_8.name());
   }
+
+  /**
+   * SHA-256 hash of the UTF-8 bytes of source.
+   *
+   * @param source  String to hash
+   * @return the hash as 64 lower case hex digits
+   * @throws NullPointerException if source is null
+   */
+  public static String sha256(String source) {
+    try {
+      byte [] hash = MessageDigest.getInstance("SHA-256")
+        .digest(source.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(2 * hash.length);
+      for (byte b : hash) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+        hex.append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform implementation is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
 }
@@ -0,0 +1,60 @@
+package org.folio.circulation.support.http.client;
+
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The options of the HTTP client for the requests via Okapi, taken from the module
+ * configuration. An option that is not configured keeps the Vert.x default.
+ */
+public final class HttpClientConfiguration {
+  /** maximum number of HTTP/1.x connections to each host */
+  public static final String MAX_POOL_SIZE = "httpClientMaxPoolSize";
+  /** maximum number of requests waiting for a connection, -1 for unbounded */
+  public static final String MAX_WAIT_QUEUE_SIZE = "httpClientMaxWaitQueueSize";
+  /** whether to reuse HTTP/1.x connections */
+  public static final String KEEP_ALIVE = "httpClientKeepAlive";
+  /** whether to send several HTTP/1.1 requests on a connection without waiting for the responses */
+  public static final String PIPELINING = "httpClientPipelining";
+  /** maximum number of pipelined requests on a connection */
+  public static final String PIPELINING_LIMIT = "httpClientPipeliningLimit";
+  /** seconds after which an unused connection is closed, 0 for never */
+  public static final String IDLE_TIMEOUT = "httpClientIdleTimeout";
+  /** whether to use HTTP/2 without TLS with prior knowledge, the server must support h2c */
+  public static final String HTTP2 = "httpClientHttp2";
+  /** maximum number of HTTP/2 connections to each host */
+  public static final String HTTP2_MAX_POOL_SIZE = "httpClientHttp2MaxPoolSize";
+  /** maximum number of concurrent streams on an HTTP/2 connection, -1 for the server's limit */
+  public static final String HTTP2_MULTIPLEXING_LIMIT = "httpClientHttp2MultiplexingLimit";
+
+  private HttpClientConfiguration() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @param config  the module configuration
+   * @return the HTTP client options
+   */
+  public static HttpClientOptions fromConfig(JsonObject config) {
+    HttpClientOptions options = new HttpClientOptions();
+
+    options.setMaxPoolSize(config.getInteger(MAX_POOL_SIZE, options.getMaxPoolSize()));
+    options.setMaxWaitQueueSize(config.getInteger(MAX_WAIT_QUEUE_SIZE, options.getMaxWaitQueueSize()));
+    options.setKeepAlive(config.getBoolean(KEEP_ALIVE, options.isKeepAlive()));
+    options.setPipelining(config.getBoolean(PIPELINING, options.isPipelining()));
+    options.setPipeliningLimit(config.getInteger(PIPELINING_LIMIT, options.getPipeliningLimit()));
+    options.setIdleTimeout(config.getInteger(IDLE_TIMEOUT, options.getIdleTimeout()));
+
+    if (config.getBoolean(HTTP2, false)) {
+      options.setProtocolVersion(HttpVersion.HTTP_2);
+      // prior knowledge: start with HTTP/2 instead of an HTTP/1.1 upgrade request
+      options.setHttp2ClearTextUpgrade(false);
+    }
+    options.setHttp2MaxPoolSize(config.getInteger(HTTP2_MAX_POOL_SIZE, options.getHttp2MaxPoolSize()));
+    options.setHttp2MultiplexingLimit(
+      config.getInteger(HTTP2_MULTIPLEXING_LIMIT, options.getHttp2MultiplexingLimit()));
+
+    return options;
+  }
+}
@@ -1,6 +1,7 @@
 package org.folio.circulation.support.http.client;
 
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
@@ -12,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static org.folio.circulation.support.http.OkapiHeader.*;
@@ -19,6 +21,10 @@ import static org.folio.circulation.support.http.OkapiHeader.*;
 public class OkapiHttpClient {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  /** at debug level the body of one in this many requests is logged, at trace level every body */
+  private static final int BODY_LOG_SAMPLE_INTERVAL = 100;
+  private static final AtomicLong requestsWithBody = new AtomicLong();
+
   private final HttpClient client;
   private final URL okapiUrl;
   private final String tenantId;
@@ -45,6 +51,14 @@ public class OkapiHttpClient {
     this.exceptionHandler = exceptionHandler;
   }
 
+  public String getTenantId() {
+    return tenantId;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
   public void post(
     URL url,
     Object body,
@@ -62,13 +76,15 @@ public class OkapiHttpClient {
 
     if(body != null) {
       //TODO: Catch encoding exceptions here
-      String encodedBody = Json.encodePrettily(body);
+      Buffer encodedBody = Json.encodeToBuffer(body);
 
-      log.info("POST {}, Request: {}", url, encodedBody);
+      logRequest("POST", url, encodedBody);
 
       request.end(encodedBody);
     }
     else {
+      log.info("POST {}", url);
+
       request.end();
     }
   }
@@ -95,9 +111,9 @@ public class OkapiHttpClient {
     request.exceptionHandler(this.exceptionHandler::accept);
 
     //TODO: Catch encoding exceptions here
-    String encodedBody = Json.encodePrettily(body);
+    Buffer encodedBody = Json.encodeToBuffer(body);
 
-    log.info("PUT {}, Request: {}", url, encodedBody);
+    logRequest("PUT", url, encodedBody);
 
     request.end(encodedBody);
   }
@@ -119,12 +135,30 @@ public class OkapiHttpClient {
   }
 
   public void get(String url, Handler<HttpClientResponse> responseHandler) {
+    getIfNoneMatch(url, null, responseHandler);
+  }
+
+  /**
+   * GET that the server may answer with 304 Not Modified if the entity tag
+   * of the resource still is eTag.
+   *
+   * @param eTag entity tag of the copy the caller has, no If-None-Match header if null
+   */
+  public void getIfNoneMatch(
+    String url,
+    String eTag,
+    Handler<HttpClientResponse> responseHandler) {
+
     log.info("GET {}", url);
 
     HttpClientRequest request = client.getAbs(url, responseHandler);
 
     addStandardHeaders(request);
 
+    if(eTag != null) {
+      request.headers().add("If-None-Match", eTag);
+    }
+
     request.exceptionHandler(this.exceptionHandler::accept);
 
     request.end();
@@ -146,6 +180,16 @@ public class OkapiHttpClient {
     request.end();
   }
 
+  private static void logRequest(String method, Object url, Buffer body) {
+    log.info("{} {}", method, url);
+
+    if(log.isTraceEnabled() || (log.isDebugEnabled()
+      && requestsWithBody.getAndIncrement() % BODY_LOG_SAMPLE_INTERVAL == 0)) {
+
+      log.debug("{} {}, Request: {}", method, url, body);
+    }
+  }
+
   private void addStandardHeaders(HttpClientRequest request) {
     addHeaderIfPresent(request, "Accept","application/json, text/plain");
     addHeaderIfPresent(request, OKAPI_URL, okapiUrl.toString());
@@ -8,7 +8,8 @@ import io.vertx.core.json.JsonObject;
 import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
 
 public class Response {
-  protected final String body;
+  private final Buffer bodyBuffer;
+  private String body;
   private final int statusCode;
   private final String contentType;
   private final CaseInsensitiveHeaders headers;
@@ -24,24 +25,46 @@ public class Response {
     CaseInsensitiveHeaders headers) {
 
     this.statusCode = statusCode;
+    this.bodyBuffer = null;
     this.body = body;
     this.contentType = contentType;
     this.headers = headers;
   }
 
+  /**
+   * Keeps the body as received, it is decoded only if it is asked for as
+   * text or JSON.
+   */
+  Response(
+    int statusCode,
+    Buffer body,
+    String contentType,
+    CaseInsensitiveHeaders headers) {
+
+    this.statusCode = statusCode;
+    this.bodyBuffer = body;
+    this.body = null;
+    this.contentType = contentType;
+    this.headers = headers;
+  }
+
   public static Response from(HttpClientResponse response, Buffer body) {
     final CaseInsensitiveHeaders headers = new CaseInsensitiveHeaders();
 
     headers.addAll(response.headers());
 
     return new Response(response.statusCode(),
-      BufferHelper.stringFromBuffer(body),
+      body,
       convertNullToEmpty(response.getHeader(CONTENT_TYPE)),
       headers);
   }
 
   public boolean hasBody() {
-    return getBody() != null && getBody().trim() != "";
+    if(bodyBuffer != null) {
+      return bodyBuffer.length() > 0;
+    }
+
+    return body != null && body.trim() != "";
   }
 
   public int getStatusCode() {
@@ -49,11 +72,26 @@ public class Response {
   }
 
   public String getBody() {
+    if(body == null && bodyBuffer != null) {
+      body = BufferHelper.stringFromBuffer(bodyBuffer);
+    }
+
     return body;
   }
 
+  public Buffer getBodyAsBuffer() {
+    if(bodyBuffer != null) {
+      return bodyBuffer;
+    }
+
+    return Buffer.buffer(body != null ? body : "", "UTF-8");
+  }
+
   public JsonObject getJson() {
-    if(hasBody()) {
+    if(bodyBuffer != null && bodyBuffer.length() > 0) {
+      return new JsonObject(bodyBuffer);
+    }
+    else if(hasBody()) {
       return new JsonObject(getBody());
     }
     else {
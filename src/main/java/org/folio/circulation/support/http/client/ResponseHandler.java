@@ -51,8 +51,10 @@ public class ResponseHandler {
       try {
         Response response = Response.from(vertxResponse, buffer);
 
-        log.debug("Received Response: {}: {}", response.getStatusCode(), response.getContentType());
-        log.debug("Received Response Body: {}", response.getBody());
+        if(log.isDebugEnabled()) {
+          log.debug("Received Response: {}: {}", response.getStatusCode(), response.getContentType());
+          log.debug("Received Response Body: {}", response.getBody());
+        }
 
         if(expectation.test(response)) {
           completed.complete(response);
@@ -17,6 +17,12 @@ public class ClientErrorResponse {
     response.end(reason);
   }
 
+  public static void payloadTooLarge(HttpServerResponse response, String reason) {
+    response.setStatusCode(413);
+    response.putHeader("content-type", ContentType.TEXT_PLAIN.toString());
+    response.end(reason);
+  }
+
   public static void forbidden(HttpServerResponse response) {
     response.setStatusCode(403);
     response.end();
@@ -18,4 +18,12 @@ public class ServerErrorResponse {
       response.end();
     }
   }
+
+  public static void serviceUnavailable(HttpServerResponse response, String reason) {
+    response.setStatusCode(503);
+
+    response.putHeader("content-type", ContentType.TEXT_PLAIN.toString());
+
+    response.end(reason);
+  }
 }
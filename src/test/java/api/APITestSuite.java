@@ -113,6 +113,7 @@ import io.vertx.core.json.JsonObject;
   MultipleMixedFulfilmentRequestsTests.class,
   RequestsForDifferentItemsTests.class,
   RequestQueueTests.class,
+  StorageStatisticsAPITests.class,
 })
 public class APITestSuite {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -2,6 +2,7 @@ package api;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import api.support.fakes.FakeOkapi;
 import api.support.http.InterfaceUrls;
 import org.folio.circulation.loanrules.*;
 import org.folio.circulation.resources.LoanRulesEngineResource;
@@ -9,12 +10,17 @@ import org.folio.circulation.support.http.client.OkapiHttpClient;
 import org.folio.circulation.support.http.client.Response;
 import org.folio.circulation.support.http.client.ResponseHandler;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -28,6 +34,9 @@ import static org.hamcrest.core.StringContains.containsString;
 public class LoanRulesEngineAPITests {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   OkapiHttpClient client = APITestSuite.createClient(exception ->
     log.error("Request to circulation module failed:", exception)
   );
@@ -205,6 +214,316 @@ public class LoanRulesEngineAPITests {
     assertThat(apply(m1, t1, g1, s2), is(p3));
   }
 
+  @Test
+  public void compiledEngine() {
+    try {
+      LoanRulesEngineResource.setEngine(LoanRulesEngineResource.COMPILED_ENGINE);
+      test1();
+      test2();
+    } finally {
+      LoanRulesEngineResource.setEngine(LoanRulesEngineResource.DROOLS_ENGINE);
+    }
+  }
+
+  private JsonObject applyRequest(ItemType itemType, LoanType loanType,
+      PatronGroup patronGroup, ShelvingLocation shelvingLocation) {
+
+    return new JsonObject()
+        .put("item_type_id", itemType.id)
+        .put("loan_type_id", loanType.id)
+        .put("patron_type_id", patronGroup.id)
+        .put("shelving_location_id", shelvingLocation.id);
+  }
+
+  private Response applyBatch(JsonObject body) throws Exception {
+    CompletableFuture<Response> completed = new CompletableFuture<>();
+    client.post(loanRulesUrl("/apply-batch"), body, ResponseHandler.any(completed));
+    return completed.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void applyBatch() throws Exception {
+    setRules(rules2);
+    JsonArray applyRequests = new JsonArray()
+        .add(applyRequest(m2, t2, g2, s2))
+        .add(applyRequest(m1, t1, g1, s2))
+        .add(applyRequest(m1, t2, g2, s2))
+        .add(applyRequest(m2, t2, g2, s2))
+        .add(applyRequest(m1, t1, g2, s2));
+    Response response = applyBatch(new JsonObject().put("applyRequests", applyRequests));
+    assertThat(response.getBody(), response.getStatusCode(), is(200));
+    JsonArray results = new JsonObject(response.getBody()).getJsonArray("applyResults");
+    assertThat(results.size(), is(5));
+    LoanPolicy [] expected = { p6, p3, p1, p6, p2 };
+    for (int i=0; i<expected.length; i++) {
+      assertThat(results.getJsonObject(i).getString("loanPolicyId"), is(expected[i].id));
+      assertThat(results.getJsonObject(i).containsKey("loanRuleMatches"), is(false));
+    }
+  }
+
+  @Test
+  public void applyBatchWithLoanRuleMatches() throws Exception {
+    setRules(rules1);
+    JsonArray applyRequests = new JsonArray()
+        .add(applyRequest(m2, t2, g2, s2))
+        .add(applyRequest(m1, t2, g1, s2));
+    Response response = applyBatch(new JsonObject()
+        .put("applyRequests", applyRequests)
+        .put("includeLoanRuleMatches", true));
+    assertThat(response.getBody(), response.getStatusCode(), is(200));
+    JsonArray results = new JsonObject(response.getBody()).getJsonArray("applyResults");
+    assertThat(results.getJsonObject(0).getString("loanPolicyId"), is(p4.id));
+    JsonArray array = results.getJsonObject(0).getJsonArray("loanRuleMatches");
+    matches(array, 0, p4, 4);
+    matches(array, 1, p3, 3);
+    matches(array, 2, p2, 2);
+    assertThat(array.size(), is(3));
+    assertThat(results.getJsonObject(1).getString("loanPolicyId"), is(p2.id));
+    assertThat(results.getJsonObject(1).getJsonArray("loanRuleMatches").size(), is(1));
+  }
+
+  @Test
+  public void applyBatchInvalidRequest() throws Exception {
+    Response response = applyBatch(new JsonObject());
+    assertThat(response.getStatusCode(), is(400));
+    assertThat(response.getBody(), containsString("applyRequests"));
+
+    JsonObject missingLoanType = applyRequest(m1, t1, g1, s1);
+    missingLoanType.remove("loan_type_id");
+    response = applyBatch(new JsonObject().put("applyRequests",
+        new JsonArray().add(applyRequest(m1, t1, g1, s1)).add(missingLoanType)));
+    assertThat(response.getStatusCode(), is(400));
+    assertThat(response.getBody(), containsString("applyRequests[1]"));
+    assertThat(response.getBody(), containsString("loan_type_id"));
+
+    response = applyBatch(new JsonObject().put("applyRequests",
+        new JsonArray().add(applyRequest(m1, t1, g1, s1).put("patron_type_id", "0"))));
+    assertThat(response.getStatusCode(), is(400));
+    assertThat(response.getBody(), containsString("uuid"));
+
+    response = applyBatch(new JsonObject().put("applyRequests",
+        new JsonArray().add(applyRequest(m1, t1, g1, s1)).addNull()));
+    assertThat(response.getStatusCode(), is(400));
+    assertThat(response.getBody(), containsString("applyRequests[1]: must be an object"));
+
+    for (Object value : new Object [] { "yes", 1 }) {
+      response = applyBatch(new JsonObject()
+          .put("applyRequests", new JsonArray().add(applyRequest(m1, t1, g1, s1)))
+          .put("includeLoanRuleMatches", value));
+      assertThat(response.getStatusCode(), is(400));
+      assertThat(response.getBody(), containsString("includeLoanRuleMatches must be a boolean"));
+    }
+  }
+
+  @Test
+  public void applyBatchTooLarge() throws Exception {
+    setRules(rules2);
+    JsonArray applyRequests = new JsonArray();
+    for (int i=0; i<=LoanRulesEngineResource.MAX_APPLY_BATCH_SIZE; i++) {
+      applyRequests.add(applyRequest(m1, t1, g1, s1));
+    }
+    Response response = applyBatch(new JsonObject().put("applyRequests", applyRequests));
+    assertThat(response.getStatusCode(), is(413));
+    assertThat(response.getBody(), containsString("maximum is"));
+
+    applyRequests.remove(0);
+    response = applyBatch(new JsonObject().put("applyRequests", applyRequests));
+    assertThat(response.getBody(), response.getStatusCode(), is(200));
+  }
+
+  private JsonObject statistics() {
+    try {
+      CompletableFuture<Response> completed = new CompletableFuture<>();
+      client.get(loanRulesUrl("/statistics"), ResponseHandler.any(completed));
+      Response response = completed.get(10, TimeUnit.SECONDS);
+      assertThat(response.getBody(), response.getStatusCode(), is(200));
+      return new JsonObject(response.getBody());
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private JsonObject applyCacheStatistics() {
+    return statistics().getJsonObject("applyCache");
+  }
+
+  @Test
+  public void applyCache() {
+    setRules(rules2);
+    assertThat(apply(m1, t1, g1, s2), is(p3));
+    JsonObject before = applyCacheStatistics();
+    assertThat(apply(m1, t1, g1, s2), is(p3));
+    assertThat(apply(m1, t1, g1, s2), is(p3));
+    assertThat(apply(m1, t2, g2, s2), is(p1));
+    JsonObject after = applyCacheStatistics();
+    assertThat(after.getLong("hits") - before.getLong("hits"), is(2L));
+    assertThat(after.getLong("misses") - before.getLong("misses"), is(1L));
+    assertThat(after.getInteger("size"), is(2));
+
+    // new loan rules must not use the cached results
+    setRules(rulesFallback);
+    assertThat(apply(m1, t1, g1, s2), is(p6));
+    assertThat(applyCacheStatistics().getInteger("size"), is(1));
+  }
+
+  @Test
+  public void evaluationPool() {
+    setRules(rules2);
+    long completed = statistics().getJsonObject("evaluationPool").getLong("completed");
+    assertThat(apply(m1, t1, g1, s2), is(p3));
+    JsonObject evaluationPool = statistics().getJsonObject("evaluationPool");
+    assertThat(evaluationPool.getLong("completed") - completed, is(1L));
+    assertThat(evaluationPool.getInteger("queueDepth"), is(0));
+    assertThat(evaluationPool.getLong("rejected"), is(0L));
+  }
+
+  private static JsonArray lineHits(int... lineAndHits) {
+    JsonArray array = new JsonArray();
+    for (int i=0; i<lineAndHits.length; i+=2) {
+      array.add(new JsonObject().put("loanRuleLine", lineAndHits[i]).put("hits", lineAndHits[i + 1]));
+    }
+    return array;
+  }
+
+  @Test
+  public void loanRuleLineHits() {
+    setRules(rules2);
+    assertThat(apply(m1, t1, g1, s2), is(p3));
+    assertThat(apply(m1, t1, g1, s2), is(p3));  // cached result is counted, too
+    assertThat(apply(m1, t2, g2, s2), is(p1));
+    assertThat(apply(m2, t2, g2, s2), is(p6));
+    JsonObject statistics = statistics();
+    JsonObject evaluation = statistics.getJsonObject("evaluation");
+    assertThat(evaluation.getJsonArray("loanRuleLineHits"), is(lineHits(2, 1, 3, 1, 5, 2)));
+    assertThat(evaluation.getJsonObject("latency").getLong("count"), is(4L));
+    assertThat(statistics.getJsonObject("compileLatency").getLong("count"), is(1L));
+
+    // reset when new loan rules are installed
+    setRules(rules1);
+    assertThat(apply(m2, t2, g2, s2), is(p4));
+    statistics = statistics();
+    evaluation = statistics.getJsonObject("evaluation");
+    assertThat(evaluation.getJsonArray("loanRuleLineHits"), is(lineHits(4, 1)));
+    assertThat(evaluation.getJsonObject("latency").getLong("count"), is(1L));
+    assertThat(statistics.getJsonObject("compileLatency").getLong("count"), is(2L));
+  }
+
+  private LoanPolicy applyLocally(ItemType itemType, LoanType loanType,
+      PatronGroup patronGroup, ShelvingLocation shelvingLocation) {
+    String loanPolicyId = LoanRulesEngineResource.applyLocally(APITestSuite.TENANT_ID,
+        itemType.id, loanType.id, patronGroup.id, shelvingLocation.id);
+    return loanPolicyId == null ? null : new LoanPolicy(loanPolicyId);
+  }
+
+  @Test
+  public void applyLocally() {
+    setRules(rules2);
+    LoanRulesEngineResource.dropCache();
+    // not loaded yet
+    assertThat(applyLocally(m1, t1, g1, s2), is((LoanPolicy) null));
+    assertThat(apply(m1, t1, g1, s2), is(p3));
+    JsonObject before = applyCacheStatistics();
+    assertThat(applyLocally(m1, t1, g1, s2), is(p3));
+    assertThat(applyLocally(m1, t2, g2, s2), is(p1));
+    JsonObject after = applyCacheStatistics();
+    // shares the cache with the apply path
+    assertThat(after.getLong("hits") - before.getLong("hits"), is(1L));
+    assertThat(after.getLong("misses") - before.getLong("misses"), is(1L));
+    // invalid uuid is left to the apply path that reports the error
+    assertThat(LoanRulesEngineResource.applyLocally(APITestSuite.TENANT_ID,
+        m1.id, t1.id, g1.id, "foo"), is((String) null));
+    // reload due
+    LoanRulesEngineResource.setCacheTime(0, 0);
+    assertThat(applyLocally(m1, t1, g1, s2), is((LoanPolicy) null));
+  }
+
+  @Test
+  public void campusAndBranchOfLocation() {
+    setRules(String.join("\n",
+        "priority: t, s, c, b, a, m, g",
+        "fallback-policy: " + p6,
+        "a " + APITestSuite.jubileeCampus() + ": " + p1,
+        "b " + APITestSuite.businessLibrary() + ": " + p2,
+        "c all + m " + m2 + ": " + p3
+        ));
+    ShelvingLocation thirdFloor = new ShelvingLocation(APITestSuite.thirdFloorLocationId().toString());
+    ShelvingLocation mezzanine = new ShelvingLocation(APITestSuite.mezzanineDisplayCaseLocationId().toString());
+    assertThat(apply(m1, t1, g1, thirdFloor), is(p1));
+    assertThat(apply(m1, t1, g1, mezzanine), is(p2));
+    assertThat(apply(m2, t1, g1, mezzanine), is(p3));
+    // location unknown to location storage
+    assertThat(apply(m1, t1, g1, s1), is(p6));
+    assertThat(applyLocally(m1, t1, g1, mezzanine), is(p2));
+  }
+
+  @Test
+  public void concurrentRequestsShareOneReload() throws Exception {
+    setRules(rulesFallback2);
+    LoanRulesEngineResource.dropCache();
+    int getCount = FakeOkapi.getLoanRulesGetCount();
+    List<CompletableFuture<Response>> responses = new ArrayList<>();
+    for (int i=0; i<10; i++) {
+      CompletableFuture<Response> completed = new CompletableFuture<>();
+      client.get(loanRulesUrl("/apply"
+          + "?item_type_id="         + m1.id
+          + "&loan_type_id="         + t1.id
+          + "&patron_type_id="       + g1.id
+          + "&shelving_location_id=" + s1.id), ResponseHandler.any(completed));
+      responses.add(completed);
+    }
+    for (CompletableFuture<Response> completed : responses) {
+      Response response = completed.get(10, TimeUnit.SECONDS);
+      assertThat(response.getBody(), response.getStatusCode(), is(200));
+      assertThat(response.getJson().getString("loanPolicyId"), is(p7.id));
+    }
+    assertThat(FakeOkapi.getLoanRulesGetCount() - getCount, is(1));
+  }
+
+  @Test
+  public void reloadOnlyTransfersChangedLoanRules() throws Exception {
+    setRules(rulesFallback);
+    assertThat(apply(m1, t1, g1, s1), is(p6));
+    LoanRulesEngineResource.setCacheTime(0, 0);
+    // the rules have been installed at PUT without ETag, the first reload fetches it
+    assertThat(apply(m1, t1, g1, s1), is(p6));
+    int notModifiedCount = FakeOkapi.getLoanRulesNotModifiedCount();
+    assertThat(apply(m1, t1, g1, s1), is(p6));
+    assertThat(apply(m1, t1, g1, s1), is(p6));
+    assertThat(FakeOkapi.getLoanRulesNotModifiedCount() - notModifiedCount, is(2));
+
+    // change loan rules in the storage backend without invalidating the cache
+    APITestSuite.setLoanRules(rulesFallback2);
+    assertThat(apply(m1, t1, g1, s1), is(p7));
+    assertThat(FakeOkapi.getLoanRulesNotModifiedCount() - notModifiedCount, is(2));
+  }
+
+  @Test
+  public void warmStartFromSnapshot() throws Exception {
+    String directory = temporaryFolder.getRoot().getPath();
+    try {
+      LoanRulesEngineResource.setSnapshotDirectory(directory).get(10, TimeUnit.SECONDS);
+      setRules(rulesFallback);
+      assertThat(apply(m1, t1, g1, s1), is(p6));
+
+      // restart
+      LoanRulesEngineResource.dropCache();
+      LoanRulesEngineResource.setSnapshotDirectory(directory).get(10, TimeUnit.SECONDS);
+
+      // change loan rules in the storage backend while the module is down
+      APITestSuite.setLoanRules(rulesFallback2);
+      // served from the snapshot, this triggers a reload
+      assertThat(apply(m1, t1, g1, s1), is(p6));
+      LoanPolicy loanPolicy = p6;
+      for (int i=0; i<50 && loanPolicy.equals(p6); i++) {
+        Thread.sleep(100);
+        loanPolicy = apply(m1, t1, g1, s1);
+      }
+      assertThat(loanPolicy, is(p7));
+    } finally {
+      LoanRulesEngineResource.setSnapshotDirectory(null);
+    }
+  }
+
   private void matches(JsonArray array, int match, LoanPolicy policy, int line) {
     JsonObject o = array.getJsonObject(match);
     assertThat("["+match+"].loanPolicyId of "+o, o.getString("loanPolicyId"), is(policy.id));
@@ -234,6 +553,139 @@ public class LoanRulesEngineAPITests {
     assertThat(array.size(), is(3));
   }
 
+  private JsonArray applyAllDraft(String loanRules) throws Exception {
+    CompletableFuture<Response> completed = new CompletableFuture<>();
+    URL url = loanRulesUrl(
+        "/apply-all"
+        + "?item_type_id="         + m2
+        + "&loan_type_id="         + t2
+        + "&patron_type_id="       + g2
+        + "&shelving_location_id=" + s2
+        + "&loan_rules="           + URLEncoder.encode(loanRules, "UTF-8")
+        );
+    client.get(url, ResponseHandler.any(completed));
+    Response response = completed.get(10, TimeUnit.SECONDS);
+    assertThat(response.getStatusCode() + " " + response.getBody(),
+        response.getStatusCode(), is(200));
+    return new JsonObject(response.getBody()).getJsonArray("loanRuleMatches");
+  }
+
+  @Test
+  public void applyAllDraftLoanRules() throws Exception {
+    setRules(rulesFallback);
+    JsonArray array = applyAllDraft(rules1);
+    matches(array, 0, p4, 4);
+    assertThat(array.size(), is(3));
+    JsonObject before = statistics().getJsonObject("draftCache");
+    assertThat(applyAllDraft(rules1).size(), is(3));
+    assertThat(applyAllDraft(rules1).size(), is(3));
+    matches(applyAllDraft(rules2), 0, p6, 2);
+    JsonObject after = statistics().getJsonObject("draftCache");
+    assertThat(after.getLong("hits") - before.getLong("hits"), is(2L));
+    assertThat(after.getLong("misses") - before.getLong("misses"), is(1L));
+    assertThat(after.getInteger("size"), is(2));
+  }
+
+  @Test
+  public void policyMatrix() throws Exception {
+    setRules(rules2);
+    JsonObject body = new JsonObject()
+        .put("item_type_ids", new JsonArray().add(m1.id).add(m2.id))
+        .put("loan_type_ids", new JsonArray().add(t1.id).add(t2.id))
+        .put("patron_type_ids", new JsonArray().add(g1.id).add(g2.id))
+        .put("shelving_location_ids", new JsonArray().add(s1.id));
+    CompletableFuture<Response> completed = new CompletableFuture<>();
+    client.post(loanRulesUrl("/policy-matrix"), body, ResponseHandler.any(completed));
+    Response response = completed.get(10, TimeUnit.SECONDS);
+    assertThat(response.getBody(), response.getStatusCode(), is(200));
+    assertThat(response.getContentType(), is("application/x-ndjson"));
+    String [] lines = response.getBody().split("\n");
+    assertThat(lines.length, is(8 + 1));
+    for (int i=0; i<8; i++) {
+      JsonObject row = new JsonObject(lines[i]);
+      LoanPolicy expected = apply(new ItemType(row.getString("m")), new LoanType(row.getString("t")),
+          new PatronGroup(row.getString("g")), new ShelvingLocation(row.getString("s")));
+      assertThat(row.encode(), row.getString("loanPolicyId"), is(expected.id));
+    }
+    JsonArray coverage = new JsonObject(lines[8]).getJsonArray("loanRuleLineCoverage");
+    assertThat(coverage.encode(), coverage.size(), is(4));
+    // fallback-policy: m2 with any loan type and patron group
+    assertThat(coverage.getJsonObject(0).getLong("count"), is(4L));
+    assertThat(coverage.getJsonObject(1).getLong("count"), is(2L));
+    assertThat(coverage.getJsonObject(2).getLong("count"), is(1L));
+    assertThat(coverage.getJsonObject(3).getLong("count"), is(1L));
+  }
+
+  @Test
+  public void policyMatrixInvalidRequest() throws Exception {
+    JsonObject body = new JsonObject()
+        .put("item_type_ids", new JsonArray().add(m1.id))
+        .put("loan_type_ids", new JsonArray().add("foo"))
+        .put("patron_type_ids", new JsonArray())
+        .put("shelving_location_ids", new JsonArray());
+    CompletableFuture<Response> completed = new CompletableFuture<>();
+    client.post(loanRulesUrl("/policy-matrix"), body, ResponseHandler.any(completed));
+    Response response = completed.get(10, TimeUnit.SECONDS);
+    assertThat(response.getStatusCode(), is(400));
+    assertThat(response.getBody(), containsString("loan_type_ids[0]"));
+  }
+
+  @Test
+  public void setRulesInstallsRules() {
+    setRules(rulesFallback);
+    assertThat(apply(m1, t1, g1, s1), is(p6));
+    int getCount = FakeOkapi.getLoanRulesGetCount();
+    setRules(rulesFallback2);
+    assertThat(applyLocally(m1, t1, g1, s1), is(p7));
+    assertThat(apply(m1, t1, g1, s1), is(p7));
+    assertThat(FakeOkapi.getLoanRulesGetCount() - getCount, is(0));
+  }
+
+  @Test
+  public void announcedRulesAreInstalled() throws Exception {
+    LocalLoanRulesChannel channel = new LocalLoanRulesChannel();
+    List<JsonObject> announcements = new ArrayList<>();
+    channel.subscribe(announcements::add);
+    LoanRulesEngineResource.setChannel(channel);
+    try {
+      setRules(rulesFallback);
+      assertThat(announcements.size(), is(1));
+      assertThat(announcements.get(0).getString(LoanRulesChannel.TENANT_ID), is(APITestSuite.TENANT_ID));
+      assertThat(announcements.get(0).getString(LoanRulesChannel.LOAN_RULES_AS_TEXT_FILE), is(rulesFallback));
+      assertThat(apply(m1, t1, g1, s1), is(p6));
+
+      // another module instance saves new loan rules
+      APITestSuite.setLoanRules(rulesFallback2);
+      int getCount = FakeOkapi.getLoanRulesGetCount();
+      channel.publish(LoanRulesChannel.announcement("peer", APITestSuite.TENANT_ID, rulesFallback2));
+      long timeout = System.currentTimeMillis() + 10000;
+      while (! p7.equals(applyLocally(m1, t1, g1, s1)) && System.currentTimeMillis() < timeout) {
+        Thread.sleep(10);
+      }
+      assertThat(apply(m1, t1, g1, s1), is(p7));
+      assertThat(FakeOkapi.getLoanRulesGetCount() - getCount, is(0));
+    } finally {
+      LoanRulesEngineResource.setChannel(null);
+    }
+  }
+
+  @Test
+  public void announcedRulesNotMatchingTheirHashAreIgnored() throws Exception {
+    LocalLoanRulesChannel channel = new LocalLoanRulesChannel();
+    LoanRulesEngineResource.setChannel(channel);
+    try {
+      setRules(rulesFallback);
+      assertThat(apply(m1, t1, g1, s1), is(p6));
+
+      channel.publish(LoanRulesChannel.announcement("peer", APITestSuite.TENANT_ID, rulesFallback2)
+          .put(LoanRulesChannel.LOAN_RULES_HASH, "0"));
+      // the rules are neither invalidated nor replaced
+      assertThat(applyLocally(m1, t1, g1, s1), is(p6));
+    } finally {
+      LoanRulesEngineResource.setChannel(null);
+    }
+  }
+
   @Test
   public void setRulesInvalidatesCache() {
     setRules(rulesFallback);
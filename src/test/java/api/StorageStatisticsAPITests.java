@@ -0,0 +1,38 @@
+package api;
+
+import io.vertx.core.json.JsonObject;
+import api.support.http.InterfaceUrls;
+import org.folio.circulation.support.http.client.OkapiHttpClient;
+import org.folio.circulation.support.http.client.Response;
+import org.folio.circulation.support.http.client.ResponseHandler;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+
+public class StorageStatisticsAPITests {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final OkapiHttpClient client = APITestSuite.createClient(exception ->
+    log.error("Request to circulation module failed:", exception)
+  );
+
+  @Test
+  public void identityMapAndCoalescedGets() throws Exception {
+    CompletableFuture<Response> completed = new CompletableFuture<>();
+    client.get(InterfaceUrls.storageStatisticsUrl(), ResponseHandler.any(completed));
+    Response response = completed.get(10, TimeUnit.SECONDS);
+
+    assertThat(response.getBody(), response.getStatusCode(), is(200));
+    JsonObject json = new JsonObject(response.getBody());
+    assertThat(json.getJsonObject("identityMap"), is(notNullValue()));
+    assertThat(json.getJsonObject("coalescedGets"), is(notNullValue()));
+  }
+}
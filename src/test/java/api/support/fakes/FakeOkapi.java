@@ -1,8 +1,10 @@
 package api.support.fakes;
 
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.folio.circulation.support.StringUtil;
 import org.folio.circulation.support.http.client.BufferHelper;
 import org.folio.circulation.support.http.client.OkapiHttpClient;
 import org.folio.circulation.support.http.server.ForwardResponse;
@@ -25,11 +27,32 @@ public class FakeOkapi extends AbstractVerticle {
 
   private HttpServer server;
   private String loanRules = "{ \"loanRulesAsTextFile\": \"\" }";
+  private String loanRulesETag = eTag(loanRules);
+  private static final AtomicInteger loanRulesGetCount = new AtomicInteger();
+  private static final AtomicInteger loanRulesNotModifiedCount = new AtomicInteger();
 
   public static String getAddress() {
     return address;
   }
 
+  /**
+   * @return number of GET requests to /loan-rules-storage since start
+   */
+  public static int getLoanRulesGetCount() {
+    return loanRulesGetCount.get();
+  }
+
+  /**
+   * @return number of GET requests to /loan-rules-storage answered with 304 Not Modified since start
+   */
+  public static int getLoanRulesNotModifiedCount() {
+    return loanRulesNotModifiedCount.get();
+  }
+
+  private static String eTag(String body) {
+    return "\"" + StringUtil.sha256(body) + "\"";
+  }
+
   @Override
   public void start(Future<Void> startFuture) {
     log.debug("Starting fake loan storage module");
@@ -258,6 +281,7 @@ public class FakeOkapi extends AbstractVerticle {
       log.debug("/loan-rules-storage PUT");
       routingContext.request().bodyHandler(body -> {
         loanRules = body.toString();
+        loanRulesETag = eTag(loanRules);
         log.debug("/loan-rules-storage PUT body={}", loanRules);
         routingContext.response().setStatusCode(204).end();
       }).exceptionHandler(ex -> {
@@ -267,6 +291,13 @@ public class FakeOkapi extends AbstractVerticle {
     });
     router.get("/loan-rules-storage").handler(routingContext -> {
       log.debug("/loan-rules-storage GET returns {}", loanRules);
+      loanRulesGetCount.incrementAndGet();
+      routingContext.response().putHeader("ETag", loanRulesETag);
+      if (loanRulesETag.equals(routingContext.request().getHeader("If-None-Match"))) {
+        loanRulesNotModifiedCount.incrementAndGet();
+        routingContext.response().setStatusCode(304).end();
+        return;
+      }
       routingContext.response().setStatusCode(200).end(loanRules);
     });
   }
@@ -126,6 +126,10 @@ public class InterfaceUrls {
     return APITestSuite.circulationModuleUrl("/circulation/loan-rules" + subPath);
   }
 
+  public static URL storageStatisticsUrl() {
+    return APITestSuite.circulationModuleUrl("/circulation/storage-statistics");
+  }
+
   public static URL cancellationReasonsStorageUrl(String subPath) {
     return APITestSuite.viaOkapiModuleUrl(
         "/cancellation-reason-storage/cancellation-reasons" + subPath);
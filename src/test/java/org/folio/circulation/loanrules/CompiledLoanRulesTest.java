@@ -0,0 +1,113 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Run all Text2DroolsTest cases against CompiledLoanRules, and compare
+ * the results of CompiledLoanRules and Drools for random loan rules.
+ */
+public class CompiledLoanRulesTest extends Text2DroolsTest {
+  private static final String [] NAMES = { "x1", "x2", "x3" };
+  private static final String [] IDS = { "x1", "x2", "x3", "other" };
+  private static final String [] TYPES = { "t", "a", "b", "c", "s", "m", "g" };
+
+  @Override
+  protected LoanRulesEngine engine(String loanRules) {
+    return new CompiledLoanRules(loanRules);
+  }
+
+  private static String criterium(Random random) {
+    StringBuilder s = new StringBuilder(TYPES[random.nextInt(TYPES.length)]);
+    int kind = random.nextInt(5);
+    if (kind == 0) {
+      return s.append(" all").toString();
+    }
+    boolean not = kind == 1;
+    for (String name : NAMES) {
+      if (random.nextBoolean()) {
+        s.append(not ? " !" : " ").append(name);
+      }
+    }
+    if (s.length() == 1) {
+      s.append(not ? " !" : " ").append(NAMES[0]);
+    }
+    return s.toString();
+  }
+
+  static String randomRules(Random random, String priority, int lineCount) {
+    boolean firstLine = priority.equals("first-line");
+    List<String> lines = new ArrayList<>();
+    lines.add("priority: " + priority);
+    if (! firstLine) {
+      lines.add("fallback-policy: fallback");
+    }
+    int depth = 0;
+    for (int i=0; i<lineCount; i++) {
+      StringBuilder line = new StringBuilder();
+      for (int d=0; d<depth; d++) {
+        line.append("  ");
+      }
+      line.append(criterium(random));
+      while (random.nextInt(3) == 0) {
+        line.append(" + ").append(criterium(random));
+      }
+      boolean hasPolicy = random.nextInt(4) != 0;
+      if (hasPolicy) {
+        line.append(": policy-").append(i);
+      }
+      lines.add(line.toString());
+      if (! hasPolicy || random.nextInt(3) == 0) {
+        depth++;  // the next line must be indented if there is no policy
+      } else {
+        depth = random.nextInt(depth + 1);
+      }
+    }
+    if (firstLine) {
+      lines.add("fallback-policy: fallback");
+    }
+    return String.join("\n", lines);
+  }
+
+  private static void assertSameResults(String loanRules) {
+    Drools drools = new Drools(Text2Drools.convert(loanRules));
+    CompiledLoanRules compiled = new CompiledLoanRules(loanRules);
+    for (String m : IDS) {
+      for (String t : IDS) {
+        for (String g : IDS) {
+          for (String s : IDS) {
+            String reason = loanRules + "\n" + m + " " + t + " " + g + " " + s;
+            JsonArray expected = drools.loanPolicies(m, t, g, s);
+            assertThat(reason, compiled.loanPolicies(m, t, g, s), is(expected));
+            assertThat(reason, compiled.loanPolicy(m, t, g, s),
+                is(drools.loanPolicy(m, t, g, s)));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void sameResultsAsDrools() {
+    Random random = new Random(42);
+    String [] priorities = {
+        "first-line",
+        "last-line",
+        "t, s, c, b, a, m, g",
+        "number-of-criteria, first-line",
+        "criterium(t, s, c, b, a, m, g), number-of-criteria, last-line",
+        "number-of-criteria, criterium(g, m, a, b, c, s, t), first-line",
+    };
+    for (String priority : priorities) {
+      assertSameResults(randomRules(random, priority, 25));
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Compile the Drools loan rules of several tenants at the same time and check
+ * that each engine returns the loan policies of its own tenant's rules.
+ */
+public class ConcurrentCompilationTest {
+  private static final int TENANTS = 8;
+  private static final int COMPILATIONS_PER_TENANT = 5;
+
+  private static String rules(int tenant) {
+    return String.join("\n",
+        "priority: t, s, c, b, a, m, g",
+        "fallback-policy: no-loan-" + tenant,
+        "m book: policy-book-" + tenant);
+  }
+
+  @Test
+  public void drools() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(TENANTS);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int t=0; t<TENANTS; t++) {
+        int tenant = t;
+        String drools = Text2Drools.convert(rules(tenant));
+        Callable<Integer> task = () -> {
+          start.await();
+          for (int i=0; i<COMPILATIONS_PER_TENANT; i++) {
+            Drools engine = new Drools(drools);
+            assertThat("tenant " + tenant,
+                engine.loanPolicy("book", "regular", "student", "shelf"), is("policy-book-" + tenant));
+            assertThat("tenant " + tenant,
+                engine.loanPolicy("dvd", "regular", "student", "shelf"), is("no-loan-" + tenant));
+          }
+          return COMPILATIONS_PER_TENANT;
+        };
+        futures.add(executor.submit(task));
+      }
+      start.countDown();
+      int compilations = 0;
+      for (Future<Integer> future : futures) {
+        compilations += future.get(120, TimeUnit.SECONDS);
+      }
+      assertThat(compilations, is(TENANTS * COMPILATIONS_PER_TENANT));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Use one engine from many threads at the same time and check that
+ * no evaluation sees the result of another evaluation.
+ */
+public class ConcurrentEvaluationTest {
+  private static final int THREADS = 16;
+  private static final int EVALUATIONS_PER_THREAD = 300;
+
+  private static final String RULES = String.join("\n",
+      "priority: t, s, c, b, a, m, g",
+      "fallback-policy: no-loan",
+      "m book: policy-book",
+      "    g visitor: policy-book-visitor",
+      "m dvd: policy-dvd",
+      "m cd: policy-cd",
+      "    t special-items: policy-cd-special",
+      "s new: policy-new"
+      );
+
+  private static final String [][] CASES = {
+    // item type, loan type,       patron group, shelf, loan policy,          number of matches
+    { "book",     "regular",       "student",    "shelf", "policy-book",         "2" },
+    { "book",     "regular",       "visitor",    "shelf", "policy-book-visitor", "3" },
+    { "dvd",      "regular",       "visitor",    "shelf", "policy-dvd",          "2" },
+    { "cd",       "regular",       "student",    "shelf", "policy-cd",           "2" },
+    { "cd",       "special-items", "student",    "shelf", "policy-cd-special",   "3" },
+    { "map",      "regular",       "student",    "new",   "policy-new",          "2" },
+    { "map",      "regular",       "student",    "shelf", "no-loan",             "1" },
+  };
+
+  private void evaluateConcurrently(LoanRulesEngine engine) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int t=0; t<THREADS; t++) {
+        int offset = t;
+        Callable<Integer> task = () -> {
+          start.await();
+          for (int i=0; i<EVALUATIONS_PER_THREAD; i++) {
+            String [] s = CASES[(offset + i) % CASES.length];
+            assertThat(String.join(" ", s),
+                engine.loanPolicy(s[0], s[1], s[2], s[3]), is(s[4]));
+            JsonArray matches = engine.loanPolicies(s[0], s[1], s[2], s[3]);
+            assertThat(String.join(" ", s), matches.size(), is(Integer.parseInt(s[5])));
+            assertThat(String.join(" ", s), matches.getJsonObject(0).getString("loanPolicyId"), is(s[4]));
+          }
+          return EVALUATIONS_PER_THREAD;
+        };
+        futures.add(executor.submit(task));
+      }
+      start.countDown();
+      int evaluations = 0;
+      for (Future<Integer> future : futures) {
+        evaluations += future.get(60, TimeUnit.SECONDS);
+      }
+      assertThat(evaluations, is(THREADS * EVALUATIONS_PER_THREAD));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void drools() throws Exception {
+    evaluateConcurrently(new Drools(Text2Drools.convert(RULES)));
+  }
+
+  @Test
+  public void compiledLoanRules() throws Exception {
+    evaluateConcurrently(new CompiledLoanRules(RULES));
+  }
+}
@@ -0,0 +1,47 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.folio.circulation.support.StringUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+public class EventBusLoanRulesChannelTest {
+  private static Vertx vertx;
+
+  @BeforeClass
+  public static void beforeClass() {
+    vertx = Vertx.vertx();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    vertx.close();
+  }
+
+  @Test
+  public void publishReachesAllSubscribers() throws Exception {
+    EventBusLoanRulesChannel channel = new EventBusLoanRulesChannel(vertx.eventBus());
+    CompletableFuture<JsonObject> first = new CompletableFuture<>();
+    CompletableFuture<JsonObject> second = new CompletableFuture<>();
+    channel.subscribe(first::complete);
+    new EventBusLoanRulesChannel(vertx.eventBus()).subscribe(second::complete);
+    channel.publish(LoanRulesChannel.announcement("instance1", "tenant1", "priority: t"));
+    for (CompletableFuture<JsonObject> received : Arrays.asList(first, second)) {
+      JsonObject announcement = received.get(5, TimeUnit.SECONDS);
+      assertThat(announcement.getString(LoanRulesChannel.INSTANCE_ID), is("instance1"));
+      assertThat(announcement.getString(LoanRulesChannel.TENANT_ID), is("tenant1"));
+      assertThat(announcement.getString(LoanRulesChannel.LOAN_RULES_AS_TEXT_FILE), is("priority: t"));
+      assertThat(announcement.getString(LoanRulesChannel.LOAN_RULES_HASH), is(StringUtil.sha256("priority: t")));
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class LatencyHistogramTest {
+  private static JsonObject bucket(long lessThanMicroseconds, long count) {
+    return new JsonObject().put("lessThanMicroseconds", lessThanMicroseconds).put("count", count);
+  }
+
+  @Test
+  public void empty() {
+    JsonObject json = new LatencyHistogram().toJson();
+    assertThat(json.getLong("count"), is(0L));
+    assertThat(json.getLong("meanMicroseconds"), is(0L));
+    assertThat(json.getLong("maxMicroseconds"), is(0L));
+    assertThat(json.getLong("p99Microseconds"), is(0L));
+    assertThat(json.getJsonArray("buckets").size(), is(0));
+  }
+
+  @Test
+  public void buckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(500);          // 0 µs
+    histogram.record(1000);         // 1 µs
+    histogram.record(3999);         // 3 µs
+    histogram.record(4000);         // 4 µs
+    for (int i=0; i<6; i++) {
+      histogram.record(100000);     // 100 µs
+    }
+    histogram.record(-5);           // a clock that went backwards
+    histogram.record(Long.MAX_VALUE / 2);
+    JsonObject json = histogram.toJson();
+    assertThat(json.getLong("count"), is(12L));
+    assertThat(json.getLong("maxMicroseconds"), is(Long.MAX_VALUE / 2 / 1000));
+    assertThat(json.getJsonArray("buckets"), is(new JsonArray()
+        .add(bucket(1, 2))
+        .add(bucket(2, 1))
+        .add(bucket(4, 1))
+        .add(bucket(8, 1))
+        .add(bucket(128, 6))
+        .add(bucket(1L << 31, 1))));
+    assertThat(json.getLong("p50Microseconds"), is(128L));
+    assertThat(json.getLong("p90Microseconds"), is(128L));
+    assertThat(json.getLong("p99Microseconds"), is(1L << 31));
+  }
+}
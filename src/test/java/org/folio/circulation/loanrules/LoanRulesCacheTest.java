@@ -0,0 +1,101 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class LoanRulesCacheTest {
+  private static final String RULES = String.join("\n",
+      "priority: last-line",
+      "fallback-policy: no-loan",
+      "m book: policy-book");
+
+  /** Counts the calls and then delegates to CompiledLoanRules. */
+  private static class CountingEngine implements LoanRulesEngine {
+    private final LoanRulesEngine engine = new CompiledLoanRules(RULES);
+    int calls = 0;
+
+    @Override
+    public Match match(String itemType, String loanType, String patronGroup, String shelvingLocation,
+        String campus, String branch, String collection) {
+      calls++;
+      return engine.match(itemType, loanType, patronGroup, shelvingLocation, campus, branch, collection);
+    }
+
+    @Override
+    public JsonArray loanPolicies(String itemType, String loanType, String patronGroup, String shelvingLocation,
+        String campus, String branch, String collection) {
+      calls++;
+      return engine.loanPolicies(itemType, loanType, patronGroup, shelvingLocation, campus, branch, collection);
+    }
+  }
+
+  @Test
+  public void hitsAndMisses() {
+    LoanRulesCache cache = new LoanRulesCache(100);
+    CountingEngine counting = new CountingEngine();
+    LoanRulesEngine engine = cache.cachingEngine("hash1", counting);
+    for (int i=0; i<3; i++) {
+      assertThat(engine.loanPolicy("book", "t", "g", "s"), is("policy-book"));
+      assertThat(engine.loanPolicy("dvd",  "t", "g", "s"), is("no-loan"));
+      assertThat(engine.loanPolicies("book", "t", "g", "s").size(), is(2));
+    }
+    assertThat(counting.calls, is(3));
+    assertThat(cache.getMisses(), is(3L));
+    assertThat(cache.getHits(), is(6L));
+    assertThat(cache.size(), is(3));
+  }
+
+  @Test
+  public void differentLoanRulesHash() {
+    LoanRulesCache cache = new LoanRulesCache(100);
+    CountingEngine counting = new CountingEngine();
+    cache.cachingEngine("hash1", counting).loanPolicy("book", "t", "g", "s");
+    cache.cachingEngine("hash2", counting).loanPolicy("book", "t", "g", "s");
+    assertThat(counting.calls, is(2));
+    assertThat(cache.getMisses(), is(2L));
+  }
+
+  @Test
+  public void leastRecentlyUsedIsRemoved() {
+    LoanRulesCache cache = new LoanRulesCache(2);
+    CountingEngine counting = new CountingEngine();
+    LoanRulesEngine engine = cache.cachingEngine("hash1", counting);
+    engine.loanPolicy("a", "t", "g", "s");
+    engine.loanPolicy("b", "t", "g", "s");
+    engine.loanPolicy("a", "t", "g", "s");  // hit, b is least recently used now
+    engine.loanPolicy("c", "t", "g", "s");  // removes b
+    assertThat(cache.size(), is(2));
+    engine.loanPolicy("a", "t", "g", "s");
+    assertThat(counting.calls, is(3));
+    engine.loanPolicy("b", "t", "g", "s");
+    assertThat(counting.calls, is(4));
+  }
+
+  @Test
+  public void clear() {
+    LoanRulesCache cache = new LoanRulesCache(100);
+    CountingEngine counting = new CountingEngine();
+    LoanRulesEngine engine = cache.cachingEngine("hash1", counting);
+    engine.loanPolicy("book", "t", "g", "s");
+    cache.clear();
+    assertThat(cache.size(), is(0));
+    engine.loanPolicy("book", "t", "g", "s");
+    assertThat(counting.calls, is(2));
+  }
+
+  @Test
+  public void cachedMatchesCannotBeModified() {
+    LoanRulesCache cache = new LoanRulesCache(100);
+    LoanRulesEngine engine = cache.cachingEngine("hash1", new CountingEngine());
+    engine.loanPolicies("book", "t", "g", "s").getJsonObject(0).put("loanPolicyId", "changed");
+    engine.loanPolicies("book", "t", "g", "s").add(new JsonObject());
+    JsonArray matches = engine.loanPolicies("book", "t", "g", "s");
+    assertThat(matches.size(), is(2));
+    assertThat(matches.getJsonObject(0).getString("loanPolicyId"), is("policy-book"));
+  }
+}
@@ -0,0 +1,150 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class LoanRulesEngineCacheTest {
+  /** estimated bytes of each engine */
+  private static final long BYTES = 1000;
+
+  private static String rules(String policy) {
+    return "priority: last-line\nfallback-policy: policy-" + policy;
+  }
+
+  private static LoanRulesEngineCache cache(int maxEntries, long maxBytes) {
+    return new LoanRulesEngineCache(maxEntries, maxBytes, loanRules -> BYTES);
+  }
+
+  /** Counts the compilations */
+  private static class CountingCompiler implements Function<String,CompletableFuture<LoanRulesEngine>> {
+    int calls = 0;
+
+    @Override
+    public CompletableFuture<LoanRulesEngine> apply(String loanRules) {
+      calls++;
+      return CompletableFuture.completedFuture(new CompiledLoanRules(loanRules));
+    }
+  }
+
+  /** Returns compilations that the test completes */
+  private static class PendingCompiler implements Function<String,CompletableFuture<LoanRulesEngine>> {
+    int calls = 0;
+    CompletableFuture<LoanRulesEngine> compilation;
+
+    @Override
+    public CompletableFuture<LoanRulesEngine> apply(String loanRules) {
+      calls++;
+      compilation = new CompletableFuture<>();
+      return compilation;
+    }
+  }
+
+  private static String loanPolicy(CompletableFuture<LoanRulesEngine> engine) {
+    return engine.join().loanPolicy("m", "t", "g", "s");
+  }
+
+  @Test
+  public void hitsAndMisses() {
+    LoanRulesEngineCache cache = cache(10, 100000);
+    CountingCompiler compiler = new CountingCompiler();
+    LoanRulesEngine engine = cache.get(rules("a"), compiler).join();
+    assertThat(engine.loanPolicy("m", "t", "g", "s"), is("policy-a"));
+    assertThat(cache.get(rules("a"), compiler).join(), is(sameInstance(engine)));
+    assertThat(loanPolicy(cache.get(rules("b"), compiler)), is("policy-b"));
+    assertThat(compiler.calls, is(2));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getMisses(), is(2L));
+    assertThat(cache.size(), is(2));
+    assertThat(cache.getBytes(), is(2 * BYTES));
+    assertThat(cache.getEvictions(), is(0L));
+  }
+
+  @Test
+  public void concurrentRequestsShareCompilation() {
+    LoanRulesEngineCache cache = cache(10, 100000);
+    PendingCompiler compiler = new PendingCompiler();
+    CompletableFuture<LoanRulesEngine> first = cache.get(rules("a"), compiler);
+    CompletableFuture<LoanRulesEngine> second = cache.get(rules("a"), compiler);
+    assertThat(first.isDone(), is(false));
+    assertThat(second.isDone(), is(false));
+    compiler.compilation.complete(new CompiledLoanRules(rules("a")));
+    assertThat(loanPolicy(first), is("policy-a"));
+    assertThat(second.join(), is(sameInstance(first.join())));
+    assertThat(compiler.calls, is(1));
+  }
+
+  @Test
+  public void failedCompilationIsRemoved() throws Exception {
+    LoanRulesEngineCache cache = cache(10, 100000);
+    PendingCompiler compiler = new PendingCompiler();
+    CompletableFuture<LoanRulesEngine> engine = cache.get(rules("a"), compiler);
+    compiler.compilation.completeExceptionally(new LoanRulesException("foo", 1, 1));
+    try {
+      engine.get();
+      throw new AssertionError("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(LoanRulesException.class));
+    }
+    assertThat(cache.size(), is(0));
+    assertThat(cache.getBytes(), is(0L));
+    cache.get(rules("a"), compiler);
+    assertThat(compiler.calls, is(2));
+  }
+
+  @Test
+  public void maxEntries() {
+    LoanRulesEngineCache cache = cache(2, 100000);
+    CountingCompiler compiler = new CountingCompiler();
+    cache.get(rules("a"), compiler);
+    cache.get(rules("b"), compiler);
+    cache.get(rules("a"), compiler);  // hit, b is least recently used now
+    cache.get(rules("c"), compiler);  // evicts b
+    assertThat(cache.size(), is(2));
+    assertThat(cache.getEvictions(), is(1L));
+    cache.get(rules("a"), compiler);
+    assertThat(compiler.calls, is(3));
+    cache.get(rules("b"), compiler);
+    assertThat(compiler.calls, is(4));
+  }
+
+  @Test
+  public void maxBytes() {
+    LoanRulesEngineCache cache = cache(10, 2 * BYTES);
+    CountingCompiler compiler = new CountingCompiler();
+    cache.get(rules("a"), compiler);
+    cache.get(rules("b"), compiler);
+    cache.get(rules("c"), compiler);
+    assertThat(cache.size(), is(2));
+    assertThat(cache.getBytes(), is(2 * BYTES));
+    assertThat(cache.getEvictions(), is(1L));
+  }
+
+  @Test
+  public void tooLargeIsNotCached() {
+    LoanRulesEngineCache cache = cache(10, BYTES - 1);
+    CountingCompiler compiler = new CountingCompiler();
+    assertThat(loanPolicy(cache.get(rules("a"), compiler)), is("policy-a"));
+    assertThat(cache.size(), is(0));
+    assertThat(cache.getBytes(), is(0L));
+  }
+
+  @Test
+  public void clear() {
+    LoanRulesEngineCache cache = cache(10, 100000);
+    CountingCompiler compiler = new CountingCompiler();
+    cache.get(rules("a"), compiler);
+    cache.clear();
+    assertThat(cache.size(), is(0));
+    assertThat(cache.getBytes(), is(0L));
+    cache.get(rules("a"), compiler);
+    assertThat(compiler.calls, is(2));
+  }
+}
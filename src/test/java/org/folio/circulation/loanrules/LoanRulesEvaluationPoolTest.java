@@ -0,0 +1,159 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+
+public class LoanRulesEvaluationPoolTest {
+  private static Vertx vertx;
+
+  @BeforeClass
+  public static void beforeClass() {
+    vertx = Vertx.vertx();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    vertx.close();
+  }
+
+  private static LoanRulesEvaluationPool deploy(int instances, int maxQueueDepth) throws Exception {
+    return LoanRulesEvaluationPool.deploy(vertx, instances, maxQueueDepth).get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void evaluatesOnWorkerPool() throws Exception {
+    LoanRulesEvaluationPool pool = deploy(2, 10);
+    String thread = pool.evaluate(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+    assertThat(thread, startsWith(LoanRulesEvaluationPool.WORKER_POOL_NAME));
+    assertThat(pool.evaluate(() -> 6 * 7).get(10, TimeUnit.SECONDS), is(42));
+  }
+
+  @Test
+  public void failure() throws Exception {
+    LoanRulesEvaluationPool pool = deploy(1, 10);
+    CompletableFuture<Object> future = pool.evaluate(() -> {
+      throw new IllegalStateException("foo");
+    });
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      throw new AssertionError("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+    }
+  }
+
+  @Test
+  public void undeploy() throws Exception {
+    LoanRulesEvaluationPool pool = deploy(1, 10);
+    assertThat(pool.evaluate(() -> 6 * 7).get(10, TimeUnit.SECONDS), is(42));
+    int deployments = vertx.deploymentIDs().size();
+
+    pool.undeploy(vertx).get(10, TimeUnit.SECONDS);
+
+    assertThat(vertx.deploymentIDs().size(), is(deployments - 1));
+    // a second undeploy has nothing to do
+    pool.undeploy(vertx).get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void error() throws Exception {
+    LoanRulesEvaluationPool pool = deploy(1, 10);
+    CompletableFuture<Object> future = pool.evaluate(() -> {
+      throw new StackOverflowError("foo");
+    });
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      throw new AssertionError("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(StackOverflowError.class));
+    }
+    assertThat(pool.getQueueDepth(), is(0));
+  }
+
+  @Test
+  public void timeoutCountsUntilFinished() throws Exception {
+    LoanRulesEvaluationPool pool = LoanRulesEvaluationPool.deploy(vertx, 1, 10, 100)
+        .get(10, TimeUnit.SECONDS);
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(1);
+    CompletableFuture<Boolean> future = pool.evaluate(() -> {
+      try {
+        return blocked.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } finally {
+        finished.countDown();
+      }
+    });
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      throw new AssertionError("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(ReplyException.class));
+    }
+    assertThat(pool.getQueueDepth(), is(1));
+    blocked.countDown();
+    finished.await(10, TimeUnit.SECONDS);
+    for (int i = 0; i < 100 && pool.getQueueDepth() > 0; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(pool.getQueueDepth(), is(0));
+  }
+
+  @Test
+  public void backpressure() throws Exception {
+    LoanRulesEvaluationPool pool = deploy(2, 3);
+    CountDownLatch blocked = new CountDownLatch(1);
+    List<CompletableFuture<Boolean>> running = new ArrayList<>();
+    for (int i=0; i<3; i++) {
+      running.add(pool.evaluate(() -> {
+        try {
+          return blocked.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }));
+    }
+    assertThat(pool.getQueueDepth(), is(3));
+    CompletableFuture<Integer> rejected = pool.evaluate(() -> 1);
+    assertThat(rejected.isCompletedExceptionally(), is(true));
+    try {
+      rejected.get();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+    }
+    blocked.countDown();
+    for (CompletableFuture<Boolean> future : running) {
+      assertThat(future.get(10, TimeUnit.SECONDS), is(true));
+    }
+    assertThat(pool.evaluate(() -> 1).get(10, TimeUnit.SECONDS), is(1));
+
+    JsonObject statistics = pool.getStatistics();
+    assertThat(statistics.getInteger("instances"), is(2));
+    assertThat(statistics.getInteger("maxQueueDepth"), is(3));
+    assertThat(statistics.getInteger("queueDepth"), is(0));
+    assertThat(statistics.getLong("completed"), is(4L));
+    assertThat(statistics.getLong("rejected"), is(1L));
+    assertThat(statistics.getJsonObject("queueLatency").getLong("count"), is(4L));
+  }
+}
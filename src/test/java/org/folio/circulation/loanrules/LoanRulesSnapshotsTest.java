@@ -0,0 +1,67 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.vertx.core.json.JsonObject;
+
+public class LoanRulesSnapshotsTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static JsonObject snapshot(String loanRules) {
+    return new JsonObject()
+        .put(LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE, loanRules)
+        .put("eTag", "\"1\"");
+  }
+
+  @Test
+  public void writeAndRead() {
+    LoanRulesSnapshots snapshots = new LoanRulesSnapshots(folder.getRoot().toPath().resolve("sub"));
+    snapshots.write("diku", snapshot("priority: last-line\nfallback-policy: a"));
+    snapshots.write("test_tenant", snapshot("priority: last-line\nfallback-policy: b"));
+    snapshots.write("diku", snapshot("priority: last-line\nfallback-policy: c"));
+    Map<String,JsonObject> map = snapshots.readAll();
+    assertThat(map.size(), is(2));
+    assertThat(map.get("diku").getString(LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE),
+        is("priority: last-line\nfallback-policy: c"));
+    assertThat(map.get("diku").getString("eTag"), is("\"1\""));
+    assertThat(map.get("test_tenant").getString(LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE),
+        is("priority: last-line\nfallback-policy: b"));
+  }
+
+  @Test
+  public void noDirectory() {
+    assertThat(new LoanRulesSnapshots(new File(folder.getRoot(), "missing").toPath()).readAll().size(), is(0));
+  }
+
+  @Test
+  public void unsafeTenantIdIsNotWritten() {
+    LoanRulesSnapshots snapshots = new LoanRulesSnapshots(folder.getRoot().toPath());
+    snapshots.write("../diku", snapshot("foo"));
+    assertThat(snapshots.readAll().size(), is(0));
+  }
+
+  @Test
+  public void invalidSnapshotsAreIgnored() throws Exception {
+    LoanRulesSnapshots snapshots = new LoanRulesSnapshots(folder.getRoot().toPath());
+    snapshots.write("diku", snapshot("foo"));
+    JsonObject modified = new JsonObject(new String(
+        Files.readAllBytes(folder.getRoot().toPath().resolve("diku.json")), StandardCharsets.UTF_8))
+        .put(LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE, "bar");
+    Files.write(folder.getRoot().toPath().resolve("diku.json"),
+        modified.encode().getBytes(StandardCharsets.UTF_8));
+    Files.write(folder.getRoot().toPath().resolve("other.json"),
+        "{ no json".getBytes(StandardCharsets.UTF_8));
+    assertThat(snapshots.readAll().size(), is(0));
+  }
+}
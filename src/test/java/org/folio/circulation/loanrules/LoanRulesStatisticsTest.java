@@ -0,0 +1,77 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class LoanRulesStatisticsTest {
+  private static final String RULES = String.join("\n",
+      "priority: last-line",
+      "fallback-policy: no-loan",
+      "m book: policy-book",
+      "m dvd: policy-dvd");
+
+  private static JsonObject lineHits(int line, long hits) {
+    return new JsonObject().put("loanRuleLine", line).put("hits", hits);
+  }
+
+  private void assertRecording(LoanRulesEngine engine) {
+    LoanRulesStatistics statistics = new LoanRulesStatistics();
+    LoanRulesEngine recording = statistics.recording(engine);
+    assertThat(recording.loanPolicy("book", "t", "g", "s"), is("policy-book"));
+    assertThat(recording.loanPolicy("book", "t", "g", "s", "a", "b", "c"), is("policy-book"));
+    assertThat(recording.loanPolicy("cd", "t", "g", "s"), is("no-loan"));
+    assertThat(recording.loanPolicies("book", "t", "g", "s").size(), is(2));
+    JsonObject json = statistics.toJson();
+    assertThat(json.getJsonArray("loanRuleLineHits"), is(new JsonArray()
+        .add(lineHits(2, 1))
+        .add(lineHits(3, 3))));
+    assertThat(json.getJsonObject("latency").getLong("count"), is(4L));
+    assertThat(statistics.getHits(4), is(0L));
+  }
+
+  @Test
+  public void recordingDrools() {
+    assertRecording(new Drools(Text2Drools.convert(RULES)));
+  }
+
+  @Test
+  public void recordingCompiledLoanRules() {
+    assertRecording(new CompiledLoanRules(RULES));
+  }
+
+  @Test
+  public void noMatch() {
+    LoanRulesStatistics statistics = new LoanRulesStatistics();
+    statistics.hit(0);
+    assertThat(statistics.toJson().getJsonArray("loanRuleLineHits").size(), is(0));
+  }
+
+  @Test
+  public void concurrentHits() throws InterruptedException {
+    LoanRulesStatistics statistics = new LoanRulesStatistics();
+    List<Thread> threads = new ArrayList<>();
+    for (int t=0; t<4; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i=0; i<10000; i++) {
+          statistics.hit(1 + i % 10);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int line=1; line<=10; line++) {
+      assertThat(statistics.getHits(line), is(4000L));
+    }
+  }
+}
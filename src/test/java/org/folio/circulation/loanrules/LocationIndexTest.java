@@ -0,0 +1,103 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class LocationIndexTest {
+  private static final String RULES = String.join("\n",
+      "priority: last-line",
+      "fallback-policy: no-loan",
+      "a campus1: policy-campus1",
+      "b library2: policy-library2",
+      "    m book: policy-library2-book",
+      "c !collection1 + s loc4: policy-loc4");
+
+  private static final LocationIndex INDEX = LocationIndex.fromLocations(new JsonArray()
+      .add(location("loc1", "campus1", "library1"))
+      .add(location("loc2", "campus1", "library2"))
+      .add(location("loc3", "campus2", "library3"))
+      .add(new JsonObject().put("id", "loc4"))
+      .add(new JsonObject().put("name", "without id")));
+
+  private static JsonObject location(String id, String campusId, String libraryId) {
+    return new JsonObject()
+        .put("id", id)
+        .put("institutionId", "institution1")
+        .put("campusId", campusId)
+        .put("libraryId", libraryId);
+  }
+
+  @Test
+  public void ancestors() {
+    assertThat(INDEX.size(), is(4));
+    assertThat(INDEX.campus("loc2"), is("campus1"));
+    assertThat(INDEX.branch("loc2"), is("library2"));
+    assertThat(INDEX.collection("loc2"), is(""));
+    assertThat(INDEX.campus("loc4"), is(""));
+    assertThat(INDEX.branch("loc4"), is(""));
+    assertThat(INDEX.campus("unknown"), is(""));
+    assertThat(INDEX.branch("unknown"), is(""));
+    assertThat(INDEX.collection("unknown"), is(""));
+  }
+
+  @Test
+  public void isNeeded() {
+    assertThat(LocationIndex.isNeeded(Text2Drools.convert(RULES)), is(true));
+    assertThat(LocationIndex.isNeeded(Text2Drools.convert(
+        "priority: last-line\nfallback-policy: no-loan\nc all: policy-c")), is(true));
+    assertThat(LocationIndex.isNeeded(Text2Drools.convert(
+        "priority: last-line\nfallback-policy: no-loan\ns loc1 + m book: policy-s")), is(false));
+  }
+
+  private void assertResolving(LoanRulesEngine engine) {
+    LoanRulesEngine resolving = INDEX.resolving(engine);
+    assertThat(resolving.loanPolicy("dvd", "t", "g", "loc1"), is("policy-campus1"));
+    assertThat(resolving.loanPolicy("book", "t", "g", "loc1"), is("policy-campus1"));
+    assertThat(resolving.loanPolicy("dvd", "t", "g", "loc2"), is("policy-library2"));
+    assertThat(resolving.loanPolicy("book", "t", "g", "loc2"), is("policy-library2-book"));
+    assertThat(resolving.loanPolicy("book", "t", "g", "loc3"), is("no-loan"));
+    assertThat(resolving.loanPolicy("book", "t", "g", "loc4"), is("policy-loc4"));
+    assertThat(resolving.loanPolicy("book", "t", "g", "unknown"), is("no-loan"));
+    assertThat(resolving.loanPolicies("book", "t", "g", "loc2").size(), is(4));
+    // explicit ancestors are passed through
+    assertThat(resolving.loanPolicy("dvd", "t", "g", "loc3", "campus1", "", ""), is("policy-campus1"));
+    // without the index the ancestors are unknown
+    assertThat(engine.loanPolicy("book", "t", "g", "loc2"), is("no-loan"));
+  }
+
+  @Test
+  public void resolvingDrools() {
+    assertResolving(new Drools(Text2Drools.convert(RULES)));
+  }
+
+  @Test
+  public void resolvingCompiledLoanRules() {
+    assertResolving(new CompiledLoanRules(RULES));
+  }
+
+  @Test
+  public void policyMatrix() {
+    CompiledLoanRules compiled = new CompiledLoanRules(RULES);
+    List<String> locations = Arrays.asList("loc1", "loc2", "loc3", "loc4", "unknown");
+    PolicyMatrix matrix = compiled.policyMatrix(Arrays.asList("book", "dvd"), Arrays.asList("t"),
+        Arrays.asList("g"), locations, INDEX);
+    StringBuilder out = new StringBuilder();
+    assertThat(matrix.write(out, 100000), is(false));
+    LoanRulesEngine resolving = INDEX.resolving(compiled);
+    String [] lines = out.toString().split("\n");
+    assertThat(lines.length, is(2 * locations.size()));
+    for (String line : lines) {
+      JsonObject row = new JsonObject(line);
+      assertThat(line, row.getString("loanPolicyId"), is(resolving.loanPolicy(
+          row.getString("m"), row.getString("t"), row.getString("g"), row.getString("s"))));
+    }
+  }
+}
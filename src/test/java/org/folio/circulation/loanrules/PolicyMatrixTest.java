@@ -0,0 +1,89 @@
+package org.folio.circulation.loanrules;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class PolicyMatrixTest {
+  private static final List<String> IDS = Arrays.asList("x1", "x2", "x3", "other", "x1");
+
+  /**
+   * Write the matrix in small chunks and check each row against loanPolicy of the same rules.
+   * @return number of rows
+   */
+  private static int assertMatrix(String loanRules) {
+    CompiledLoanRules compiled = new CompiledLoanRules(loanRules);
+    PolicyMatrix matrix = compiled.policyMatrix(IDS, IDS, IDS, IDS);
+    StringBuilder out = new StringBuilder();
+    while (matrix.write(out, out.length() + 500)) {
+      // write all
+    }
+    String [] lines = out.toString().split("\n");
+    Map<List<String>,String> policies = new HashMap<>();
+    Map<Integer,Long> coverage = new HashMap<>();
+    for (String line : lines) {
+      JsonObject row = new JsonObject(line);
+      List<String> key = Arrays.asList(row.getString("m"), row.getString("t"), row.getString("g"), row.getString("s"));
+      assertThat(loanRules + "\n" + key, policies.put(key, row.getString("loanPolicyId")), is((String) null));
+      assertThat(loanRules + "\n" + key, row.getString("loanPolicyId"),
+          is(compiled.loanPolicy(key.get(0), key.get(1), key.get(2), key.get(3))));
+      assertThat(loanRules + "\n" + key, row.getInteger("loanRuleLine"),
+          is(compiled.loanPolicies(key.get(0), key.get(1), key.get(2), key.get(3))
+              .getJsonObject(0).getInteger("loanRuleLine")));
+      coverage.merge(row.getInteger("loanRuleLine"), 1L, Long::sum);
+    }
+    JsonArray coverageArray = matrix.coverage();
+    for (int i=0; i<coverageArray.size(); i++) {
+      JsonObject json = coverageArray.getJsonObject(i);
+      assertThat(loanRules + "\n" + json, json.getLong("count"),
+          is(coverage.getOrDefault(json.getInteger("loanRuleLine"), 0L)));
+    }
+    return lines.length;
+  }
+
+  @Test
+  public void allCombinations() {
+    String loanRules = String.join("\n",
+        "priority: t, s, c, b, a, m, g",
+        "fallback-policy: no-loan",
+        "m x1: policy-x1",
+        "    g x2: policy-x1-x2",
+        "m x2 + t !x3: policy-x2",
+        "s x3: policy-s3");
+    assertThat(assertMatrix(loanRules), is(4 * 4 * 4 * 4));
+  }
+
+  @Test
+  public void randomLoanRules() {
+    Random random = new Random(7);
+    String [] priorities = {
+        "first-line",
+        "last-line",
+        "t, s, c, b, a, m, g",
+        "number-of-criteria, criterium(t, s, c, b, a, m, g), last-line",
+    };
+    for (String priority : priorities) {
+      assertThat(assertMatrix(CompiledLoanRulesTest.randomRules(random, priority, 20)), is(256));
+    }
+  }
+
+  @Test
+  public void noIds() {
+    PolicyMatrix matrix = new CompiledLoanRules("priority: last-line\nfallback-policy: no-loan")
+        .policyMatrix(IDS, IDS, Arrays.asList(), IDS);
+    StringBuilder out = new StringBuilder();
+    assertThat(matrix.write(out, 1000), is(false));
+    assertThat(out.length(), is(0));
+    assertThat(matrix.coverage().getJsonObject(0).getLong("count"), is(0L));
+  }
+}
@@ -0,0 +1,78 @@
+package org.folio.circulation.loanrules;
+
+import static org.folio.circulation.loanrules.LoanRulesExceptionMatcher.matches;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.fail;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Text2Drools with 100k lines of loan rules. These cases exercise the parser only,
+ * they are not part of {@link Text2DroolsTest} so that the engine tests don't run them again.
+ */
+public class Text2DroolsLargeTest {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String HEADER = "priority: last-line\nfallback-policy: no-loan\n";
+  private static final int RUNS = 3;
+
+  /**
+   * Loan rules with lines alternating between top level lines and indented lines.
+   * @param lines  number of lines after the header
+   */
+  private static String manyLines(int lines) {
+    StringBuilder s = new StringBuilder(HEADER);
+    for (int i=0; i<lines; i++) {
+      if (i % 2 == 0) {
+        s.append("m type-").append(i).append(" type-x + t loan-").append(i % 7)
+         .append(": policy-").append(i).append('\n');
+      } else {
+        s.append("    g !group-").append(i % 5).append(" !group-x: policy-").append(i).append('\n');
+      }
+    }
+    return s.toString();
+  }
+
+  /**
+   * @return the fastest of {@link #RUNS} conversions in milliseconds
+   */
+  private static long convertMillis(String loanRules) {
+    long fastest = Long.MAX_VALUE;
+    for (int i=0; i<RUNS; i++) {
+      long start = System.nanoTime();
+      Text2Drools.convert(loanRules);
+      fastest = Math.min(fastest, (System.nanoTime() - start) / 1000000);
+    }
+    return fastest;
+  }
+
+  @Test
+  public void linearTime() {
+    String lines10k = manyLines(10000);
+    String lines100k = manyLines(100000);
+    convertMillis(lines10k);  // warm up
+    long millis10k = convertMillis(lines10k);
+    long millis100k = convertMillis(lines100k);
+    log.debug("Text2Drools.convert: 10k lines {} ms, 100k lines {} ms", millis10k, millis100k);
+    // linear is 10 times; the floor of 100 ms for 10k lines keeps timer granularity
+    // and a loaded machine from failing a fast run, quadratic parsing still exceeds it
+    assertThat("100k lines: " + millis100k + " ms, 10k lines: " + millis10k + " ms",
+        millis100k, is(lessThan(30 * Math.max(millis10k, 100))));
+  }
+
+  @Test
+  public void errorAfter100kLines() {
+    try {
+      Text2Drools.convert(manyLines(100000) + "m book:");
+      fail();
+    } catch (LoanRulesException e) {
+      assertThat(e, matches("Policy missing after ':'", 100003, 8));
+    }
+  }
+}
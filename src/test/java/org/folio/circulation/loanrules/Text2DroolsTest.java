@@ -20,6 +20,15 @@ public class Text2DroolsTest {
 
   private static final String HEADER = "priority: last-line\nfallback-policy: no-loan\n";
 
+  /**
+   * Create the engine under test.
+   * @param loanRules  loan rules in FOLIO text format
+   * @return the engine
+   */
+  protected LoanRulesEngine engine(String loanRules) {
+    return new Drools(Text2Drools.convert(loanRules));
+  }
+
   @Test
   public void headerFallbackPolicy() {
     String droolsText = Text2Drools.convert(HEADER);
@@ -66,7 +75,7 @@ public class Text2DroolsTest {
 
   @Test
   public void test1() {
-    Drools drools = new Drools(Text2Drools.convert(test1));
+    LoanRulesEngine drools = engine(test1);
     for (String [] s : test1cases) {
       assertThat(first3(s), drools.loanPolicy(s[0], s[1], s[2], "shelf"), is(s[3]));
     }
@@ -87,7 +96,7 @@ public class Text2DroolsTest {
    * the other parameters are the expected result.
    */
   private void testLoanPolicies(String loanRules, String [][] cases) {
-    Drools drools = new Drools(Text2Drools.convert(loanRules));
+    LoanRulesEngine drools = engine(loanRules);
     for (String [] s : cases) {
       JsonArray array = drools.loanPolicies(s[0], s[1], s[2], "shelf");
       String [] policies = new String[array.size()];
@@ -197,14 +206,14 @@ public class Text2DroolsTest {
 
   @Test
   public void twoPriorities() {
-    Drools drools = new Drools(Text2Drools.convert(String.join("\n",
+    LoanRulesEngine drools = engine(String.join("\n",
         "priority: number-of-criteria, first-line",
         "fallback-policy: no-loan",
         "m book: policy-a",
         "g student: policy-b",
         "m dvd: policy-c",
         "     g visitor: policy-d"
-        )));
+        ));
     assertThat(drools.loanPolicy("book", "regular", "student", "shelf"), is("policy-a"));
     assertThat(drools.loanPolicy("dvd",  "regular", "student", "shelf"), is("policy-b"));
     assertThat(drools.loanPolicy("dvd",  "regular", "visitor", "shelf"), is("policy-d"));
@@ -212,14 +221,14 @@ public class Text2DroolsTest {
 
   @Test
   public void threePriorities() {
-    Drools drools = new Drools(Text2Drools.convert(String.join("\n",
+    LoanRulesEngine drools = engine(String.join("\n",
         "priority: criterium(t, s, c, b, a, m, g), number-of-criteria, first-line",
         "fallback-policy: no-loan",
         "m book: policy-a",
         "g student: policy-b",
         "m dvd: policy-c",
         "     g visitor: policy-d"
-        )));
+        ));
     assertThat(drools.loanPolicy("book", "regular", "student", "shelf"), is("policy-a"));
     assertThat(drools.loanPolicy("dvd",  "regular", "student", "shelf"), is("policy-c"));
     assertThat(drools.loanPolicy("dvd",  "regular", "visitor", "shelf"), is("policy-d"));
@@ -277,27 +286,27 @@ public class Text2DroolsTest {
 
   @Test
   public void noSpaceAroundColon() {
-    Drools drools = new Drools(Text2Drools.convert(String.join("\n",
+    LoanRulesEngine drools = engine(String.join("\n",
         "priority:last-line",
         "fallback-policy:no-loan",
-        "s new:policy-a")));
+        "s new:policy-a"));
     assertThat(drools.loanPolicy("dvd", "regular", "student", "shelf"), is("no-loan"));
     assertThat(drools.loanPolicy("dvd", "regular", "student", "new"  ), is("policy-a"));
   }
 
   @Test
   public void multiSpaceAroundColon() {
-    Drools drools = new Drools(Text2Drools.convert(String.join("\n",
+    LoanRulesEngine drools = engine(String.join("\n",
         "priority   :   last-line",
         "fallback-policy   :   no-loan",
-        "s new   :   policy-a")));
+        "s new   :   policy-a"));
     assertThat(drools.loanPolicy("dvd", "regular", "student", "shelf"), is("no-loan"));
     assertThat(drools.loanPolicy("dvd", "regular", "student", "new"  ), is("policy-a"));
   }
 
   @Test
   public void negation() {
-    Drools drools = new Drools(Text2Drools.convert(HEADER + "m !dvd !music: policy-a"));
+    LoanRulesEngine drools = engine(HEADER + "m !dvd !music: policy-a");
     assertThat(drools.loanPolicy("dvd",       "regular", "student", "shelf"), is("no-loan"));
     assertThat(drools.loanPolicy("music",     "regular", "student", "shelf"), is("no-loan"));
     assertThat(drools.loanPolicy("newspaper", "regular", "student", "shelf"), is("policy-a"));
@@ -305,21 +314,21 @@ public class Text2DroolsTest {
 
   @Test
   public void negationSingle() {
-    Drools drools = new Drools(Text2Drools.convert(HEADER + "m !dvd: policy-a"));
+    LoanRulesEngine drools = engine(HEADER + "m !dvd: policy-a");
     assertThat(drools.loanPolicy("dvd",       "regular", "student", "shelf"), is("no-loan"));
     assertThat(drools.loanPolicy("newspaper", "regular", "student", "shelf"), is("policy-a"));
   }
 
   @Test
   public void shelvingLocation() {
-    Drools drools = new Drools(Text2Drools.convert(String.join("\n",
+    LoanRulesEngine drools = engine(String.join("\n",
         "priority: last-line",
         "fallback-policy: no-loan",
         "s new: policy-a",
         "m book: policy-b",
         "a new: policy-c",
         "b new: policy-d",
-        "c new: policy-e")));
+        "c new: policy-e"));
     assertThat(drools.loanPolicy("dvd",  "regular", "student",  "new"),   is("policy-a"));
     assertThat(drools.loanPolicy("book", "regular", "student",  "new"),   is("policy-b"));
     assertThat(drools.loanPolicy("book", "regular", "student",  "shelf"), is("policy-b"));
@@ -327,13 +336,13 @@ public class Text2DroolsTest {
 
   @Test
   public void shelvingLocationDefaultPriority() {
-    Drools drools = new Drools(Text2Drools.convert(String.join("\n",
+    LoanRulesEngine drools = engine(String.join("\n",
         "priority: t, s, c, b, a, m, g",
         "fallback-policy: no-loan",
         "s new: policy-new",
         "t special-items: policy-special",
         "m book: policy-book",
-        "s stacks: policy-stacks")));
+        "s stacks: policy-stacks"));
     assertThat(drools.loanPolicy("book", "regular",       "student", "new"),         is("policy-new"));
     assertThat(drools.loanPolicy("book", "regular",       "student", "open-stacks"), is("policy-book"));
     assertThat(drools.loanPolicy("book", "regular",       "student", "stacks"),      is("policy-stacks"));
@@ -386,7 +395,7 @@ public class Text2DroolsTest {
 
   @Test
   public void run100() {
-    Drools drools = new Drools(Text2Drools.convert(test1));
+    LoanRulesEngine drools = engine(test1);
     long start = System.currentTimeMillis();
     int n = 0;
     while (n < 100) {
@@ -0,0 +1,174 @@
+package org.folio.circulation.resources;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.folio.circulation.loanrules.LoanRulesSnapshots;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.vertx.core.json.JsonObject;
+
+public class LoanRulesEngineResourceTests {
+  private static final String ID = UUID.randomUUID().toString();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() {
+    LoanRulesEngineResource.dropCache();
+    LoanRulesEngineResource.setCacheTime(1000000, 1000000);
+  }
+
+  @After
+  public void tearDown() {
+    LoanRulesEngineResource.setTenantLimits(
+      LoanRulesEngineResource.DEFAULT_TENANT_MAX_IDLE_IN_MILLISECONDS,
+      LoanRulesEngineResource.DEFAULT_TENANT_MAX_BYTES);
+    LoanRulesEngineResource.setCacheTime(
+      LoanRulesEngineResource.DEFAULT_TRIGGER_AGE_IN_MILLISECONDS,
+      LoanRulesEngineResource.DEFAULT_MAX_AGE_IN_MILLISECONDS);
+    LoanRulesEngineResource.dropCache();
+  }
+
+  private static String loanRules(String tenantId) {
+    return "priority: t, s, c, b, a, m, g\nfallback-policy: policy-" + tenantId;
+  }
+
+  private static void install(String tenantId) {
+    LoanRulesEngineResource.install(tenantId,
+      LoanRulesEngineResource.compile(loanRules(tenantId)),
+      LoanRulesEngineResource.invalidate(tenantId));
+  }
+
+  private static String apply(String tenantId) {
+    return LoanRulesEngineResource.applyLocally(tenantId, ID, ID, ID, ID);
+  }
+
+  private static void pause() throws InterruptedException {
+    // distinct access times
+    Thread.sleep(5);
+  }
+
+  @Test
+  public void idleTenantsAreEvicted() throws InterruptedException {
+    install("a");
+    install("b");
+    assertThat(apply("a"), is("policy-a"));
+    JsonObject statistics = LoanRulesEngineResource.tenantStatistics();
+    assertThat(statistics.getInteger("tenants"), is(2));
+    long idleEvictions = statistics.getLong("idleEvictions");
+
+    Thread.sleep(200);
+    LoanRulesEngineResource.setTenantLimits(100, Long.MAX_VALUE);
+    assertThat(apply("b"), is("policy-b"));
+    LoanRulesEngineResource.evictTenants();
+
+    assertThat(apply("a"), is(nullValue()));
+    assertThat(apply("b"), is("policy-b"));
+    statistics = LoanRulesEngineResource.tenantStatistics();
+    assertThat(statistics.getInteger("tenants"), is(1));
+    assertThat(statistics.getLong("idleEvictions") - idleEvictions, is(1L));
+  }
+
+  @Test
+  public void leastRecentlyUsedTenantsAreEvictedOverMemoryLimit() throws InterruptedException {
+    install("a");
+    install("b");
+    install("c");
+    long memoryEvictions = LoanRulesEngineResource.tenantStatistics().getLong("memoryEvictions");
+
+    assertThat(apply("c"), is("policy-c"));
+    pause();
+    assertThat(apply("a"), is("policy-a"));
+    pause();
+    assertThat(apply("b"), is("policy-b"));
+    // the estimate includes the apply cache, each tenant has one entry now
+    long bytes = LoanRulesEngineResource.tenantStatistics().getLong("bytes");
+    assertThat(bytes > 0, is(true));
+    // room for two of the three equally sized tenants
+    LoanRulesEngineResource.setTenantLimits(Long.MAX_VALUE, bytes * 2 / 3);
+    LoanRulesEngineResource.evictTenants();
+
+    assertThat(apply("c"), is(nullValue()));
+    assertThat(apply("a"), is("policy-a"));
+    assertThat(apply("b"), is("policy-b"));
+    JsonObject statistics = LoanRulesEngineResource.tenantStatistics();
+    assertThat(statistics.getInteger("tenants"), is(2));
+    assertThat(statistics.getLong("bytes"), is(bytes * 2 / 3));
+    assertThat(statistics.getLong("memoryEvictions") - memoryEvictions, is(1L));
+  }
+
+  @Test
+  public void estimateIncludesTheEngine() {
+    install("a");
+    long bytes = LoanRulesEngineResource.tenantStatistics().getLong("bytes");
+
+    // the Drools engine of a loan rules file of two lines
+    assertThat(bytes > 100_000, is(true));
+  }
+
+  @Test
+  public void tenantOverTheLimitDoesNotEvictOthers() {
+    install("a");
+    install("b");
+    assertThat(apply("b"), is("policy-b"));
+    // each tenant alone exceeds the limit
+    LoanRulesEngineResource.setTenantLimits(Long.MAX_VALUE, 1);
+    LoanRulesEngineResource.evictTenants();
+
+    assertThat(LoanRulesEngineResource.tenantStatistics().getInteger("tenants"), is(2));
+    assertThat(apply("a"), is("policy-a"));
+    assertThat(apply("b"), is("policy-b"));
+  }
+
+  @Test
+  public void installedTenantIsKept() throws InterruptedException {
+    install("b");
+    pause();
+    install("c");
+    pause();
+    install("a");
+    pause();
+    assertThat(apply("a"), is("policy-a"));
+    long bytes = LoanRulesEngineResource.tenantStatistics().getLong("bytes");
+    LoanRulesEngineResource.setTenantLimits(Long.MAX_VALUE, bytes - 1);
+
+    // b is the least recently used tenant, but its new rules are being installed
+    install("b");
+
+    assertThat(LoanRulesEngineResource.tenantStatistics().getInteger("tenants"), is(2));
+    assertThat(apply("c"), is(nullValue()));
+    assertThat(apply("a"), is("policy-a"));
+    assertThat(apply("b"), is("policy-b"));
+  }
+
+  @Test
+  public void snapshotsOfTenantsCompiledAtTheSameTimeKeepTheirRules() throws Exception {
+    LoanRulesSnapshots snapshots = new LoanRulesSnapshots(temporaryFolder.getRoot().toPath());
+    for (int i=0; i<8; i++) {
+      snapshots.write("t" + i, new JsonObject()
+        .put(LoanRulesSnapshots.LOAN_RULES_AS_TEXT_FILE, loanRules("t" + i)));
+    }
+    // rules from a snapshot have never been reloaded, keep them applicable locally
+    LoanRulesEngineResource.setCacheTime(Long.MAX_VALUE / 2, Long.MAX_VALUE / 2);
+    try {
+      LoanRulesEngineResource.setSnapshotDirectory(temporaryFolder.getRoot().getPath())
+        .get(60, TimeUnit.SECONDS);
+
+      for (int i=0; i<8; i++) {
+        assertThat(apply("t" + i), is("policy-t" + i));
+      }
+    } finally {
+      LoanRulesEngineResource.setSnapshotDirectory(null);
+    }
+  }
+}
@@ -1,10 +1,18 @@
 package org.folio.circulation.support;
 
-import org.junit.Test;
-
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.folio.circulation.domain.MultipleRecords;
+import org.junit.Test;
+
 public class CollectionResourceClientTests {
   static private String createQueryString(String urlencodedCqlQuery, Integer pageLimit, Integer pageOffset) {
     return CollectionResourceClient.createQueryString(urlencodedCqlQuery, pageLimit, pageOffset);
@@ -18,4 +26,66 @@ public class CollectionResourceClientTests {
     assertThat(createQueryString(null,        null, 11  ), is("?offset=11"));
     assertThat(createQueryString(null,        null, null), is(""));
   }
+
+  @Test
+  public void fanOutOfNoChunksIsEmpty() {
+    HttpResult<MultipleRecords<Integer>> result =
+      CollectionResourceClient.<Integer>fanOut(0, 4, index -> {
+        throw new AssertionError("no chunk to fetch");
+      }).join();
+
+    assertThat(new ArrayList<>(result.value().getRecords()), is(new ArrayList<Integer>()));
+    assertThat(result.value().getTotalRecords(), is(0));
+  }
+
+  @Test
+  public void fanOutMergesChunksInOrderWithAtMostParallelismFetches() {
+    final List<CompletableFuture<HttpResult<MultipleRecords<Integer>>>> fetches =
+      new ArrayList<>();
+
+    CompletableFuture<HttpResult<MultipleRecords<Integer>>> merged =
+      CollectionResourceClient.fanOut(5, 2, index -> {
+        CompletableFuture<HttpResult<MultipleRecords<Integer>>> fetch = new CompletableFuture<>();
+        fetches.add(fetch);
+        return fetch;
+      });
+
+    assertThat(fetches.size(), is(2));
+
+    fetches.get(1).complete(records(1));
+    assertThat(fetches.size(), is(3));
+
+    fetches.get(2).complete(records(2));
+    fetches.get(0).complete(records(0));
+    assertThat(fetches.size(), is(5));
+
+    fetches.get(4).complete(records(4));
+    fetches.get(3).complete(records(3));
+
+    HttpResult<MultipleRecords<Integer>> result = merged.join();
+
+    assertThat(new ArrayList<>(result.value().getRecords()), is(asList(0, 1, 2, 3, 4)));
+    assertThat(result.value().getTotalRecords(), is(5));
+  }
+
+  @Test
+  public void fanOutFailsWithFirstFailedChunk() {
+    final AtomicInteger fetched = new AtomicInteger();
+
+    HttpResult<MultipleRecords<Integer>> result =
+      CollectionResourceClient.<Integer>fanOut(3, 4, index -> {
+        fetched.incrementAndGet();
+        return CompletableFuture.completedFuture(index == 0
+          ? records(0)
+          : HttpResult.failed(new ServerErrorFailure("chunk " + index)));
+      }).join();
+
+    assertThat(fetched.get(), is(3));
+    assertThat(result.failed(), is(true));
+    assertThat(((ServerErrorFailure) result.cause()).reason, is("chunk 1"));
+  }
+
+  private static HttpResult<MultipleRecords<Integer>> records(int record) {
+    return HttpResult.succeeded(new MultipleRecords<>(singletonList(record), 1));
+  }
 }
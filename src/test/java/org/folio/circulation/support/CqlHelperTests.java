@@ -0,0 +1,70 @@
+package org.folio.circulation.support;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class CqlHelperTests {
+  private static List<List<String>> chunks(int maxQueryLength, String... values) {
+    return CqlHelper.multipleRecordsCqlQueryChunks(null, "id", asList(values), maxQueryLength);
+  }
+
+  private static int queryLength(List<String> values) {
+    return CqlHelper.multipleRecordsCqlQuery(null, "id", values).value().length();
+  }
+
+  @Test
+  public void noChunksWhenNoValues() {
+    assertThat(chunks(100), is(emptyList()));
+    assertThat(chunks(100, null, "", " "), is(emptyList()));
+  }
+
+  @Test
+  public void allValuesInOneChunkWhenQueryIsShortEnough() {
+    assertThat(chunks(100, "a", "b", "c"), is(asList(asList("a", "b", "c"))));
+  }
+
+  @Test
+  public void duplicateAndBlankValuesAreRemoved() {
+    assertThat(chunks(100, "a", null, "b", "a", " "), is(asList(asList("a", "b"))));
+  }
+
+  @Test
+  public void chunkQueriesAreAtMostTheMaximumLength() {
+    final int maxQueryLength = queryLength(asList("aa", "bb"));
+
+    final List<List<String>> chunks = chunks(maxQueryLength, "aa", "bb", "cc", "dd", "ee");
+
+    assertThat(chunks, is(asList(asList("aa", "bb"), asList("cc", "dd"), asList("ee"))));
+  }
+
+  @Test
+  public void encodedLengthOfValuesIsUsed() {
+    final int maxQueryLength = queryLength(asList("a b", "c d"));
+
+    assertThat(chunks(maxQueryLength, "a b", "c d", "e f"),
+      is(asList(asList("a b", "c d"), asList("e f"))));
+  }
+
+  @Test
+  public void prefixIsPartOfTheQueryLength() {
+    final String prefix = "status.name==\"Open\" and ";
+    final int maxQueryLength = CqlHelper.multipleRecordsCqlQuery(prefix, "itemId",
+      asList("aa", "bb")).value().length();
+
+    assertThat(CqlHelper.multipleRecordsCqlQueryChunks(prefix, "itemId",
+      asList("aa", "bb", "cc"), maxQueryLength),
+      is(asList(asList("aa", "bb"), asList("cc"))));
+  }
+
+  @Test
+  public void valueTooLongOnItsOwnGetsAChunkOfItsOwn() {
+    assertThat(chunks(12, "a", "much too long a value", "b"),
+      is(asList(asList("a"), asList("much too long a value"), asList("b"))));
+  }
+}
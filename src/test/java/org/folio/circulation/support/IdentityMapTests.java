@@ -0,0 +1,99 @@
+package org.folio.circulation.support;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.folio.circulation.support.http.client.Response;
+import org.junit.Test;
+
+public class IdentityMapTests {
+  private static final String ITEMS = "http://okapi:9130/item-storage/items";
+
+  private final AtomicInteger fetches = new AtomicInteger();
+
+  private Supplier<CompletableFuture<Response>> fetch(int statusCode) {
+    return () -> {
+      fetches.incrementAndGet();
+      return completedFuture(new Response(statusCode, "{}", "application/json"));
+    };
+  }
+
+  private static long saved(String tenantId, String path) {
+    return IdentityMap.getStatistics(tenantId).getLong(path, 0L);
+  }
+
+  @Test
+  public void fetchesOnce() {
+    IdentityMap identityMap = new IdentityMap("a");
+    long saved = saved("a", "/identity-map-tests");
+    long savedOfOtherTenant = saved("b", "/identity-map-tests");
+
+    Response first = identityMap.get("/identity-map-tests", ITEMS + "/1", fetch(200)).join();
+    Response second = identityMap.get("/identity-map-tests", ITEMS + "/1", fetch(200)).join();
+    identityMap.get("/identity-map-tests", ITEMS + "/2", fetch(200)).join();
+
+    assertThat(second == first, is(true));
+    assertThat(fetches.get(), is(2));
+    assertThat(saved("a", "/identity-map-tests"), is(saved + 1));
+    assertThat(saved("b", "/identity-map-tests"), is(savedOfOtherTenant));
+  }
+
+  @Test
+  public void keepsOnlyOkResponses() {
+    IdentityMap identityMap = new IdentityMap("a");
+
+    identityMap.get("/items", ITEMS + "/1", fetch(404)).join();
+    identityMap.get("/items", ITEMS + "/1", fetch(404)).join();
+
+    assertThat(fetches.get(), is(2));
+  }
+
+  @Test
+  public void fetchThatThrowsIsNotKept() {
+    IdentityMap identityMap = new IdentityMap("a");
+
+    CompletableFuture<Response> failed = identityMap.get("/items", ITEMS + "/1", () -> {
+      throw new IllegalStateException("no connection");
+    });
+
+    assertThat(failed.isCompletedExceptionally(), is(true));
+
+    identityMap.get("/items", ITEMS + "/1", fetch(200)).join();
+    assertThat(fetches.get(), is(1));
+  }
+
+  @Test
+  public void invalidateRecord() {
+    IdentityMap identityMap = new IdentityMap("a");
+    identityMap.get("/items", ITEMS + "/1", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "/2", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "?query=barcode==1", fetch(200)).join();
+
+    identityMap.invalidate(ITEMS, "1");
+
+    identityMap.get("/items", ITEMS + "/1", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "/2", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "?query=barcode==1", fetch(200)).join();
+    assertThat(fetches.get(), is(5));
+  }
+
+  @Test
+  public void invalidateCollection() {
+    IdentityMap identityMap = new IdentityMap("a");
+    identityMap.get("/items", ITEMS + "/1", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "/2", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "-other/1", fetch(200)).join();
+
+    identityMap.invalidate(ITEMS, null);
+
+    identityMap.get("/items", ITEMS + "/1", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "/2", fetch(200)).join();
+    identityMap.get("/items", ITEMS + "-other/1", fetch(200)).join();
+    assertThat(fetches.get(), is(5));
+  }
+}
@@ -0,0 +1,108 @@
+package org.folio.circulation.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.folio.circulation.support.http.client.Response;
+import org.folio.rest.testing.UtilityClassTester;
+import org.junit.Test;
+
+public class InFlightGetsTests {
+  private static final String ITEMS = "http://okapi:9130/in-flight-gets-tests";
+
+  private final AtomicInteger sent = new AtomicInteger();
+  private final CompletableFuture<Response> storage = new CompletableFuture<>();
+
+  private Supplier<CompletableFuture<Response>> send() {
+    return () -> {
+      sent.incrementAndGet();
+      return storage;
+    };
+  }
+
+  private CompletableFuture<Response> get(String tenantId, String token, String url) {
+    return InFlightGets.get(tenantId, token, "/in-flight-gets-tests", url, send());
+  }
+
+  @Test
+  public void isUtilityClass() {
+    UtilityClassTester.assertUtilityClass(InFlightGets.class);
+  }
+
+  @Test
+  public void coalescesWhileInFlight() {
+    CompletableFuture<Response> first = get("a", "t", ITEMS + "/1");
+    CompletableFuture<Response> second = get("a", "t", ITEMS + "/1");
+
+    assertThat(sent.get(), is(1));
+    Response response = new Response(200, "{}", "application/json");
+    storage.complete(response);
+    assertThat(first.join() == response, is(true));
+    assertThat(second.join() == response, is(true));
+
+    get("a", "t", ITEMS + "/1");
+    assertThat(sent.get(), is(2));
+  }
+
+  @Test
+  public void sendThatThrowsIsNotInFlight() {
+    CompletableFuture<Response> failed = InFlightGets.get("a", "t",
+      "/in-flight-gets-tests", ITEMS + "/6", () -> {
+        throw new IllegalStateException("no connection");
+      });
+
+    assertThat(failed.isCompletedExceptionally(), is(true));
+
+    get("a", "t", ITEMS + "/6");
+    assertThat(sent.get(), is(1));
+    storage.complete(new Response(200, "{}", "application/json"));
+  }
+
+  @Test
+  public void keyedByTenantTokenAndUrl() {
+    get("a", "t", ITEMS + "/2");
+    get("b", "t", ITEMS + "/2");
+    get("a", "u", ITEMS + "/2");
+    get("a", "t", ITEMS + "/3");
+
+    assertThat(sent.get(), is(4));
+    storage.complete(new Response(200, "{}", "application/json"));
+  }
+
+  @Test
+  public void countsByTenant() {
+    long coalesced = coalesced("c");
+    long coalescedOfOtherTenant = coalesced("d");
+
+    get("c", "t", ITEMS + "/7");
+    get("c", "t", ITEMS + "/7");
+    get("c", "t", ITEMS + "/7");
+
+    assertThat(coalesced("c"), is(coalesced + 2));
+    assertThat(coalesced("d"), is(coalescedOfOtherTenant));
+    storage.complete(new Response(200, "{}", "application/json"));
+  }
+
+  private static long coalesced(String tenantId) {
+    return InFlightGets.getStatistics(tenantId).getLong("/in-flight-gets-tests", 0L);
+  }
+
+  @Test
+  public void writeCancelsCoalescing() {
+    get("a", "t", ITEMS + "/4");
+    get("a", "t", ITEMS + "?query=barcode==4");
+    get("a", "t", ITEMS + "/5");
+
+    InFlightGets.cancel("a", ITEMS, "4");
+
+    get("a", "t", ITEMS + "/4");
+    get("a", "t", ITEMS + "?query=barcode==4");
+    get("a", "t", ITEMS + "/5");
+    assertThat(sent.get(), is(5));
+    storage.complete(new Response(200, "{}", "application/json"));
+  }
+}
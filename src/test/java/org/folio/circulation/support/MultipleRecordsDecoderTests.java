@@ -0,0 +1,86 @@
+package org.folio.circulation.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.function.Function;
+
+import org.folio.circulation.domain.MultipleRecords;
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonParser;
+
+public class MultipleRecordsDecoderTests {
+  private static <T> HttpResult<MultipleRecords<T>> decode(
+    String body, String recordsPropertyName, Function<JsonObject, T> mapper) {
+
+    JsonParser parser = JsonParser.newParser();
+    MultipleRecordsDecoder<T> decoder = new MultipleRecordsDecoder<>(parser, recordsPropertyName, mapper);
+    Buffer buffer = Buffer.buffer(body);
+    // feed the body in small chunks like the network does
+    for (int i = 0; i < buffer.length(); i += 7) {
+      parser.handle(buffer.getBuffer(i, Math.min(i + 7, buffer.length())));
+    }
+    parser.end();
+    return decoder.result();
+  }
+
+  @Test
+  public void decodesRecordsAndTotalRecords() {
+    JsonObject body = new JsonObject()
+      .put("resultInfo", new JsonObject()
+        .put("facets", new JsonArray().add(new JsonObject().put("loans", "x"))))
+      .put("loans", new JsonArray()
+        .add(new JsonObject().put("id", "1").put("item", new JsonObject().put("title", "a")))
+        .add(new JsonObject().put("id", "2").put("tags", new JsonArray().add("b").add("c"))))
+      .put("totalRecords", 37);
+
+    HttpResult<MultipleRecords<String>> result = decode(body.encodePrettily(), "loans",
+      loan -> loan.getString("id") + loan.getJsonObject("item", new JsonObject()).getString("title", ""));
+
+    assertThat(result.succeeded(), is(true));
+    assertThat(new ArrayList<>(result.value().getRecords()).toString(), is("[1a, 2]"));
+    assertThat(result.value().getTotalRecords(), is(37));
+  }
+
+  @Test
+  public void totalRecordsBeforeRecords() {
+    HttpResult<MultipleRecords<JsonObject>> result = decode(
+      "{\"totalRecords\":1,\"items\":[{\"id\":\"a\",\"totalRecords\":5}]}", "items", Function.identity());
+
+    assertThat(result.value().getRecords().size(), is(1));
+    assertThat(result.value().getTotalRecords(), is(1));
+  }
+
+  @Test
+  public void missingRecordsAndTotalRecords() {
+    HttpResult<MultipleRecords<JsonObject>> result = decode(
+      "{\"users\":[{\"id\":\"a\"}]}", "items", Function.identity());
+
+    assertThat(result.value().getRecords().size(), is(0));
+    assertThat(result.value().getTotalRecords(), is(nullValue()));
+  }
+
+  @Test
+  public void ignoresValuesThatAreNoObjects() {
+    HttpResult<MultipleRecords<JsonObject>> result = decode(
+      "{\"items\":[null,{\"id\":\"a\"},\"b\",[1]],\"totalRecords\":4}", "items", Function.identity());
+
+    assertThat(result.value().getRecords().size(), is(1));
+  }
+
+  @Test
+  public void failsWhenMappingFails() {
+    HttpResult<MultipleRecords<Object>> result = decode(
+      "{\"items\":[{\"id\":\"a\"}]}", "items", item -> {
+        throw new IllegalArgumentException("bad item");
+      });
+
+    assertThat(result.failed(), is(true));
+  }
+}
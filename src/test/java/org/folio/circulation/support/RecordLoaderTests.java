@@ -0,0 +1,191 @@
+package org.folio.circulation.support;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.folio.circulation.support.http.client.Response;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class RecordLoaderTests {
+  private static Vertx vertx;
+  private static Context context;
+
+  private final List<String> byId = new CopyOnWriteArrayList<>();
+  private final List<String> queries = new CopyOnWriteArrayList<>();
+  private int queryStatusCode = 200;
+  private String queryBody = null;
+
+  private final RecordLoader loader = new RecordLoader(context, "users",
+    id -> {
+      byId.add(id);
+      return completedFuture(new Response(200, user(id).encode(), "application/json"));
+    },
+    (query, limit) -> {
+      queries.add(decode(query) + " limit " + limit);
+      JsonArray users = new JsonArray();
+      // storage has no user "missing"
+      for (String id : new String[] { "a", "b", "c" }) {
+        users.add(user(id));
+      }
+      return completedFuture(new Response(queryStatusCode,
+        queryBody != null
+          ? queryBody
+          : new JsonObject().put("users", users).put("totalRecords", 3).encode(),
+        "application/json"));
+    });
+
+  @BeforeClass
+  public static void beforeClass() {
+    vertx = Vertx.vertx();
+    context = vertx.getOrCreateContext();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    vertx.close();
+  }
+
+  private static JsonObject user(String id) {
+    return new JsonObject().put("id", id).put("username", "user-" + id);
+  }
+
+  private static String decode(String query) {
+    try {
+      return URLDecoder.decode(query, "UTF-8");
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /**
+   * Run loads on the event loop of the loader in one tick.
+   */
+  private static List<Response> onEventLoop(Supplier<List<CompletableFuture<Response>>> loads)
+    throws Exception {
+
+    CompletableFuture<List<CompletableFuture<Response>>> issued = new CompletableFuture<>();
+    context.runOnContext(tick -> issued.complete(loads.get()));
+    List<Response> responses = new ArrayList<>();
+    for (CompletableFuture<Response> response : issued.get(10, TimeUnit.SECONDS)) {
+      responses.add(response.get(10, TimeUnit.SECONDS));
+    }
+    return responses;
+  }
+
+  private List<CompletableFuture<Response>> load(String... ids) {
+    List<CompletableFuture<Response>> responses = new ArrayList<>();
+    for (String id : ids) {
+      responses.add(loader.load(id));
+    }
+    return responses;
+  }
+
+  @Test
+  public void batchesOneTick() throws Exception {
+    List<Response> responses = onEventLoop(() -> load("a", "missing", "b", "a"));
+
+    assertThat(queries.toString(), is("[id==(a or missing or b) limit 3]"));
+    assertThat(byId.size(), is(0));
+    assertThat(responses.get(0).getJson().getString("username"), is("user-a"));
+    assertThat(responses.get(1).getStatusCode(), is(404));
+    assertThat(responses.get(2).getJson().getString("username"), is("user-b"));
+    assertThat(responses.get(3) == responses.get(0), is(true));
+  }
+
+  @Test
+  public void singleIdIsFetchedById() throws Exception {
+    List<Response> responses = onEventLoop(() -> load("c"));
+
+    assertThat(queries.size(), is(0));
+    assertThat(byId.toString(), is("[c]"));
+    assertThat(responses.get(0).getJson().getString("username"), is("user-c"));
+  }
+
+  @Test
+  public void batchesOffEventLoop() throws Exception {
+    // keep the context busy so that the dispatch cannot run between the loads
+    CountDownLatch loaded = new CountDownLatch(1);
+    context.runOnContext(tick -> {
+      try {
+        loaded.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    CompletableFuture<Response> a = loader.load("a");
+    CompletableFuture<Response> b = loader.load("b");
+    loaded.countDown();
+
+    assertThat(a.get(10, TimeUnit.SECONDS).getJson().getString("username"), is("user-a"));
+    assertThat(b.get(10, TimeUnit.SECONDS).getJson().getString("username"), is("user-b"));
+    assertThat(queries.toString(), is("[id==(a or b) limit 2]"));
+  }
+
+  @Test
+  public void withoutEventLoopIsFetchedById() throws Exception {
+    RecordLoader withoutEventLoop = new RecordLoader(null, "users",
+      id -> {
+        byId.add(id);
+        return completedFuture(new Response(200, user(id).encode(), "application/json"));
+      },
+      (query, limit) -> {
+        throw new AssertionError("no query expected");
+      });
+
+    withoutEventLoop.load("a").get(10, TimeUnit.SECONDS);
+    withoutEventLoop.load("b").get(10, TimeUnit.SECONDS);
+
+    assertThat(byId.toString(), is("[a, b]"));
+  }
+
+  @Test
+  public void failedQueryFallsBackToById() throws Exception {
+    queryStatusCode = 400;
+    List<Response> responses = onEventLoop(() -> load("a", "b"));
+
+    assertThat(queries.size(), is(1));
+    assertThat(byId.toString(), is("[a, b]"));
+    assertThat(responses.get(1).getJson().getString("username"), is("user-b"));
+  }
+
+  @Test
+  public void undecodableQueryFallsBackToById() throws Exception {
+    queryBody = "{\"users\": [";
+    List<Response> responses = onEventLoop(() -> load("a", "b"));
+
+    assertThat(queries.size(), is(1));
+    assertThat(byId.toString(), is("[a, b]"));
+    assertThat(responses.get(0).getJson().getString("username"), is("user-a"));
+  }
+
+  @Test
+  public void splitsLargeBatches() throws Exception {
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < RecordLoader.MAX_BATCH_SIZE + 2; i++) {
+      ids.add("id" + i);
+    }
+    List<Response> responses = onEventLoop(() -> load(ids.toArray(new String[0])));
+
+    assertThat(queries.size(), is(2));
+    assertThat(queries.get(1).endsWith("limit 2"), is(true));
+    assertThat(responses.size(), is(RecordLoader.MAX_BATCH_SIZE + 2));
+  }
+}
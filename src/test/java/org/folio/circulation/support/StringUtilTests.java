@@ -22,4 +22,12 @@ public class StringUtilTests {
         is("key%3Da-umlaut-%E4"));
     assertThat(StringUtil.urlEncode("key=a-umlaut-ä"), is("key%3Da-umlaut-%C3%A4"));
   }
+
+  @Test
+  public void sha256() {
+    assertThat(StringUtil.sha256(""),
+        is("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855"));
+    assertThat(StringUtil.sha256("abc"),
+        is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+  }
 }
@@ -0,0 +1,58 @@
+package org.folio.circulation.support.http.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.folio.rest.testing.UtilityClassTester;
+import org.junit.Test;
+
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+
+public class HttpClientConfigurationTests {
+  @Test
+  public void isUtilityClass() {
+    UtilityClassTester.assertUtilityClass(HttpClientConfiguration.class);
+  }
+
+  @Test
+  public void defaultsAreVertxDefaults() {
+    HttpClientOptions options = HttpClientConfiguration.fromConfig(new JsonObject());
+
+    assertThat(options, is(new HttpClientOptions()));
+    assertThat(options.getProtocolVersion(), is(HttpVersion.HTTP_1_1));
+  }
+
+  @Test
+  public void http1Options() {
+    HttpClientOptions options = HttpClientConfiguration.fromConfig(new JsonObject()
+      .put(HttpClientConfiguration.MAX_POOL_SIZE, 50)
+      .put(HttpClientConfiguration.MAX_WAIT_QUEUE_SIZE, 500)
+      .put(HttpClientConfiguration.KEEP_ALIVE, false)
+      .put(HttpClientConfiguration.PIPELINING, true)
+      .put(HttpClientConfiguration.PIPELINING_LIMIT, 4)
+      .put(HttpClientConfiguration.IDLE_TIMEOUT, 30));
+
+    assertThat(options.getMaxPoolSize(), is(50));
+    assertThat(options.getMaxWaitQueueSize(), is(500));
+    assertThat(options.isKeepAlive(), is(false));
+    assertThat(options.isPipelining(), is(true));
+    assertThat(options.getPipeliningLimit(), is(4));
+    assertThat(options.getIdleTimeout(), is(30));
+    assertThat(options.getProtocolVersion(), is(HttpVersion.HTTP_1_1));
+  }
+
+  @Test
+  public void http2WithPriorKnowledge() {
+    HttpClientOptions options = HttpClientConfiguration.fromConfig(new JsonObject()
+      .put(HttpClientConfiguration.HTTP2, true)
+      .put(HttpClientConfiguration.HTTP2_MAX_POOL_SIZE, 2)
+      .put(HttpClientConfiguration.HTTP2_MULTIPLEXING_LIMIT, 100));
+
+    assertThat(options.getProtocolVersion(), is(HttpVersion.HTTP_2));
+    assertThat(options.isHttp2ClearTextUpgrade(), is(false));
+    assertThat(options.getHttp2MaxPoolSize(), is(2));
+    assertThat(options.getHttp2MultiplexingLimit(), is(100));
+  }
+}
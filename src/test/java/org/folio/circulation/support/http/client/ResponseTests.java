@@ -0,0 +1,52 @@
+package org.folio.circulation.support.http.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.CaseInsensitiveHeaders;
+import io.vertx.core.json.JsonObject;
+
+public class ResponseTests {
+  private static Response fromBuffer(String body) {
+    return new Response(200, Buffer.buffer(body, "UTF-8"), "application/json",
+      new CaseInsensitiveHeaders());
+  }
+
+  @Test
+  public void jsonFromBuffer() {
+    Response response = fromBuffer("{\"name\":\"Müller\"}");
+
+    assertThat(response.hasBody(), is(true));
+    assertThat(response.getJson(), is(new JsonObject().put("name", "Müller")));
+    assertThat(response.getBody(), is("{\"name\":\"Müller\"}"));
+  }
+
+  @Test
+  public void bufferIsForwardedAsReceived() {
+    Buffer body = Buffer.buffer("{}");
+    Response response = new Response(200, body, "application/json", new CaseInsensitiveHeaders());
+
+    assertThat(response.getBodyAsBuffer(), is(sameInstance(body)));
+  }
+
+  @Test
+  public void emptyBuffer() {
+    Response response = fromBuffer("");
+
+    assertThat(response.hasBody(), is(false));
+    assertThat(response.getBody(), is(""));
+    assertThat(response.getJson(), is(new JsonObject()));
+  }
+
+  @Test
+  public void textBodyAsBuffer() {
+    Response response = new Response(500, "Straße", "text/plain");
+
+    assertThat(response.getBodyAsBuffer().toString("UTF-8"), is("Straße"));
+    assertThat(response.getBodyAsBuffer().length(), is(7));
+  }
+}